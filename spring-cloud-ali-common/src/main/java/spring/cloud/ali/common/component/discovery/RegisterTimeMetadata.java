@@ -0,0 +1,26 @@
+package spring.cloud.ali.common.component.discovery;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.discovery.event.InstancePreRegisteredEvent;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+
+/**
+ * 注册时在实例元数据中写入注册时间（毫秒），供网关负载均衡对新实例慢启动
+ */
+@Slf4j
+public class RegisterTimeMetadata {
+
+    public static final String REGISTER_TIME = "register-time";
+
+    @EventListener
+    public void onPreRegistered(InstancePreRegisteredEvent event) {
+        Map<String, String> metadata = event.getRegistration().getMetadata();
+        if (metadata == null){
+            log.warn("registration metadata is unavailable, slow start is disabled: {}", event.getRegistration().getServiceId());
+            return;
+        }
+        metadata.put(REGISTER_TIME, String.valueOf(System.currentTimeMillis()));
+    }
+}
@@ -19,13 +19,13 @@ import org.springframework.util.CollectionUtils;
 import spring.cloud.ali.common.util.JsonUtil;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -36,6 +36,7 @@ import java.util.stream.Collectors;
  *  1.不同场景feign熔断，api限流，redis熔断等，都需要监听相关规则
  *    一个应用实例保证有一个ConfigService实例
  *  2.Sentinel规则是按类型单例的，刷新需要进行并发控制
+ *  3.支持并发初始化不同group/dataId的规则
  */
 @Slf4j
 public class SentinelConfigService implements InitializingBean {
@@ -78,14 +79,14 @@ public class SentinelConfigService implements InitializingBean {
      *  key：group#dataId
      *  value：监听器对象
      */
-    private final Map<String, Listener> groupDataListeners = new HashMap<>();
+    private final Map<String, Listener> groupDataListeners = new ConcurrentHashMap<>();
 
     /**
      * Nacos配置规则（卸载规则时，需要卸载规则）
      *  key：group#dataId
      *  value：规则列表
      */
-    private final Map<String, List<? extends AbstractRule>> groupDataRules = new HashMap<>();
+    private final Map<String, List<? extends AbstractRule>> groupDataRules = new ConcurrentHashMap<>();
 
     @Override
     public void afterPropertiesSet() {
@@ -2,6 +2,7 @@ package spring.cloud.ali.common.config;
 
 import feign.Client;
 import org.springframework.context.annotation.Bean;
+import spring.cloud.ali.common.component.discovery.RegisterTimeMetadata;
 import spring.cloud.ali.common.component.sentinel.SentinelServiceRules;
 import spring.cloud.ali.common.component.web.WrappedFeignClient;
 import spring.cloud.ali.common.component.sentinel.SentinelConfigService;
@@ -30,6 +31,11 @@ public class CommonConfig {
         return new FeignClientConfig();
     }
 
+    @Bean
+    public RegisterTimeMetadata registerTimeMetadata(){
+        return new RegisterTimeMetadata();
+    }
+
     @Bean
     public WebInterceptor webInterceptor() {
         return new WebInterceptor();
@@ -1,10 +1,13 @@
 package spring.cloud.ali.common.config;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancerClientRequestTransformer;
 import org.springframework.cloud.client.loadbalancer.reactive.ReactiveLoadBalancer;
 import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 import spring.cloud.ali.common.component.web.HttpWebFluxClient;
 
@@ -12,12 +15,22 @@ import java.util.List;
 
 public class WebFluxConfig {
 
+    /**
+     * 应用定义了ClientHttpConnector时（如网关独立的连接池）使用该连接器，否则使用默认连接器；
+     * 应用定义的ExchangeFilterFunction在负载均衡之前执行（如取消时释放负载均衡的并发数）
+     */
     @Bean
     public WebClient webClient(ReactiveLoadBalancer.Factory<ServiceInstance> loadBalancerFactory,
-                               List<LoadBalancerClientRequestTransformer> transformers) {
+                               List<LoadBalancerClientRequestTransformer> transformers,
+                               ObjectProvider<ClientHttpConnector> connector,
+                               ObjectProvider<ExchangeFilterFunction> filters) {
         ReactorLoadBalancerExchangeFilterFunction lbFunction =
                 new ReactorLoadBalancerExchangeFilterFunction(loadBalancerFactory, transformers);
-        return WebClient.builder().filter(lbFunction).build();
+        WebClient.Builder builder = WebClient.builder();
+        filters.orderedStream().forEach(builder::filter);
+        builder.filter(lbFunction);
+        connector.ifUnique(builder::clientConnector);
+        return builder.build();
     }
 
     @Bean
@@ -11,13 +11,17 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.springframework.http.HttpStatus.BAD_GATEWAY;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static spring.cloud.ali.common.exception.BizException.IDEMPOTENCY_KEY_REUSED;
 import static spring.cloud.ali.common.exception.BizException.PATH_NOT_FOUND;
+import static spring.cloud.ali.common.exception.BizException.REQUEST_IN_PROGRESS;
 import static spring.cloud.ali.common.exception.BizException.REQUEST_TOO_MANY;
 import static spring.cloud.ali.common.exception.BizException.SERVER_INTERNAL_ERROR;
 import static spring.cloud.ali.common.exception.BizException.SERVICE_ERROR;
@@ -33,6 +37,8 @@ public enum HttpRespStatus {
 
     HTTP_NOT_AUTH(UNAUTHORIZED, json(UN_AUTH), false),
     HTTP_NOT_FOUND(NOT_FOUND, json(PATH_NOT_FOUND), false),
+    HTTP_CONFLICT(CONFLICT, json(REQUEST_IN_PROGRESS), false),
+    HTTP_UNPROCESSABLE_ENTITY(UNPROCESSABLE_ENTITY, json(IDEMPOTENCY_KEY_REUSED), false),
     HTTP_REQUEST_TOO_MANY(TOO_MANY_REQUESTS, json(REQUEST_TOO_MANY), false),
     HTTP_BAD_GATEWAY(BAD_GATEWAY, json(SERVICE_ERROR), true),
     HTTP_SERVICE_UNAVAILABLE(SERVICE_UNAVAILABLE, json(SERVICE_NOT_UNAVAILABLE), true),
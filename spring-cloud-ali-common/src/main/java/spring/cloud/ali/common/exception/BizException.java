@@ -21,6 +21,8 @@ public class BizException extends RuntimeException {
     public static final BizException UN_AUTH = new BizException(401, "un.auth");
     public static final BizException PATH_NOT_FOUND = new BizException(404, "page.not.found");
     public static final BizException DATA_NOT_FOUND = new BizException(405, "data.not.found");
+    public static final BizException REQUEST_IN_PROGRESS = new BizException(409, "request.in.progress");
+    public static final BizException IDEMPOTENCY_KEY_REUSED = new BizException(422, "idempotency.key.reused");
     public static final BizException REQUEST_TOO_MANY = new BizException(429, "request.too.many");
     public static final BizException SERVER_INTERNAL_ERROR = new BizException(500, "server.interval.error");
     public static final BizException SERVER_EXTERNAL_ERROR = new BizException(501, "server.external.error");
@@ -1,6 +1,7 @@
 package spring.cloud.ali.common.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SecureDigestAlgorithm;
@@ -50,10 +51,18 @@ public class JwtTokenUtil {
      * @return 业务数据
      */
     public static Claims parse(String signKey, String token) {
+        return parser(signKey).parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * 创建token解析器（线程安全，可按签名key缓存复用）
+     * @param signKey 签名key
+     * @return 解析器
+     */
+    public static JwtParser parser(String signKey) {
         return Jwts.parser()
                 .verifyWith(Keys.hmacShaKeyFor(signKey.getBytes()))
-                .build()
-                .parseSignedClaims(token).getPayload();
+                .build();
     }
 
     public static String generateSignKey(){
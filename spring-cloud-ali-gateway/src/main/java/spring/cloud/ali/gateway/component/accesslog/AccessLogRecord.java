@@ -0,0 +1,63 @@
+package spring.cloud.ali.gateway.component.accesslog;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 访问日志记录，固定格式（\t分隔，空值为-）：
+ *   时间  路由  方法  路径模板  状态码  耗时（毫秒）  响应字节数  用户ID
+ */
+@Getter
+@AllArgsConstructor
+public class AccessLogRecord {
+
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final char SEPARATOR = '\t';
+
+    private final long timestamp;
+
+    private final String routeId;
+
+    private final String method;
+
+    private final String uri;
+
+    private final int status;
+
+    private final long latencyNanos;
+
+    private final long bytes;
+
+    private final String userId;
+
+    /**
+     * 格式化（在写线程执行）
+     */
+    public void appendTo(StringBuilder sb) {
+        TIME_FORMATTER.formatTo(Instant.ofEpochMilli(timestamp), sb);
+        sb.append(SEPARATOR);
+        append(sb, routeId).append(SEPARATOR);
+        append(sb, method).append(SEPARATOR);
+        append(sb, uri).append(SEPARATOR);
+        sb.append(status).append(SEPARATOR);
+        long micros = latencyNanos / 1000;
+        sb.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100){
+            sb.append(fraction < 10 ? "00" : "0");
+        }
+        sb.append(fraction).append(SEPARATOR);
+        sb.append(bytes).append(SEPARATOR);
+        append(sb, userId);
+    }
+
+    private static StringBuilder append(StringBuilder sb, String value) {
+        return sb.append(value == null || value.isEmpty() ? "-" : value);
+    }
+}
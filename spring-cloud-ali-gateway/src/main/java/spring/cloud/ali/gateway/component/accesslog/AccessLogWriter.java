@@ -0,0 +1,171 @@
+package spring.cloud.ali.gateway.component.accesslog;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志异步写出：
+ *  1. 请求线程（事件循环）只把记录放入环形缓冲区，缓冲区满时丢弃并计数，不阻塞
+ *  2. 后台线程批量取出记录，格式化后一次写入（一个日志事件一批记录）
+ *  3. 日志文件按天和大小滚动，滚动后gzip压缩（logback的RollingFileAppender，独立于应用日志）
+ *  4. 指标：ali_gateway_access_log_dropped（丢弃的记录数），ali_gateway_access_log_pending（缓冲区中的记录数）
+ */
+@Slf4j
+@Component
+public class AccessLogWriter {
+
+    private static final String LOGGER_NAME = "ACCESS_LOG";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RingBuffer<AccessLogRecord> buffer;
+
+    private Counter dropped;
+
+    private Logger logger;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        AppConfig.AccessLog config = appConfig.getAccessLog();
+        if (!config.isEnabled()){
+            return;
+        }
+
+        buffer = new RingBuffer<>(config.getBufferSize());
+        dropped = meterRegistry.counter("ali_gateway_access_log_dropped");
+        Gauge.builder("ali_gateway_access_log_pending", buffer, RingBuffer::size).register(meterRegistry);
+        logger = createLogger(config);
+
+        running = true;
+        int batchSize = config.getBatchSize();
+        long flushIntervalNanos = config.getFlushInterval().toNanos();
+        writer = new Thread(() -> {
+            StringBuilder sb = new StringBuilder(batchSize * 128);
+            for (;;){
+                // 停止后写完剩余记录再退出
+                boolean stopping = !running;
+                if (writeBatch(sb, batchSize) == 0){
+                    if (stopping){
+                        break;
+                    }
+                    LockSupport.parkNanos(flushIntervalNanos);
+                }
+            }
+        }, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("access log writer started: {}", config);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (writer == null){
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        logger.detachAndStopAllAppenders();
+    }
+
+    /**
+     * 是否开启访问日志
+     */
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * 写入记录，缓冲区满时丢弃
+     * @return false则已丢弃
+     */
+    public boolean write(AccessLogRecord record) {
+        if (buffer.offer(record)){
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private int writeBatch(StringBuilder sb, int batchSize) {
+        sb.setLength(0);
+        int count = buffer.drain(record -> {
+            if (sb.length() > 0){
+                sb.append('\n');
+            }
+            record.appendTo(sb);
+        }, batchSize);
+
+        if (count > 0){
+            try {
+                logger.info(sb.toString());
+            } catch (Exception e){
+                log.warn("failed to write access log: records={}", count, e);
+            }
+        }
+        return count;
+    }
+
+    private static Logger createLogger(AppConfig.AccessLog config) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+
+        RollingFileAppender<ILoggingEvent> appender = new RollingFileAppender<>();
+        appender.setContext(context);
+        appender.setName(LOGGER_NAME);
+        appender.setFile(config.getFile());
+        appender.setEncoder(encoder);
+
+        String file = config.getFile();
+        String base = file.endsWith(".log") ? file.substring(0, file.length() - 4) : file;
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> policy = new SizeAndTimeBasedRollingPolicy<>();
+        policy.setContext(context);
+        policy.setParent(appender);
+        policy.setFileNamePattern(base + ".%d{yyyy-MM-dd}.%i.log.gz");
+        policy.setMaxFileSize(FileSize.valueOf(config.getMaxFileSize()));
+        policy.setMaxHistory(config.getMaxHistory());
+        policy.setTotalSizeCap(FileSize.valueOf(config.getTotalSizeCap()));
+        policy.start();
+
+        appender.setRollingPolicy(policy);
+        appender.start();
+
+        Logger logger = context.getLogger(LOGGER_NAME);
+        logger.detachAndStopAllAppenders();
+        logger.addAppender(appender);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        return logger;
+    }
+}
@@ -0,0 +1,98 @@
+package spring.cloud.ali.gateway.component.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界环形缓冲区（多生产者、单消费者，无锁）：
+ *  1. 每个槽位带序号，生产者CAS抢占写入位置，写入元素后发布序号，消费者按序号判断槽位是否可读
+ *  2. 写满时offer直接返回false（由调用方丢弃），生产者（事件循环线程）不会等待
+ */
+public class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 仅消费者线程读写
+     */
+    private long head;
+
+    private final AtomicLong consumed = new AtomicLong();
+
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++){
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 写入元素（可多线程调用）
+     * @return false则缓冲区已满
+     */
+    public boolean offer(E e) {
+        for (;;){
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence < position){
+                // 槽位未被消费，已满
+                return false;
+            }
+            if (sequence == position && tail.compareAndSet(position, position + 1)){
+                elements.set(index, e);
+                sequences.set(index, position + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 取出元素（仅单个消费者线程调用）
+     * @param consumer 元素处理
+     * @param max 最多取出的元素数
+     * @return 取出的元素数
+     */
+    public int drain(Consumer<E> consumer, int max) {
+        int count = 0;
+        while (count < max){
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1){
+                // 为空或生产者未写完
+                break;
+            }
+            E e = elements.get(index);
+            elements.set(index, null);
+            sequences.set(index, head + mask + 1);
+            head++;
+            count++;
+            consumer.accept(e);
+        }
+        if (count > 0){
+            consumed.addAndGet(count);
+        }
+        return count;
+    }
+
+    /**
+     * 当前元素数（近似值）
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - consumed.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
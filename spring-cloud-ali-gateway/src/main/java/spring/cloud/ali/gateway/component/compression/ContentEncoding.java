@@ -0,0 +1,107 @@
+package spring.cloud.ali.gateway.component.compression;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 响应压缩编码，按优先级排列（q值相同时优先靠前的编码）
+ */
+public enum ContentEncoding {
+
+    BR("br") {
+        @Override
+        public boolean isAvailable() {
+            return Brotli.isAvailable();
+        }
+
+        @Override
+        ChannelHandler newEncoder(int level) {
+            return new BrotliEncoder();
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        ChannelHandler newEncoder(int level) {
+            return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, level);
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        ChannelHandler newEncoder(int level) {
+            return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, level);
+        }
+    };
+
+    private final String value;
+
+    ContentEncoding(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Content-Encoding的值
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * 当前环境是否支持该编码
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    abstract ChannelHandler newEncoder(int level);
+
+    /**
+     * 按Accept-Encoding协商编码
+     * @param acceptEncoding 如：gzip, deflate;q=0.5, br
+     * @return null则不压缩
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)){
+            return null;
+        }
+
+        Map<String, Double> qualities = new HashMap<>();
+        for (String part : acceptEncoding.split(",")){
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++){
+                String param = params[i].trim();
+                if (param.startsWith("q=")){
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e){
+                        q = 0;
+                    }
+                }
+            }
+            qualities.put(coding, q);
+        }
+
+        ContentEncoding best = null;
+        double bestQ = 0;
+        Double wildcard = qualities.get("*");
+        for (ContentEncoding encoding : values()){
+            Double q = qualities.getOrDefault(encoding.value, wildcard);
+            if (q != null && q > bestQ && encoding.isAvailable()){
+                best = encoding;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,91 @@
+package spring.cloud.ali.gateway.component.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式压缩：
+ *  1. 使用Netty的压缩编码器（EmbeddedChannel承载），输入和输出都是池化的ByteBuf，不聚合整个响应体
+ *  2. 非线程安全，同一响应的数据块按顺序调用（Reactor信号串行）
+ *  3. 统计压缩前后的字节数和压缩耗时
+ */
+public class StreamingCompressor {
+
+    private final EmbeddedChannel channel;
+
+    private long inputBytes;
+
+    private long outputBytes;
+
+    private long compressNanos;
+
+    private boolean released;
+
+    public StreamingCompressor(ContentEncoding encoding, int level) {
+        this.channel = new EmbeddedChannel(encoding.newEncoder(level));
+    }
+
+    /**
+     * 压缩一个数据块（in的引用由压缩器释放）
+     * @return 压缩后的数据块（可能为空，编码器缓冲了输入）
+     */
+    public List<ByteBuf> compress(ByteBuf in) {
+        long start = System.nanoTime();
+        inputBytes += in.readableBytes();
+        channel.writeOutbound(in);
+        List<ByteBuf> out = drain();
+        compressNanos += System.nanoTime() - start;
+        return out;
+    }
+
+    /**
+     * 结束压缩，输出剩余数据（如gzip尾部）
+     */
+    public List<ByteBuf> finish() {
+        long start = System.nanoTime();
+        channel.finish();
+        List<ByteBuf> out = drain();
+        compressNanos += System.nanoTime() - start;
+        released = true;
+        return out;
+    }
+
+    /**
+     * 释放未输出的数据（响应取消或出错时）
+     */
+    public void release() {
+        if (!released){
+            released = true;
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    private List<ByteBuf> drain() {
+        List<ByteBuf> out = new ArrayList<>(2);
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null){
+            if (buf.isReadable()){
+                outputBytes += buf.readableBytes();
+                out.add(buf);
+            } else {
+                buf.release();
+            }
+        }
+        return out;
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+}
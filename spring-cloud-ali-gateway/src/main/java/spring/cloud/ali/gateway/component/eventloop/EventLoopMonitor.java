@@ -0,0 +1,246 @@
+package spring.cloud.ali.gateway.component.eventloop;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpResources;
+import reactor.netty.resources.LoopResources;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件循环（reactor-http-*，网关的服务端和上游客户端共用）监控，区分延迟升高是上游慢、事件循环饱和还是阻塞调用：
+ *  1. 延迟：每隔probe-interval向每个事件循环提交一个探测任务，提交到执行的耗时即排队延迟，上一个未执行时不再提交
+ *  2. 待执行任务数：事件循环任务队列的长度
+ *  3. 阻塞检测（block-detect，仅开发/测试环境开启）：探测任务等待超过block-threshold时输出事件循环线程栈，
+ *     并按栈中第一个网关类（如RouteLoginFilter）计数，每次阻塞只报告一次
+ *  4. CPU使用率：每秒采样一次各事件循环线程的CPU时间，使用率 = CPU时间增量 / (采样间隔 * 线程数)，
+ *     供CPU密集的可选处理（如响应压缩）在事件循环繁忙时跳过
+ *  5. 指标：ali_gateway_event_loop_lag{loop}、ali_gateway_event_loop_pending_tasks{loop}、
+ *     ali_gateway_event_loop_blocked{loop,filter}、ali_gateway_event_loop_cpu
+ */
+@Slf4j
+@Component
+public class EventLoopMonitor {
+
+    private static final String APP_PACKAGE = "spring.cloud.ali.";
+
+    private static final long CPU_INTERVAL_MILLIS = 1000;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<LoopProbe> probes = new ArrayList<>();
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private ScheduledExecutorService executor;
+
+    private long lastCpuSampleTime;
+
+    private long lastCpuTime;
+
+    private volatile double cpuUsage;
+
+    @PostConstruct
+    public void init() {
+        // 与网关服务端使用相同的事件循环（HttpResources全局共享）
+        start(HttpResources.get().onServer(LoopResources.DEFAULT_NATIVE));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null){
+            executor.shutdownNow();
+        }
+    }
+
+    void start(EventExecutorGroup group) {
+        for (EventExecutor loop : group){
+            Thread thread;
+            try {
+                thread = loop.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            } catch (Exception e){
+                log.warn("failed to get event loop thread, skip probing: {}", loop, e);
+                continue;
+            }
+            probes.add(new LoopProbe(loop, thread));
+        }
+
+        long interval = appConfig.getEventLoop().getProbeInterval().toNanos();
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("event-loop-monitor").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.NANOSECONDS);
+        if (enableCpuTime()){
+            Gauge.builder("ali_gateway_event_loop_cpu", this, EventLoopMonitor::getCpuUsage)
+                    .register(meterRegistry);
+            executor.scheduleWithFixedDelay(this::sampleCpu, CPU_INTERVAL_MILLIS, CPU_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        log.info("event loop monitor started: loops={}, interval={}", probes.size(), appConfig.getEventLoop().getProbeInterval());
+    }
+
+    private boolean enableCpuTime() {
+        if (!threadMXBean.isThreadCpuTimeSupported()){
+            log.warn("thread cpu time is not supported, event loop cpu usage is always 0");
+            return false;
+        }
+        if (!threadMXBean.isThreadCpuTimeEnabled()){
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        return true;
+    }
+
+    /**
+     * 最近一次采样的事件循环线程CPU使用率（0-1）
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    void sampleCpu() {
+        try {
+            long now = System.nanoTime();
+            long cpuTime = 0;
+            int threads = 0;
+            for (LoopProbe probe : probes){
+                long threadCpuTime = threadMXBean.getThreadCpuTime(probe.thread.getId());
+                if (threadCpuTime > 0){
+                    cpuTime += threadCpuTime;
+                    threads++;
+                }
+            }
+
+            if (lastCpuSampleTime > 0 && threads > 0 && cpuTime >= lastCpuTime){
+                cpuUsage = Math.min(1, (double) (cpuTime - lastCpuTime) / ((now - lastCpuSampleTime) * threads));
+            }
+            lastCpuSampleTime = now;
+            lastCpuTime = cpuTime;
+        } catch (Exception e){
+            log.warn("failed to sample event loop cpu usage", e);
+        }
+    }
+
+    void probe() {
+        AppConfig.EventLoop config = appConfig.getEventLoop();
+        for (LoopProbe probe : probes){
+            try {
+                long now = System.nanoTime();
+                long submitTime = probe.submitTime;
+                if (submitTime == 0){
+                    probe.submit(now);
+                } else if (config.isBlockDetect() && !probe.reported
+                        && now - submitTime > config.getBlockThreshold().toNanos()){
+                    probe.reported = true;
+                    report(probe, now - submitTime);
+                }
+            } catch (RejectedExecutionException e){
+                // 事件循环已关闭
+            } catch (Exception e){
+                log.warn("failed to probe event loop: {}", probe.name, e);
+            }
+        }
+    }
+
+    private void report(LoopProbe probe, long blockedNanos) {
+        StackTraceElement[] stack = probe.thread.getStackTrace();
+        String filter = blockingClass(stack);
+        meterRegistry.counter("ali_gateway_event_loop_blocked", "loop", probe.name, "filter", filter).increment();
+
+        Exception blocked = new Exception("event loop thread stack");
+        blocked.setStackTrace(stack);
+        log.warn("event loop blocked: loop={}, blocked={}ms, filter={}",
+                probe.name, TimeUnit.NANOSECONDS.toMillis(blockedNanos), filter, blocked);
+    }
+
+    /**
+     * 栈中第一个网关类（不含本类），如 spring.cloud.ali.gateway.filter.RouteLoginFilter.lambda$apply$0 为RouteLoginFilter
+     */
+    static String blockingClass(StackTraceElement[] stack) {
+        for (StackTraceElement element : stack){
+            String className = element.getClassName();
+            if (className.startsWith(APP_PACKAGE) && !className.equals(EventLoopMonitor.class.getName())
+                    && !className.startsWith(EventLoopMonitor.class.getName() + "$")){
+                String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                int inner = simpleName.indexOf('$');
+                return inner > 0 ? simpleName.substring(0, inner) : simpleName;
+            }
+        }
+        return "unknown";
+    }
+
+    private class LoopProbe {
+
+        private final EventExecutor loop;
+
+        private final Thread thread;
+
+        private final String name;
+
+        private final Timer lag;
+
+        /**
+         * 未执行的探测任务的提交时间（纳秒），0表示没有
+         */
+        private volatile long submitTime;
+
+        /**
+         * 本次阻塞是否已报告
+         */
+        private volatile boolean reported;
+
+        private LoopProbe(EventExecutor loop, Thread thread) {
+            this.loop = loop;
+            this.thread = thread;
+            this.name = thread.getName();
+            this.lag = Timer.builder("ali_gateway_event_loop_lag")
+                    .tag("loop", name)
+                    .publishPercentileHistogram()
+                    .publishPercentiles(0.5, 0.99)
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .register(meterRegistry);
+            if (loop instanceof SingleThreadEventExecutor){
+                Gauge.builder("ali_gateway_event_loop_pending_tasks", (SingleThreadEventExecutor) loop,
+                                SingleThreadEventExecutor::pendingTasks)
+                        .tag("loop", name)
+                        .register(meterRegistry);
+            }
+        }
+
+        private void submit(long now) {
+            submitTime = now;
+            try {
+                loop.execute(() -> {
+                    lag.record(System.nanoTime() - now, TimeUnit.NANOSECONDS);
+                    reported = false;
+                    submitTime = 0;
+                });
+            } catch (RejectedExecutionException e){
+                submitTime = 0;
+                throw e;
+            }
+        }
+    }
+}
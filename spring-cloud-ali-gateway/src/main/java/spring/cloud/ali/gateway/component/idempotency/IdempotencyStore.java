@@ -0,0 +1,313 @@
+package spring.cloud.ali.gateway.component.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import spring.cloud.ali.common.util.JsonUtil;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 幂等记录（本地 + Redis）：
+ *  1. 本地：Caffeine（按gateway.idempotency.max-size和ttl淘汰），同一实例的重复提交等待处理中的请求，完成后直接返回保存的响应
+ *  2. Redis：SET NX标记处理中（inflight-ttl，值带本次占位的token），完成后覆盖为响应（ttl），多个网关实例之间去重
+ *  3. Redis未配置、超时或异常时只使用本地记录，异常后暂停使用Redis 5秒，避免每个请求都等待超时；
+ *     SET NX已发出后超时或异常时（可能已写入），删除本次占位的标记，避免重复提交在inflight-ttl内都返回处理中
+ *  4. 配置刷新时调整本地记录的大小上限和时长，不重建（保留处理中的记录）
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final String REDIS_KEY_PREFIX = "gateway:idempotency:";
+
+    private static final String INFLIGHT = "inflight";
+
+    /**
+     * 值为本次占位的标记时删除
+     */
+    private static final RedisScript<Long> RELEASE_INFLIGHT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    /**
+     * Redis异常后暂停使用的时间
+     */
+    private static final long REDIS_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private Cache<String, Record> cache;
+
+    /**
+     * Redis恢复使用的时间（System.nanoTime）
+     */
+    private volatile long redisResumeAt;
+
+    private Counter redisErrors;
+
+    @PostConstruct
+    public void init() {
+        redisErrors = meterRegistry.counter("ali_gateway_idempotency_redis_errors");
+        cache = buildCache(appConfig.getIdempotency());
+        log.info("idempotency store created: redis={}, config={}", redisTemplate != null, appConfig.getIdempotency());
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        AppConfig.Idempotency config = appConfig.getIdempotency();
+        cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(config.getMaxSize()));
+        cache.policy().expireAfterWrite().ifPresent(expiration -> expiration.setExpiresAfter(config.getTtl()));
+    }
+
+    /**
+     * 本地占位
+     * @return null则占位成功，否则为已有的记录（处理中或已完成）
+     */
+    public Record putIfAbsent(String key, Record record) {
+        return cache.asMap().putIfAbsent(key, record);
+    }
+
+    /**
+     * Redis占位（本地占位成功后）
+     * @return 占位成功（Redis不可用时只在本地占位）、其它实例保存的响应或其它实例处理中
+     */
+    public Mono<Claim> claim(String key) {
+        if (!redisAvailable()){
+            return Mono.just(Claim.CLAIMED_LOCAL);
+        }
+
+        AppConfig.Idempotency config = appConfig.getIdempotency();
+        String redisKey = REDIS_KEY_PREFIX + key;
+        String inflight = INFLIGHT + ":" + UUID.randomUUID();
+        AtomicBoolean sent = new AtomicBoolean();
+        return redisTemplate.opsForValue().setIfAbsent(redisKey, inflight, config.getInflightTtl())
+                .doOnSubscribe(s -> sent.set(true))
+                .flatMap(claimed -> claimed ? Mono.just(Claim.CLAIMED) : redisTemplate.opsForValue().get(redisKey)
+                        .map(value -> value.startsWith(INFLIGHT) ? Claim.IN_PROGRESS
+                                : Claim.completed(JsonUtil.toObject(value, StoredResponse.class)))
+                        // 标记恰好过期，按处理中返回，客户端稍后重试
+                        .defaultIfEmpty(Claim.IN_PROGRESS))
+                .timeout(config.getRedisTimeout())
+                .onErrorResume(e -> {
+                    onRedisError("claim", key, e);
+                    // 连接失败时未写入
+                    if (sent.get() && !(e instanceof RedisConnectionFailureException)){
+                        releaseInflight(key, redisKey, inflight);
+                    }
+                    return Mono.just(Claim.CLAIMED_LOCAL);
+                });
+    }
+
+    /**
+     * 删除本次占位的标记（不等待结果，Redis暂停使用期间也执行）
+     */
+    private void releaseInflight(String key, String redisKey, String inflight) {
+        redisTemplate.execute(RELEASE_INFLIGHT, List.of(redisKey), List.of(inflight))
+                .timeout(appConfig.getIdempotency().getRedisTimeout())
+                .subscribe(deleted -> {
+                    if (deleted > 0){
+                        log.info("idempotency redis inflight released after claim failure: key={}", key);
+                    }
+                }, e -> log.warn("idempotency redis release inflight failed: key={}, error={}", key, e.toString()));
+    }
+
+    /**
+     * 保存完成的响应，并通知等待的请求
+     */
+    public Mono<Void> complete(String key, Record record, StoredResponse response) {
+        record.complete(response);
+        if (!redisAvailable()){
+            return Mono.empty();
+        }
+
+        AppConfig.Idempotency config = appConfig.getIdempotency();
+        return redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key, JsonUtil.toJson(response), config.getTtl())
+                .timeout(config.getRedisTimeout())
+                .onErrorResume(e -> {
+                    onRedisError("complete", key, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 只在本地保存其它实例的响应
+     */
+    public void completeLocal(Record record, StoredResponse response) {
+        record.complete(response);
+    }
+
+    /**
+     * 释放占位（响应不保存、请求异常或被取消），之后的重复提交重新转发
+     * @param response 共享给等待请求的响应，为空时等待的请求返回处理中
+     * @param redisClaimed 是否已在Redis中占位
+     */
+    public Mono<Void> release(String key, Record record, StoredResponse response, boolean redisClaimed) {
+        if (record.getResponse() != null){
+            // 已保存（如写出响应时被取消）
+            return Mono.empty();
+        }
+        cache.asMap().remove(key, record);
+        record.release(response);
+        if (!redisClaimed || !redisAvailable()){
+            return Mono.empty();
+        }
+
+        return redisTemplate.delete(REDIS_KEY_PREFIX + key)
+                .timeout(appConfig.getIdempotency().getRedisTimeout())
+                .onErrorResume(e -> {
+                    onRedisError("release", key, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private boolean redisAvailable() {
+        return redisTemplate != null && System.nanoTime() - redisResumeAt >= 0;
+    }
+
+    private void onRedisError(String op, String key, Throwable e) {
+        redisErrors.increment();
+        redisResumeAt = System.nanoTime() + REDIS_BACKOFF_NANOS;
+        log.warn("idempotency redis {} failed, use local store: key={}, error={}", op, key, e.toString());
+    }
+
+    private static Cache<String, Record> buildCache(AppConfig.Idempotency config) {
+        return Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfterWrite(config.getTtl())
+                .build();
+    }
+
+    /**
+     * 本地记录：处理中时等待的请求订阅sink，完成后保存响应
+     */
+    public static class Record {
+
+        private final Sinks.One<StoredResponse> sink = Sinks.one();
+
+        private final String fingerprint;
+
+        private volatile StoredResponse response;
+
+        /**
+         * @param fingerprint 请求指纹，为空时不比较
+         */
+        public Record(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * 已完成的响应，处理中时为空
+         */
+        public StoredResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * 等待处理中的请求完成，占位被释放且无响应时返回InProgressException
+         */
+        public Mono<StoredResponse> await() {
+            return sink.asMono();
+        }
+
+        private void complete(StoredResponse response) {
+            this.response = response;
+            sink.tryEmitValue(response);
+        }
+
+        private void release(StoredResponse response) {
+            if (response != null){
+                sink.tryEmitValue(response);
+            } else {
+                sink.tryEmitError(new InProgressException());
+            }
+        }
+    }
+
+    /**
+     * Redis占位结果
+     */
+    public static class Claim {
+
+        static final Claim CLAIMED = new Claim(true, true, null);
+
+        static final Claim CLAIMED_LOCAL = new Claim(true, false, null);
+
+        static final Claim IN_PROGRESS = new Claim(false, true, null);
+
+        private final boolean claimed;
+
+        private final boolean redis;
+
+        private final StoredResponse response;
+
+        private Claim(boolean claimed, boolean redis, StoredResponse response) {
+            this.claimed = claimed;
+            this.redis = redis;
+            this.response = response;
+        }
+
+        static Claim completed(StoredResponse response) {
+            return new Claim(false, true, response);
+        }
+
+        /**
+         * 占位成功，当前请求转发
+         */
+        public boolean isClaimed() {
+            return claimed;
+        }
+
+        /**
+         * 是否已在Redis中占位
+         */
+        public boolean isRedisClaimed() {
+            return claimed && redis;
+        }
+
+        /**
+         * 其它实例保存的响应，处理中时为空
+         */
+        public StoredResponse getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * 相同请求处理中（其它实例，或本实例的请求异常、被取消）
+     */
+    public static class InProgressException extends RuntimeException {
+
+        private InProgressException() {
+            super("idempotent request in progress", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package spring.cloud.ali.gateway.component.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存的响应（本地记录共享同一实例，Redis中保存为JSON，响应体为Base64）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredResponse {
+
+    private int status;
+
+    /**
+     * 响应头，不含Content-Length、Transfer-Encoding
+     */
+    private Map<String, List<String>> headers;
+
+    private byte[] body;
+
+    /**
+     * 请求指纹（查询参数+请求体的SHA-256），相同幂等key的请求指纹不同时拒绝，为空时不比较
+     */
+    private String fingerprint;
+}
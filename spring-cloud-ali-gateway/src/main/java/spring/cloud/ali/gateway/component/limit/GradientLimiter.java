@@ -0,0 +1,113 @@
+package spring.cloud.ali.gateway.component.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发限制（Gradient算法）：
+ *  1. 长期RT（指数平均）作为无排队时的基线，单次请求RT作为当前RT
+ *  2. 梯度 = tolerance * 长期RT / 当前RT（取值0.5~1），RT上升时按梯度收缩限制，否则以队列余量缓慢增长
+ *  3. 并发数不足限制一半时（流量不足）不调整，避免限制无意义地增长
+ */
+public class GradientLimiter {
+
+    /**
+     * 长期RT预热的样本数（预热期内取算术平均）
+     */
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int queueSize;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final int longWindow;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile int limit;
+
+    /**
+     * 以下字段仅在onSample中（持有锁）访问
+     */
+    private double estimatedLimit;
+
+    private double longRtt;
+
+    private int samples;
+
+    public GradientLimiter(int initialLimit, int minLimit, int maxLimit, int queueSize,
+                           double tolerance, double smoothing, int longWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueSize = queueSize;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.longWindow = longWindow;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 获取并发许可
+     * @return false则已达到并发限制
+     */
+    public boolean tryAcquire() {
+        for (;;){
+            int current = inflight.get();
+            if (current >= limit){
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放许可并记录RT
+     * @param rttNanos 请求耗时（纳秒），小于等于0则不记录（如请求取消、失败）
+     */
+    public void release(long rttNanos) {
+        int current = inflight.getAndDecrement();
+        if (rttNanos > 0){
+            onSample(rttNanos, current);
+        }
+    }
+
+    private synchronized void onSample(long rtt, int currentInflight) {
+        samples++;
+        if (samples <= WARMUP_SAMPLES){
+            longRtt += (rtt - longRtt) / samples;
+        } else {
+            longRtt += (rtt - longRtt) * 2 / (longWindow + 1);
+        }
+
+        // 长期RT远高于当前RT时（如后端恢复），加速回落
+        if (longRtt / rtt > 2){
+            longRtt *= 0.95;
+        }
+
+        if (currentInflight < estimatedLimit / 2){
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rtt));
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
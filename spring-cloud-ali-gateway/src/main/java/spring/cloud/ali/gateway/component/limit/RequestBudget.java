@@ -0,0 +1,63 @@
+package spring.cloud.ali.gateway.component.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 额外请求（对冲、重试）预算：
+ *  1. 每个原始请求存入percent%个令牌，每个额外请求取出1个令牌
+ *  2. 令牌最多累积maxBurst个，额外请求数长期不超过原始请求数的percent%，避免放大过载
+ */
+public class RequestBudget {
+
+    /**
+     * 令牌精度（1个令牌 = SCALE个单位）
+     */
+    private static final long SCALE = 10000;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    private volatile long deposit;
+
+    private volatile long maxBalance;
+
+    public RequestBudget(double percent, int maxBurst) {
+        update(percent, maxBurst);
+    }
+
+    /**
+     * 更新预算（配置刷新时），已累积的令牌保留
+     */
+    public void update(double percent, int maxBurst) {
+        this.deposit = Math.round(percent / 100 * SCALE);
+        this.maxBalance = maxBurst * SCALE;
+    }
+
+    /**
+     * 原始请求存入令牌
+     */
+    public void deposit() {
+        long max = maxBalance;
+        long current;
+        do {
+            current = balance.get();
+            if (current >= max){
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(max, current + deposit)));
+    }
+
+    /**
+     * 额外请求取出令牌
+     * @return false则预算不足
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE){
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
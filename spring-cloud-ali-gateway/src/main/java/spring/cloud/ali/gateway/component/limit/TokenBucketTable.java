@@ -0,0 +1,148 @@
+package spring.cloud.ali.gateway.component.limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 按key（如用户、IP）限流的令牌桶表：
+ *  1. 令牌桶以GCRA实现，每个key仅保存一个long（理论到达时间TAT），CAS更新，无锁
+ *  2. 分段存储（stripes），按key的hash分段，清理时只遍历单个分段
+ *  3. TAT早于当前时间的key等同于满桶，可以直接删除：每个分段超过清理间隔后，由请求线程顺带清理，
+ *     内存只与最近burst/rate秒内活跃的key数相关
+ *  4. key总数超过上限（清理后仍超过）时，拒绝新key（不再占用内存，避免伪造大量key绕过限流），
+ *     已跟踪的key不受影响；拒绝数见overflows()，每个清理间隔最多打印一次告警
+ */
+@Slf4j
+public class TokenBucketTable {
+
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Map<String, AtomicLong>[] stripes;
+
+    private final AtomicLongArray lastSweeps;
+
+    private final int mask;
+
+    /**
+     * 每个令牌的间隔（纳秒）
+     */
+    private final long interval;
+
+    /**
+     * 满桶时允许的TAT提前量（纳秒）
+     */
+    private final long tolerance;
+
+    private final int maxKeysPerStripe;
+
+    private final LongSupplier clock;
+
+    /**
+     * 超过key上限被拒绝的请求数
+     */
+    private final LongAdder overflows = new LongAdder();
+
+    private final AtomicLong lastOverflowLog = new AtomicLong();
+
+    public TokenBucketTable(double ratePerSecond, int burst, int maxKeys) {
+        this(ratePerSecond, burst, maxKeys, 64, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    TokenBucketTable(double ratePerSecond, int burst, int maxKeys, int stripeCount, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Map[size];
+        for (int i = 0; i < size; i++){
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.lastSweeps = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.interval = (long) (1_000_000_000L / ratePerSecond);
+        this.tolerance = interval * Math.max(0, burst - 1);
+        this.maxKeysPerStripe = Math.max(1, maxKeys / size);
+        this.clock = clock;
+    }
+
+    /**
+     * 获取一个令牌
+     * @param key 限流key
+     * @return 0则获取成功，否则为需要等待的时间（纳秒）
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        int index = spread(key.hashCode()) & mask;
+        Map<String, AtomicLong> stripe = stripes[index];
+        sweepIfNeeded(index, stripe, now);
+
+        AtomicLong tat = stripe.get(key);
+        if (tat == null){
+            if (stripe.size() >= maxKeysPerStripe){
+                // 超过上限，拒绝新key
+                onOverflow(now);
+                return interval;
+            }
+            AtomicLong created = new AtomicLong(now + interval);
+            tat = stripe.putIfAbsent(key, created);
+            if (tat == null){
+                return 0;
+            }
+        }
+
+        for (;;){
+            long current = tat.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - interval - tolerance;
+            if (wait > 0){
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)){
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 当前key数
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, AtomicLong> stripe : stripes){
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * 超过key上限被拒绝的请求数
+     */
+    public long overflows() {
+        return overflows.sum();
+    }
+
+    private void onOverflow(long now) {
+        overflows.increment();
+        long lastLog = lastOverflowLog.get();
+        if ((lastLog == 0 || now - lastLog >= SWEEP_INTERVAL_NANOS) && lastOverflowLog.compareAndSet(lastLog, now)){
+            log.warn("token bucket table is full, new keys are rejected: size={}, overflows={}", size(), overflows.sum());
+        }
+    }
+
+    private void sweepIfNeeded(int index, Map<String, AtomicLong> stripe, long now) {
+        long lastSweep = lastSweeps.get(index);
+        if (now - lastSweep < SWEEP_INTERVAL_NANOS || !lastSweeps.compareAndSet(index, lastSweep, now)){
+            return;
+        }
+        // 满桶的key，与不存在等价
+        stripe.values().removeIf(tat -> tat.get() <= now);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
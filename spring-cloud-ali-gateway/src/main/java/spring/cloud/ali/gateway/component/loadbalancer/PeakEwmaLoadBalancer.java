@@ -0,0 +1,387 @@
+package spring.cloud.ali.gateway.component.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpStatusCode;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static spring.cloud.ali.common.component.discovery.RegisterTimeMetadata.REGISTER_TIME;
+
+/**
+ * 负载均衡（二选一 + 最少并发 + 峰值EWMA）：
+ *  1. 按实例统计并发请求数和耗时的峰值EWMA（耗时升高立即生效，降低按时间衰减）
+ *  2. 随机选两个实例，选择 EWMA * (并发数 + 1) 较小的实例，GC停顿的实例并发和耗时升高后很快不再被选中
+ *  3. 同时实现LoadBalancerLifecycle，网关路由和HttpWebFluxClient在请求开始和结束时回调，更新统计
+ *  4. 请求失败或响应5xx按failurePenalty记录耗时，避免快速失败的实例吸引流量
+ *  5. Reactor Context中的EXCLUDED_INSTANCES（如重试时已失败的实例）不参与选择，除非没有其他实例
+ *  6. 无耗时样本的实例（如新实例）按default-rtt计算，避免新实例因代价最低吸引全部流量
+ *  7. 慢启动：新注册的实例（元数据register-time，见RegisterTimeMetadata）在慢启动时长内代价除以权重，
+ *     权重从slowStartMinWeight逐渐升至1，避免JIT和连接池未预热的实例立即承担完整流量
+ *  8. 请求被取消时（如对冲失败的请求、超时、客户端断开）负载均衡不回调onComplete，
+ *     经cancellable()包装的调用在取消时释放并发数，每个请求只释放一次
+ */
+@Slf4j
+public class PeakEwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+        LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    /**
+     * EWMA衰减时间常数
+     */
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Reactor Context key，value：排除的实例（Set，元素为instanceKey）
+     */
+    public static final String EXCLUDED_INSTANCES = PeakEwmaLoadBalancer.class.getName() + ".excludedInstances";
+
+    /**
+     * Reactor Context key，value：CancelScope（记录调用中选择的实例，取消时释放并发数）
+     */
+    private static final String CANCEL_SCOPE = PeakEwmaLoadBalancer.class.getName() + ".cancelScope";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+
+    private final String serviceId;
+
+    private final Supplier<AppConfig.LoadBalancer> config;
+
+    private final LongSupplier clock;
+
+    /**
+     * 当前时间（毫秒），与注册时间比较
+     */
+    private final LongSupplier wallClock;
+
+    /**
+     * key：host:port
+     */
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    public PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                                Supplier<AppConfig.LoadBalancer> config) {
+        this(supplierProvider, serviceId, config, System::nanoTime, System::currentTimeMillis);
+    }
+
+    PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                         Supplier<AppConfig.LoadBalancer> config, LongSupplier clock, LongSupplier wallClock) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.config = config;
+        this.clock = clock;
+        this.wallClock = wallClock;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return Mono.deferContextual(ctx -> supplier.get(request).next().map(instances -> {
+            Response<ServiceInstance> response = choose(exclude(instances, ctx.getOrDefault(EXCLUDED_INSTANCES, null)));
+            if (supplier instanceof SelectedInstanceCallback && response.hasServer()){
+                ((SelectedInstanceCallback) supplier).selectedServiceInstance(response.getServer());
+            }
+            CancelScope scope = ctx.getOrDefault(CANCEL_SCOPE, null);
+            if (scope != null && response instanceof InflightResponse){
+                scope.add((InflightResponse) response);
+            }
+            return response;
+        }));
+    }
+
+    /**
+     * 包装经负载均衡的调用（网关过滤器链、WebClient请求），调用被取消时释放其中已开始请求的并发数
+     */
+    public static <T> Mono<T> cancellable(Mono<T> call) {
+        return Mono.defer(() -> {
+            CancelScope scope = new CancelScope();
+            return call.doOnCancel(scope::cancel)
+                    .contextWrite(ctx -> ctx.put(CANCEL_SCOPE, scope));
+        });
+    }
+
+    private static List<ServiceInstance> exclude(List<ServiceInstance> instances, Set<String> excluded) {
+        if (excluded == null || excluded.isEmpty()){
+            return instances;
+        }
+        List<ServiceInstance> remaining = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances){
+            if (!excluded.contains(instanceKey(instance))){
+                remaining.add(instance);
+            }
+        }
+        return remaining.isEmpty() ? instances : remaining;
+    }
+
+    /**
+     * 实例标识：host:port
+     */
+    public static String instanceKey(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()){
+            log.warn("no servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        if (instances.size() == 1){
+            return response(instances.get(0));
+        }
+        pruneIfNeeded(instances);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        int second = random.nextInt(instances.size() - 1);
+        if (second >= first){
+            second++;
+        }
+
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        AppConfig.LoadBalancer current = config.get();
+        long now = clock.getAsLong();
+        long wallNow = wallClock.getAsLong();
+        return response(cost(a, current, now, wallNow) <= cost(b, current, now, wallNow) ? a : b);
+    }
+
+    private InflightResponse response(ServiceInstance instance) {
+        return new InflightResponse(instance, stats(instance));
+    }
+
+    /**
+     * 慢启动权重（0-1），不在慢启动时为1
+     */
+    private static double slowStartWeight(ServiceInstance instance, AppConfig.LoadBalancer config, long now) {
+        long window = config.getSlowStartWindow().toMillis();
+        if (window <= 0){
+            return 1;
+        }
+        long registerTime = registerTime(instance);
+        if (registerTime <= 0 || now - registerTime >= window){
+            return 1;
+        }
+        double progress = (double) Math.max(0, now - registerTime) / window;
+        return Math.max(config.getSlowStartMinWeight(), Math.pow(progress, 1 / config.getSlowStartAggression()));
+    }
+
+    private static long registerTime(ServiceInstance instance) {
+        Map<String, String> metadata = instance.getMetadata();
+        String registerTime = metadata == null ? null : metadata.get(REGISTER_TIME);
+        if (registerTime == null){
+            return 0;
+        }
+        try {
+            return Long.parseLong(registerTime);
+        } catch (NumberFormatException e){
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+        if (request.getContext() instanceof TimedRequestContext){
+            ((TimedRequestContext) request.getContext()).setRequestStartTime(clock.getAsLong());
+        }
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse instanceof InflightResponse){
+            ((InflightResponse) lbResponse).start();
+        } else if (lbResponse.hasServer()){
+            stats(lbResponse.getServer()).inflight.incrementAndGet();
+        }
+        // 以实际发出请求的时间计时
+        onStart(request);
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (completionContext.status() == CompletionContext.Status.DISCARD || lbResponse == null || !lbResponse.hasServer()){
+            return;
+        }
+
+        InstanceStats instanceStats;
+        if (lbResponse instanceof InflightResponse){
+            InflightResponse inflightResponse = (InflightResponse) lbResponse;
+            if (!inflightResponse.finish()){
+                // 已在取消时释放
+                return;
+            }
+            instanceStats = inflightResponse.stats;
+        } else {
+            instanceStats = stats(lbResponse.getServer());
+            instanceStats.inflight.decrementAndGet();
+        }
+
+        Object context = completionContext.getLoadBalancerRequest().getContext();
+        if (!(context instanceof TimedRequestContext) || ((TimedRequestContext) context).getRequestStartTime() <= 0){
+            return;
+        }
+        long now = clock.getAsLong();
+        long rtt = now - ((TimedRequestContext) context).getRequestStartTime();
+        if (completionContext.status() == CompletionContext.Status.FAILED || isServerError(completionContext.getClientResponse())){
+            rtt = Math.max(rtt, FAILURE_PENALTY_NANOS);
+        }
+        instanceStats.observe(rtt, now);
+    }
+
+    private static boolean isServerError(Object clientResponse) {
+        if (!(clientResponse instanceof ResponseData)){
+            return false;
+        }
+        HttpStatusCode status = ((ResponseData) clientResponse).getHttpStatus();
+        return status != null && status.is5xxServerError();
+    }
+
+    /**
+     * 实例代价：EWMA * (并发数 + 1) / 慢启动权重，无样本的实例EWMA为default-rtt
+     */
+    private double cost(ServiceInstance instance, AppConfig.LoadBalancer config, long now, long wallNow) {
+        InstanceStats instanceStats = stats(instance);
+        double ewma = instanceStats.ewma(now);
+        if (ewma <= 0){
+            ewma = config.getDefaultRtt().toNanos();
+        }
+        return ewma * (instanceStats.inflight.get() + 1) / slowStartWeight(instance, config, wallNow);
+    }
+
+    private InstanceStats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(instanceKey(instance), k -> new InstanceStats());
+    }
+
+    /**
+     * 清理已下线实例的统计
+     */
+    private void pruneIfNeeded(List<ServiceInstance> instances) {
+        if (stats.size() <= instances.size() * 2){
+            return;
+        }
+        Set<String> current = new HashSet<>();
+        instances.forEach(i -> current.add(instanceKey(i)));
+        stats.keySet().retainAll(current);
+    }
+
+    int getInflight(ServiceInstance instance) {
+        return stats(instance).inflight.get();
+    }
+
+    /**
+     * 选择结果，记录该请求的并发数是否已释放（onComplete和取消只释放一次）
+     */
+    private static class InflightResponse extends DefaultResponse {
+
+        private static final int CHOSEN = 0;
+
+        private static final int STARTED = 1;
+
+        private static final int FINISHED = 2;
+
+        private final InstanceStats stats;
+
+        private final AtomicInteger state = new AtomicInteger(CHOSEN);
+
+        private InflightResponse(ServiceInstance instance, InstanceStats stats) {
+            super(instance);
+            this.stats = stats;
+        }
+
+        private void start() {
+            if (state.compareAndSet(CHOSEN, STARTED)){
+                stats.inflight.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return 是否由本次调用释放
+         */
+        private boolean finish() {
+            if (state.compareAndSet(STARTED, FINISHED)){
+                stats.inflight.decrementAndGet();
+                return true;
+            }
+            state.compareAndSet(CHOSEN, FINISHED);
+            return false;
+        }
+    }
+
+    private static class CancelScope {
+
+        private final Queue<InflightResponse> responses = new ConcurrentLinkedQueue<>();
+
+        private void add(InflightResponse response) {
+            responses.add(response);
+        }
+
+        private void cancel() {
+            InflightResponse response;
+            while ((response = responses.poll()) != null){
+                response.finish();
+            }
+        }
+    }
+
+    private static class InstanceStats {
+
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        private double ewma;
+
+        private long lastUpdate;
+
+        private synchronized void observe(long rtt, long now) {
+            double decayed = decay(now);
+            // 峰值：耗时升高立即生效
+            ewma = rtt > decayed ? rtt : decayed + (rtt - decayed) * (1 - weight(now));
+            lastUpdate = now;
+        }
+
+        private synchronized double ewma(long now) {
+            return decay(now);
+        }
+
+        private double decay(long now) {
+            return lastUpdate == 0 ? 0 : ewma * weight(now);
+        }
+
+        private double weight(long now) {
+            return Math.exp(-(double) Math.max(0, now - lastUpdate) / DECAY_NANOS);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package spring.cloud.ali.gateway.component.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+/**
+ * 负载均衡客户端配置（每个服务一个子上下文），不能被组件扫描，通过@LoadBalancerClients注册
+ * 返回具体类型，以便LoadBalancerLifecycle按类型查找到同一实例
+ */
+public class PeakEwmaLoadBalancerConfiguration {
+
+    @Bean
+    public PeakEwmaLoadBalancer peakEwmaLoadBalancer(Environment env, LoadBalancerClientFactory loadBalancerClientFactory,
+                                                     AppConfig appConfig){
+        String serviceId = env.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new PeakEwmaLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), serviceId,
+                appConfig::getLoadBalancer);
+    }
+}
@@ -0,0 +1,90 @@
+package spring.cloud.ali.gateway.component.login;
+
+import com.google.common.base.Strings;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import spring.cloud.ali.common.util.JwtTokenUtil;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.user.result.VerifyTokenResult;
+
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+import static spring.cloud.ali.user.result.VerifyTokenResult.NOT_PASS;
+
+/**
+ * 网关本地token校验（HS256签名+过期时间），与UserServiceImpl.verifyToken逻辑一致
+ *  1. 签名key来自nacos配置gateway.login.sign-key，配置刷新后重建解析器
+ *  2. 未配置签名key时不可用，由调用方回退到远程校验
+ */
+@Slf4j
+@Component
+public class LocalTokenVerifier {
+
+    @Autowired
+    private AppConfig appConfig;
+
+    private volatile JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        refreshParser();
+    }
+
+    /**
+     * 配置刷新后重建解析器（EnvironmentChangeEvent发生时，RefreshScope的AppConfig仍是旧实例）
+     */
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        refreshParser();
+    }
+
+    /**
+     * 是否可用（已配置签名key）
+     */
+    public boolean isAvailable() {
+        return parser != null;
+    }
+
+    /**
+     * 校验token
+     * @param token 登录token
+     * @return 校验结果，不可用时返回null
+     */
+    public VerifyTokenResult verify(String token) {
+        JwtParser current = parser;
+        if (current == null){
+            return null;
+        }
+
+        Claims claims;
+        try {
+            // 签名错误，过期等均会抛出JwtException
+            claims = current.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e){
+            log.warn("login token verify failed: {}", e.getMessage());
+            return NOT_PASS;
+        }
+
+        String loginUserId = claims.get(HTTP_HEADER_LOGIN_USER_ID, String.class);
+        if (Strings.isNullOrEmpty(loginUserId)){
+            return NOT_PASS;
+        }
+        try {
+            return new VerifyTokenResult(true, Long.valueOf(loginUserId));
+        } catch (NumberFormatException e){
+            return NOT_PASS;
+        }
+    }
+
+    private void refreshParser() {
+        String signKey = appConfig.getLogin().getSignKey();
+        parser = Strings.isNullOrEmpty(signKey) ? null : JwtTokenUtil.parser(signKey);
+        log.info("login token local verifier refreshed: available={}", parser != null);
+    }
+}
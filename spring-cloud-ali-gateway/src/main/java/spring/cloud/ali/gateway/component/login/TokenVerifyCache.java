@@ -0,0 +1,178 @@
+package spring.cloud.ali.gateway.component.login;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.common.util.JsonUtil;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.user.result.VerifyTokenResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 远程token校验结果缓存：
+ *  1. 按token的SHA-256缓存，同一token并发校验时共享同一个Mono（single-flight）
+ *  2. 校验通过的结果缓存到token过期时间（不超过passTtl），不通过的结果缓存notPassTtl
+ *  3. 远程调用异常不缓存
+ */
+@Slf4j
+@Component
+public class TokenVerifyCache {
+
+    private static final String METRIC_NAME = "ali_gateway_login_verify_cache";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile Cache<String, CachedResult> cache;
+
+    /**
+     * 正在校验中的token
+     */
+    private final Map<String, Mono<VerifyTokenResult>> inflight = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter coalesceCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = meterRegistry.counter(METRIC_NAME, "result", "hit");
+        missCounter = meterRegistry.counter(METRIC_NAME, "result", "miss");
+        coalesceCounter = meterRegistry.counter(METRIC_NAME, "result", "coalesce");
+        cache = buildCache(appConfig.getLogin().getVerifyCache());
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        cache = buildCache(appConfig.getLogin().getVerifyCache());
+    }
+
+    /**
+     * 获取token校验结果
+     * @param token 登录token
+     * @param loader 远程校验
+     * @return 校验结果
+     */
+    public Mono<VerifyTokenResult> get(String token, Function<String, Mono<VerifyTokenResult>> loader) {
+        Cache<String, CachedResult> current = cache;
+        if (current == null){
+            return loader.apply(token);
+        }
+
+        String key = Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+        CachedResult cached = current.getIfPresent(key);
+        if (cached != null){
+            hitCounter.increment();
+            return Mono.just(cached.result);
+        }
+
+        boolean[] created = new boolean[1];
+        Mono<VerifyTokenResult> shared = inflight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return loader.apply(token)
+                    .doOnNext(result -> current.put(k, new CachedResult(result, ttlNanos(token, result))))
+                    .doFinally(s -> inflight.remove(k))
+                    .cache();
+        });
+
+        if (created[0]){
+            missCounter.increment();
+        } else {
+            coalesceCounter.increment();
+        }
+        return shared;
+    }
+
+    private long ttlNanos(String token, VerifyTokenResult result) {
+        AppConfig.VerifyCache config = appConfig.getLogin().getVerifyCache();
+        if (!result.isPass()){
+            return config.getNotPassTtl().toNanos();
+        }
+
+        long passTtl = config.getPassTtl().toNanos();
+        long expireAt = parseExpireAt(token);
+        if (expireAt <= 0){
+            return passTtl;
+        }
+        long remaining = TimeUnit.SECONDS.toNanos(expireAt) - TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        return Math.max(0, Math.min(passTtl, remaining));
+    }
+
+    /**
+     * 读取token的exp（秒），token已由远程校验通过，此处无需再验签
+     */
+    private static long parseExpireAt(String token) {
+        int start = token.indexOf('.');
+        int end = token.indexOf('.', start + 1);
+        if (start < 0 || end < 0){
+            return -1;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(start + 1, end));
+            JsonNode exp = JsonUtil.toJsonNode(new String(payload, StandardCharsets.UTF_8)).get("exp");
+            return exp == null ? -1 : exp.asLong();
+        } catch (RuntimeException e){
+            log.warn("failed to parse token exp: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private static Cache<String, CachedResult> buildCache(AppConfig.VerifyCache config) {
+        if (!config.isEnabled()){
+            return null;
+        }
+        return Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfter(new Expiry<String, CachedResult>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResult value, long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResult value, long currentTime, long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResult value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    private static class CachedResult {
+
+        private final VerifyTokenResult result;
+
+        private final long ttlNanos;
+
+        private CachedResult(VerifyTokenResult result, long ttlNanos) {
+            this.result = result;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
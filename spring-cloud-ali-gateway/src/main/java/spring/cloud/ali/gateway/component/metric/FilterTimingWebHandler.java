@@ -0,0 +1,204 @@
+package spring.cloud.ali.gateway.component.metric;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 统计各过滤器耗时（替换网关默认的FilteringWebHandler，过滤器链的组成和顺序与默认一致）：
+ *  1. 覆盖完整过滤器链（全局和路由过滤器），每个过滤器记录自身耗时 = 从进入到完成的耗时 - 下游过滤器链的耗时，
+ *     各过滤器之和约为请求总耗时，转发过滤器（GlobalRoutingFilter）的耗时即上游耗时
+ *  2. 过滤器名为类名（路由过滤器为创建它的GatewayFilterFactory，如RouteLoginFilter）
+ *  3. 每个路由的过滤器链和各过滤器的Timer在首次请求时创建，路由刷新（Route实例变化）后重建，请求时不再排序和查找指标
+ *  4. 指标：ali_gateway_filter_timer{service,filter}，gateway.metric.filter-timer默认关闭（每个过滤器增加一次计时）
+ */
+public class FilterTimingWebHandler extends FilteringWebHandler {
+
+    private static final String METRIC_NAME = "ali_gateway_filter_timer";
+
+    /**
+     * 过滤器类的名称：lambda、CGLIB代理和匿名类取所在的类，如 RouteLoginFilter$$Lambda$123 为RouteLoginFilter
+     */
+    private static final ClassValue<String> FILTER_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+            int generated = name.indexOf("$$");
+            if (generated > 0){
+                name = name.substring(0, generated);
+            }
+            String[] nested = name.split("\\$");
+            for (int i = nested.length - 1; i > 0; i--){
+                if (!nested[i].isEmpty() && !Character.isDigit(nested[i].charAt(0))){
+                    return nested[i];
+                }
+            }
+            return nested[0];
+        }
+    };
+
+    private final List<GatewayFilter> globalFilters;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AppConfig appConfig;
+
+    /**
+     * key：routeId，value：该路由排序后的过滤器链及对应的耗时
+     */
+    private final Map<String, TimedRoute> timedRoutes = new ConcurrentHashMap<>();
+
+    public FilterTimingWebHandler(List<GlobalFilter> globalFilters, MeterRegistry meterRegistry, AppConfig appConfig) {
+        super(globalFilters);
+        this.globalFilters = loadFilters(globalFilters);
+        this.meterRegistry = meterRegistry;
+        this.appConfig = appConfig;
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange) {
+        if (!appConfig.getMetric().isFilterTimer()){
+            return super.handle(exchange);
+        }
+
+        Route route = exchange.getRequiredAttribute(GATEWAY_ROUTE_ATTR);
+        TimedRoute timedRoute = timedRoutes.get(route.getId());
+        if (timedRoute == null || timedRoute.route != route){
+            timedRoute = new TimedRoute(route);
+            timedRoutes.put(route.getId(), timedRoute);
+        }
+        return new TimedChain(timedRoute, 0).filter(exchange);
+    }
+
+    /**
+     * 与FilteringWebHandler相同：实现Ordered的全局过滤器按getOrder()排序，其余保持注入顺序
+     */
+    private static List<GatewayFilter> loadFilters(List<GlobalFilter> filters) {
+        List<GatewayFilter> loaded = new ArrayList<>(filters.size());
+        for (GlobalFilter filter : filters){
+            GlobalFilterAdapter adapter = new GlobalFilterAdapter(filter);
+            loaded.add(filter instanceof Ordered ? new OrderedGatewayFilter(adapter, ((Ordered) filter).getOrder()) : adapter);
+        }
+        return loaded;
+    }
+
+    static String filterName(GatewayFilter filter) {
+        if (filter instanceof OrderedGatewayFilter){
+            filter = ((OrderedGatewayFilter) filter).getDelegate();
+        }
+        if (filter instanceof GlobalFilterAdapter){
+            return FILTER_NAMES.get(((GlobalFilterAdapter) filter).delegate.getClass());
+        }
+        return FILTER_NAMES.get(filter.getClass());
+    }
+
+    private Timer timer(String routeId, GatewayFilter filter) {
+        // 同名过滤器（如同一工厂创建的多个路由过滤器）共用一个Timer，由MeterRegistry去重
+        return Timer.builder(METRIC_NAME)
+                .tags("service", routeId, "filter", filterName(filter))
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.99)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .distributionStatisticExpiry(Duration.ofMinutes(5))
+                .register(meterRegistry);
+    }
+
+    private class TimedRoute {
+
+        private final Route route;
+
+        private final GatewayFilter[] filters;
+
+        private final Timer[] timers;
+
+        private TimedRoute(Route route) {
+            List<GatewayFilter> combined = new ArrayList<>(globalFilters);
+            combined.addAll(route.getFilters());
+            AnnotationAwareOrderComparator.sort(combined);
+
+            this.route = route;
+            this.filters = combined.toArray(new GatewayFilter[0]);
+            this.timers = new Timer[filters.length];
+            for (int i = 0; i < filters.length; i++){
+                timers[i] = timer(route.getId(), filters[i]);
+            }
+        }
+    }
+
+    private static class TimedChain implements GatewayFilterChain {
+
+        private final TimedRoute timedRoute;
+
+        private final int index;
+
+        private TimedChain(TimedRoute timedRoute, int index) {
+            this.timedRoute = timedRoute;
+            this.index = index;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            return Mono.defer(() -> {
+                if (index >= timedRoute.filters.length){
+                    return Mono.empty();
+                }
+
+                GatewayFilter filter = timedRoute.filters[index];
+                Timer timer = timedRoute.timers[index];
+                TimedChain next = new TimedChain(timedRoute, index + 1);
+                // 下游过滤器链的耗时（可能被订阅多次，如重试、对冲），在完成信号传给上游前累加
+                AtomicLong downstream = new AtomicLong();
+                long startTime = System.nanoTime();
+                Runnable record = () -> timer.record(
+                        Math.max(0, System.nanoTime() - startTime - downstream.get()), TimeUnit.NANOSECONDS);
+                return filter.filter(exchange, ex -> Mono.defer(() -> {
+                            long downstreamStart = System.nanoTime();
+                            Runnable elapsed = () -> downstream.addAndGet(System.nanoTime() - downstreamStart);
+                            return next.filter(ex).doOnTerminate(elapsed).doOnCancel(elapsed);
+                        }))
+                        .doOnTerminate(record)
+                        .doOnCancel(record);
+            });
+        }
+    }
+
+    private static class GlobalFilterAdapter implements GatewayFilter {
+
+        private final GlobalFilter delegate;
+
+        private GlobalFilterAdapter(GlobalFilter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return delegate.filter(exchange, chain);
+        }
+
+        @Override
+        public String toString() {
+            return "GlobalFilterAdapter{delegate=" + delegate + "}";
+        }
+    }
+}
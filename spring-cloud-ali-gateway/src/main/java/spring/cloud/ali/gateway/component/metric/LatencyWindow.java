@@ -0,0 +1,56 @@
+package spring.cloud.ali.gateway.component.metric;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近请求耗时窗口（环形数组，最近size个样本）：
+ *  1. 记录样本无锁，覆盖最旧的样本
+ *  2. 分位数每refreshInterval个样本重新计算一次，读取时不排序
+ */
+public class LatencyWindow {
+
+    private final double percentile;
+
+    private final int refreshInterval;
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * 当前分位数（纳秒），样本不足一个窗口时为-1
+     */
+    private volatile long value = -1;
+
+    public LatencyWindow(int size, double percentile, int refreshInterval) {
+        this.samples = new AtomicLongArray(size);
+        this.percentile = percentile;
+        this.refreshInterval = refreshInterval;
+    }
+
+    public void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % samples.length()), nanos);
+        if (n + 1 >= samples.length() && (n + 1) % refreshInterval == 0){
+            refresh();
+        }
+    }
+
+    /**
+     * @return 分位数（纳秒），样本不足时为-1
+     */
+    public long getValue() {
+        return value;
+    }
+
+    private void refresh() {
+        long[] sorted = new long[samples.length()];
+        for (int i = 0; i < sorted.length; i++){
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        value = sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
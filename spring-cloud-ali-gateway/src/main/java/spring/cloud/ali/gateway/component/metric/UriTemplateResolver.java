@@ -0,0 +1,104 @@
+package spring.cloud.ali.gateway.component.metric;
+
+import spring.cloud.ali.gateway.component.sentinel.ResourceMatcher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+
+/**
+ * 请求路径模板解析（用于限制指标uri标签的基数）
+ *  1. 优先使用配置的路径模板，如：GET#/users/{userId}
+ *  2. 未命中模板时，将数字、UUID、长十六进制等路径段归一化为{id}
+ */
+public class UriTemplateResolver {
+
+    public static final String VARIABLE_SEGMENT = "{id}";
+
+    /**
+     * key：路由ID，value：由配置模板编译的匹配器
+     */
+    private final Map<String, ResourceMatcher> routeTemplates;
+
+    public UriTemplateResolver(Map<String, List<String>> uriTemplates) {
+        if (uriTemplates == null || uriTemplates.isEmpty()){
+            this.routeTemplates = Collections.emptyMap();
+            return;
+        }
+        Map<String, ResourceMatcher> compiled = new HashMap<>();
+        uriTemplates.forEach((routeId, templates) -> {
+            List<String> resources = templates.stream()
+                    .map(t -> routeId + SENTINEL_RULE_SPLITTER + t)
+                    .collect(Collectors.toList());
+            compiled.put(routeId, ResourceMatcher.compile(routeId, resources));
+        });
+        this.routeTemplates = compiled;
+    }
+
+    /**
+     * 解析路径模板
+     * @param routeId 路由ID
+     * @param method 请求方法
+     * @param path 请求路径
+     * @return 指标key：routeId#METHOD#/path/{var}
+     */
+    public String resolve(String routeId, String method, String path) {
+        ResourceMatcher matcher = routeTemplates.get(routeId);
+        if (matcher != null){
+            String matched = matcher.match(method, path);
+            if (matched != null){
+                return matched;
+            }
+        }
+        return routeId + SENTINEL_RULE_SPLITTER + method + SENTINEL_RULE_SPLITTER + normalize(path);
+    }
+
+    /**
+     * 归一化路径，如/users/123 -> /users/{id}
+     */
+    static String normalize(String path) {
+        StringBuilder normalized = null;
+        int segmentStart = 1;
+        int len = path.length();
+        for (int i = 1; i <= len; i++){
+            if (i < len && path.charAt(i) != '/'){
+                continue;
+            }
+            boolean variable = isVariable(path, segmentStart, i);
+            if (variable && normalized == null){
+                normalized = new StringBuilder(len).append(path, 0, segmentStart);
+            }
+            if (normalized != null){
+                normalized.append(variable ? VARIABLE_SEGMENT : path.substring(segmentStart, i));
+                if (i < len){
+                    normalized.append('/');
+                }
+            }
+            segmentStart = i + 1;
+        }
+        return normalized == null ? path : normalized.toString();
+    }
+
+    private static boolean isVariable(String path, int start, int end) {
+        if (end <= start){
+            return false;
+        }
+        boolean allDigits = true;
+        boolean hexLike = true;
+        for (int i = start; i < end; i++){
+            char c = path.charAt(i);
+            if (c < '0' || c > '9'){
+                allDigits = false;
+            }
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F' || c == '-')){
+                hexLike = false;
+            }
+        }
+        // 纯数字ID，或UUID/十六进制串（长度>=16）
+        return allDigits || hexLike && end - start >= 16;
+    }
+}
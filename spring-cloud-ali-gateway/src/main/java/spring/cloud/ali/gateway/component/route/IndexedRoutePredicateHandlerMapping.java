@@ -0,0 +1,131 @@
+package spring.cloud.ali.gateway.component.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.config.GatewayConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * 按Path索引查找路由（替换网关默认的RoutePredicateHandlerMapping，默认按顺序对每个路由匹配断言）：
+ *  1. 路由配置（gateway.routes）的Path模式预编译为路径段前缀树（RouteIndex），请求只对候选路由按顺序完整匹配断言，结果与默认一致
+ *  2. 路由配置变化（EnvironmentChangeEvent）和路由缓存刷新（RefreshRoutesResultEvent）时重建索引，
+ *     索引未建立或重建失败时完整匹配所有路由
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping {
+
+    private final RouteLocator routeLocator;
+
+    private final GatewayConfig gatewayConfig;
+
+    private volatile RouteIndex index;
+
+    /**
+     * 重建序号，并发重建时只使用最后一次的结果
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment,
+                                               GatewayConfig gatewayConfig) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.gatewayConfig = gatewayConfig;
+    }
+
+    @EventListener
+    public void onRefreshRoutesResult(RefreshRoutesResultEvent event) {
+        if (event.isSuccess()){
+            rebuild();
+        }
+    }
+
+    @EventListener
+    public void onApplicationEnvChanged(EnvironmentChangeEvent event) {
+        for (String key : event.getKeys()){
+            if (key.startsWith("spring.cloud.gateway.routes")){
+                // 路由信息发生变化
+                rebuild();
+                break;
+            }
+        }
+    }
+
+    void rebuild() {
+        long gen = generation.incrementAndGet();
+        long startTime = System.nanoTime();
+        routeLocator.getRoutes()
+                .collectList()
+                .subscribe(routes -> {
+                    RouteIndex built = RouteIndex.build(routes, definitions());
+                    if (generation.get() == gen){
+                        index = built;
+                        log.info("route index rebuilt: routes={}, indexed={}, cost={}us", built.size(), built.indexed(),
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+                    }
+                }, e -> {
+                    if (generation.get() == gen){
+                        index = null;
+                    }
+                    log.error("failed to rebuild route index, match all routes", e);
+                });
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        RouteIndex current = index;
+        if (current == null){
+            return super.lookupRoute(exchange);
+        }
+
+        List<Route> candidates = current.candidates(exchange.getRequest().getPath().pathWithinApplication());
+        if (candidates.isEmpty()){
+            return Mono.empty();
+        }
+        return Flux.fromIterable(candidates)
+                .concatMap(route -> Mono.just(route)
+                        .filterWhen(r -> {
+                            exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                            return r.getPredicate().apply(exchange);
+                        })
+                        .doOnError(e -> log.error("Error applying predicate for route: {}", route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next()
+                .map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    private Map<String, RouteDefinition> definitions() {
+        List<RouteDefinition> routes = gatewayConfig.getRoutes();
+        if (routes == null){
+            return Collections.emptyMap();
+        }
+        Map<String, RouteDefinition> definitions = new HashMap<>(routes.size() * 2);
+        for (RouteDefinition route : routes){
+            definitions.put(route.getId(), route);
+        }
+        return definitions;
+    }
+}
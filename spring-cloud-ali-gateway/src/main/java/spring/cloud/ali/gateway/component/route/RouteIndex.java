@@ -0,0 +1,216 @@
+package spring.cloud.ali.gateway.component.route;
+
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.http.server.PathContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路由Path索引（按路径段的前缀树）：
+ *  1. 路由的Path模式在第一个非字面量段（变量、通配符、编码字符）处截断，如 /users/{userId}/** 截断为 /users，路由挂在截断处的节点上
+ *  2. 查找时沿请求路径的各段向下，经过的节点上的路由为候选（Path可能匹配的路由的超集），按路由顺序返回，由调用方完整匹配断言
+ *  3. 无法索引的路由（无Path断言、不在gateway配置中、模式以非字面量段开头）挂在根节点，始终作为候选
+ */
+final class RouteIndex {
+
+    private static final String PATH_PREDICATE = "Path";
+
+    private final Node root;
+
+    /**
+     * 按顺序的路由，节点中保存下标
+     */
+    private final Route[] routes;
+
+    /**
+     * 挂在根节点以外的路由数
+     */
+    private final int indexed;
+
+    private RouteIndex(Node root, Route[] routes, int indexed) {
+        this.root = root;
+        this.routes = routes;
+        this.indexed = indexed;
+    }
+
+    /**
+     * @param routes 按顺序的路由（CachingRouteLocator）
+     * @param definitions key：路由ID，value：路由配置
+     */
+    static RouteIndex build(List<Route> routes, Map<String, RouteDefinition> definitions) {
+        BuildNode root = new BuildNode();
+        int indexed = 0;
+        for (int i = 0; i < routes.size(); i++){
+            List<String> patterns = pathPatterns(definitions.get(routes.get(i).getId()));
+            if (patterns == null){
+                root.routes.add(i);
+                continue;
+            }
+
+            boolean nested = false;
+            for (String pattern : patterns){
+                BuildNode node = root;
+                for (String segment : literalPrefix(pattern)){
+                    node = node.children.computeIfAbsent(segment, k -> new BuildNode());
+                }
+                if (!node.routes.contains(i)){
+                    node.routes.add(i);
+                }
+                nested |= node != root;
+            }
+            if (nested){
+                indexed++;
+            }
+        }
+        return new RouteIndex(root.freeze(), routes.toArray(new Route[0]), indexed);
+    }
+
+    /**
+     * 候选路由（按路由顺序）
+     * @param path 请求路径（pathWithinApplication，与Path断言一致）
+     */
+    List<Route> candidates(PathContainer path) {
+        int[] first = root.routes;
+        int[] merged = null;
+        int size = first.length;
+
+        Node node = root;
+        for (PathContainer.Element element : path.elements()){
+            if (!(element instanceof PathContainer.PathSegment)){
+                continue;
+            }
+            node = node.children.get(((PathContainer.PathSegment) element).valueToMatch());
+            if (node == null){
+                break;
+            }
+            if (node.routes.length == 0){
+                continue;
+            }
+            if (merged == null){
+                merged = Arrays.copyOf(first, size + node.routes.length);
+            } else if (merged.length < size + node.routes.length){
+                merged = Arrays.copyOf(merged, Math.max(merged.length * 2, size + node.routes.length));
+            }
+            System.arraycopy(node.routes, 0, merged, size, node.routes.length);
+            size += node.routes.length;
+        }
+
+        if (merged == null){
+            return toRoutes(first, first.length);
+        }
+        // 同一路由的多个模式可能挂在路径上的多个节点
+        Arrays.sort(merged, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++){
+            if (i == 0 || merged[i] != merged[i - 1]){
+                merged[distinct++] = merged[i];
+            }
+        }
+        return toRoutes(merged, distinct);
+    }
+
+    int size() {
+        return routes.length;
+    }
+
+    int indexed() {
+        return indexed;
+    }
+
+    private List<Route> toRoutes(int[] positions, int size) {
+        List<Route> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            result.add(routes[positions[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * 路由的Path模式（多个Path断言时取第一个，各断言同时满足才匹配），无法索引时为空
+     */
+    private static List<String> pathPatterns(RouteDefinition definition) {
+        if (definition == null){
+            return null;
+        }
+        for (PredicateDefinition predicate : definition.getPredicates()){
+            if (!PATH_PREDICATE.equals(predicate.getName())){
+                continue;
+            }
+            List<String> patterns = new ArrayList<>();
+            for (Map.Entry<String, String> arg : predicate.getArgs().entrySet()){
+                // 简写：Path=/a/**,/b/**（_genkey_0, _genkey_1...），完整写法：patterns
+                if (!arg.getKey().startsWith("_genkey_") && !arg.getKey().startsWith("patterns")){
+                    continue;
+                }
+                for (String value : arg.getValue().split(",")){
+                    String pattern = value.trim();
+                    if (pattern.isEmpty() || "true".equals(pattern) || "false".equals(pattern)){
+                        // matchTrailingSlash
+                        continue;
+                    }
+                    if (!pattern.startsWith("/")){
+                        return null;
+                    }
+                    patterns.add(pattern);
+                }
+            }
+            return patterns.isEmpty() ? null : patterns;
+        }
+        return null;
+    }
+
+    /**
+     * 模式开头的字面量段，如 /users/{userId}/** 为 [users]
+     */
+    private static List<String> literalPrefix(String pattern) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.substring(1).split("/", -1)){
+            if (segment.isEmpty() || !isLiteral(segment)){
+                break;
+            }
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++){
+            char c = segment.charAt(i);
+            if (c == '{' || c == '}' || c == '*' || c == '?' || c == '%' || c == ';'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children;
+
+        private final int[] routes;
+
+        private Node(Map<String, Node> children, int[] routes) {
+            this.children = children;
+            this.routes = routes;
+        }
+    }
+
+    private static final class BuildNode {
+
+        private final Map<String, BuildNode> children = new HashMap<>();
+
+        private final List<Integer> routes = new ArrayList<>();
+
+        private Node freeze() {
+            Map<String, Node> frozen = new HashMap<>(children.size() * 2);
+            children.forEach((segment, child) -> frozen.put(segment, child.freeze()));
+            return new Node(frozen, routes.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
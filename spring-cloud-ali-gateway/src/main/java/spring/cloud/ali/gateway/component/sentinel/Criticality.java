@@ -0,0 +1,45 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+/**
+ * 请求重要性（过载时按重要性从低到高拒绝）
+ */
+public enum Criticality {
+
+    /**
+     * 核心请求，最后拒绝，如：登录、下单
+     */
+    CRITICAL,
+
+    /**
+     * 普通请求
+     */
+    DEFAULT,
+
+    /**
+     * 可丢弃请求，最先拒绝，如：后台轮询
+     */
+    SHEDDABLE;
+
+    /**
+     * 解析重要性（忽略大小写）
+     * @return 无法解析时返回null
+     */
+    public static Criticality parse(String value) {
+        if (value == null){
+            return null;
+        }
+        for (Criticality c : values()){
+            if (c.name().equalsIgnoreCase(value.trim())){
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 重要性是否低于另一个
+     */
+    public boolean lowerThan(Criticality other) {
+        return ordinal() > other.ordinal();
+    }
+}
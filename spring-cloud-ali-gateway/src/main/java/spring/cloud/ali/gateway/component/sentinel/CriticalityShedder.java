@@ -0,0 +1,224 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import com.alibaba.csp.sentinel.slots.system.SystemRuleManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+
+/**
+ * 按请求重要性拒绝（系统过载时先拒绝可丢弃请求，最后拒绝核心请求）：
+ *  1. 重要性来自路由元数据，未配置时为DEFAULT：
+ *       metadata:
+ *         criticality: DEFAULT                         # 路由默认重要性
+ *         critical-paths: POST#/orders/create          # 核心路径，逗号分隔或列表，格式同Sentinel规则资源
+ *         sheddable-paths: GET#/orders/poll
+ *     客户端可通过请求头（gateway.criticality.header）声明更低的重要性，不能提高
+ *  2. 系统压力来自Sentinel采集的CPU使用率和系统负载（每秒更新），按重要性分别计算：
+ *       压力 = max(CPU使用率 / CPU阈值, 每核负载 / 负载阈值)，超过1后按 (压力 - 1) / ramp 的概率拒绝
+ *  3. 指标：ali_gateway_criticality_requests{criticality, result=admitted|shed}
+ */
+@Slf4j
+@Component
+public class CriticalityShedder {
+
+    public static final String METADATA_CRITICALITY = "criticality";
+
+    public static final String METADATA_CRITICAL_PATHS = "critical-paths";
+
+    public static final String METADATA_SHEDDABLE_PATHS = "sheddable-paths";
+
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile AppConfig.CriticalityShed config;
+
+    private DoubleSupplier cpuUsage = SystemRuleManager::getCurrentCpuUsage;
+
+    private DoubleSupplier systemLoad = SystemRuleManager::getCurrentSystemAvgLoad;
+
+    /**
+     * key：路由ID，value：路由重要性配置（路由元数据变化时重建）
+     */
+    private final Map<String, RouteCriticality> routes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        refreshConfig();
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        refreshConfig();
+    }
+
+    /**
+     * 解析请求重要性
+     */
+    public Criticality resolve(Route route, ServerHttpRequest req) {
+        Criticality criticality = routeCriticality(route).resolve(req.getMethod().name(), req.getPath().value());
+
+        // 客户端只能声明更低的重要性
+        Criticality declared = Criticality.parse(req.getHeaders().getFirst(config.getHeader()));
+        if (declared != null && declared.lowerThan(criticality)){
+            return declared;
+        }
+        return criticality;
+    }
+
+    /**
+     * 是否拒绝
+     * @param route 路由
+     * @param criticality 请求重要性
+     * @return true则直接拒绝
+     */
+    public boolean shouldShed(Route route, Criticality criticality) {
+        AppConfig.CriticalityShed current = config;
+        if (!current.isEnabled()){
+            return false;
+        }
+
+        RouteCriticality rc = routeCriticality(route);
+        double rejectProbability = rejectProbability(current, criticality);
+        if (rejectProbability > 0 && ThreadLocalRandom.current().nextDouble() < rejectProbability){
+            rc.shed[criticality.ordinal()].increment();
+            return true;
+        }
+        rc.admitted[criticality.ordinal()].increment();
+        return false;
+    }
+
+    private double rejectProbability(AppConfig.CriticalityShed current, Criticality criticality) {
+        AppConfig.ShedThreshold threshold = current.getThresholds().get(criticality);
+        if (threshold == null){
+            return 0;
+        }
+
+        double pressure = cpuUsage.getAsDouble() / threshold.getCpu();
+        double load = systemLoad.getAsDouble();
+        if (load > 0){
+            // 负载不可用时为负数
+            pressure = Math.max(pressure, load / AVAILABLE_PROCESSORS / threshold.getLoad());
+        }
+        if (pressure <= 1){
+            return 0;
+        }
+        return Math.min(1, (pressure - 1) / current.getRamp());
+    }
+
+    private RouteCriticality routeCriticality(Route route) {
+        RouteCriticality rc = routes.get(route.getId());
+        if (rc == null || rc.metadata != route.getMetadata()){
+            rc = routes.compute(route.getId(), (id, current) -> current == null || current.metadata != route.getMetadata()
+                    ? new RouteCriticality(route, current) : current);
+        }
+        return rc;
+    }
+
+    private void refreshConfig() {
+        config = appConfig.getCriticality();
+        log.info("criticality shed config refreshed: {}", config);
+    }
+
+    private class RouteCriticality {
+
+        private final Map<String, Object> metadata;
+
+        private final Criticality defaultCriticality;
+
+        /**
+         * 核心路径和可丢弃路径，资源格式：routeId#METHOD#/path
+         */
+        private final ResourceMatcher critical;
+
+        private final ResourceMatcher sheddable;
+
+        private final Counter[] admitted = new Counter[Criticality.values().length];
+
+        private final Counter[] shed = new Counter[Criticality.values().length];
+
+        private RouteCriticality(Route route, RouteCriticality previous) {
+            String routeId = route.getId();
+            this.metadata = route.getMetadata();
+
+            Object value = metadata.get(METADATA_CRITICALITY);
+            Criticality c = value == null ? null : Criticality.parse(value.toString());
+            this.defaultCriticality = c == null ? Criticality.DEFAULT : c;
+            this.critical = ResourceMatcher.compile(routeId, resources(routeId, metadata.get(METADATA_CRITICAL_PATHS)));
+            this.sheddable = ResourceMatcher.compile(routeId, resources(routeId, metadata.get(METADATA_SHEDDABLE_PATHS)));
+
+            if (previous != null){
+                System.arraycopy(previous.admitted, 0, admitted, 0, admitted.length);
+                System.arraycopy(previous.shed, 0, shed, 0, shed.length);
+            } else {
+                for (Criticality criticality : Criticality.values()){
+                    String name = criticality.name().toLowerCase();
+                    admitted[criticality.ordinal()] = meterRegistry.counter("ali_gateway_criticality_requests",
+                            "service", routeId, "criticality", name, "result", "admitted");
+                    shed[criticality.ordinal()] = meterRegistry.counter("ali_gateway_criticality_requests",
+                            "service", routeId, "criticality", name, "result", "shed");
+                }
+            }
+            log.info("route criticality created: routeId={}, default={}, critical={}, sheddable={}",
+                    routeId, defaultCriticality, metadata.get(METADATA_CRITICAL_PATHS), metadata.get(METADATA_SHEDDABLE_PATHS));
+        }
+
+        private Criticality resolve(String method, String path) {
+            if (!critical.isEmpty() && critical.match(method, path) != null){
+                return Criticality.CRITICAL;
+            }
+            if (!sheddable.isEmpty() && sheddable.match(method, path) != null){
+                return Criticality.SHEDDABLE;
+            }
+            return defaultCriticality;
+        }
+
+        /**
+         * 元数据中的路径：逗号分隔的字符串，或列表（绑定为集合或以下标为key的Map）
+         */
+        private List<String> resources(String routeId, Object paths) {
+            Collection<?> values;
+            if (paths == null){
+                return Collections.emptyList();
+            } else if (paths instanceof Collection){
+                values = (Collection<?>) paths;
+            } else if (paths instanceof Map){
+                values = ((Map<?, ?>) paths).values();
+            } else {
+                values = List.of(paths.toString().split(","));
+            }
+
+            List<String> resources = new ArrayList<>(values.size());
+            for (Object path : values){
+                String resource = path.toString().trim();
+                if (!resource.isEmpty()){
+                    resources.add(routeId + SENTINEL_RULE_SPLITTER + resource);
+                }
+            }
+            return resources;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import com.alibaba.csp.sentinel.AsyncEntry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.Tracer;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import spring.cloud.ali.common.exception.ServiceException;
+
+import java.util.function.Supplier;
+
+/**
+ * 响应式Sentinel埋点：
+ *  1. 订阅时进入异步Entry（AsyncEntry），进入后立即退出线程上下文，ThreadLocal不会跨Netty线程残留
+ *  2. 下游结束（完成、异常、取消）时退出Entry，RT和并发数覆盖整个上游调用
+ *  3. 下游异常或响应状态码为5xx时，记录异常（用于异常比例/异常数熔断）
+ *  4. 被规则拒绝时，返回BlockException错误信号
+ *  5. 被保护的调用在组装时同步抛出异常，同样转为错误信号，记录异常并退出Entry
+ */
+public final class ReactiveSentinel {
+
+    private static final String CONTEXT_PREFIX = "ali_gateway_context#";
+
+    private ReactiveSentinel(){}
+
+    /**
+     * 在Sentinel资源中执行
+     * @param routeId 路由ID（作为Sentinel上下文名称）
+     * @param resource 资源
+     * @param resp 响应（结束时检查状态码）
+     * @param action 被保护的调用
+     * @return 调用结果，被拒绝时为BlockException错误
+     */
+    public static Mono<Void> entry(String routeId, String resource, ServerHttpResponse resp, Supplier<Mono<Void>> action) {
+        return Mono.defer(() -> {
+            AsyncEntry entry;
+            ContextUtil.enter(CONTEXT_PREFIX + routeId);
+            try {
+                entry = SphU.asyncEntry(resource, EntryType.IN);
+            } catch (BlockException e){
+                return Mono.error(e);
+            } finally {
+                ContextUtil.exit();
+            }
+
+            EntryScope scope = new EntryScope(entry, resp);
+            return Mono.defer(action)
+                    .doOnError(scope::onError)
+                    .doFinally(scope::exit);
+        });
+    }
+
+    private static final class EntryScope {
+
+        private final AsyncEntry entry;
+
+        private final ServerHttpResponse resp;
+
+        private boolean traced;
+
+        private EntryScope(AsyncEntry entry, ServerHttpResponse resp) {
+            this.entry = entry;
+            this.resp = resp;
+        }
+
+        private void onError(Throwable e) {
+            Tracer.traceEntry(e, entry);
+            traced = true;
+        }
+
+        private void exit(SignalType signal) {
+            if (!traced && signal != SignalType.CANCEL){
+                HttpStatusCode status = resp.getStatusCode();
+                if (status != null && status.is5xxServerError()){
+                    // 后端5xx响应不会以异常形式返回，按状态码记录
+                    Tracer.traceEntry(new ServiceException(status.value(), "upstream response " + status.value()), entry);
+                }
+            }
+            entry.exit();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+
+/**
+ * 路由资源匹配器（按路由编译一次，请求时只读）
+ *  1. 规则资源格式：routeId#METHOD#/path/{var}，按METHOD分树，按路径段构建前缀树
+ *  2. 字面量段优先于变量段{var}，字面量段未命中时回溯到变量段
+ *  3. 无法编译的模式（如/users/{id}.json，/files/**），预解析为PathPattern兜底匹配
+ *  4. 查找为O(路径段数)，匹配过程不分配对象
+ */
+public final class ResourceMatcher {
+
+    public static final ResourceMatcher EMPTY = new ResourceMatcher(Collections.emptyMap(), Collections.emptyList());
+
+    private static final PathPatternParser PATH_PARSER = new PathPatternParser();
+
+    /**
+     * key：请求方法，value：路径段前缀树
+     */
+    private final Map<String, Node> roots;
+
+    /**
+     * 无法编译进前缀树的模式
+     */
+    private final List<FallbackPattern> fallbacks;
+
+    private ResourceMatcher(Map<String, Node> roots, List<FallbackPattern> fallbacks) {
+        this.roots = roots;
+        this.fallbacks = fallbacks;
+    }
+
+    /**
+     * 编译路由资源
+     * @param routeId 路由ID
+     * @param resources 资源列表，如：ali-user#GET#/users/{userId}
+     * @return 匹配器
+     */
+    public static ResourceMatcher compile(String routeId, Collection<String> resources) {
+        if (resources == null || resources.isEmpty()){
+            return EMPTY;
+        }
+
+        String routePrefix = routeId + SENTINEL_RULE_SPLITTER;
+        Map<String, Builder> builders = new HashMap<>();
+        List<FallbackPattern> fallbacks = new ArrayList<>();
+
+        for (String resource : resources){
+            if (!resource.startsWith(routePrefix)){
+                continue;
+            }
+            int methodEnd = resource.indexOf(SENTINEL_RULE_SPLITTER, routePrefix.length());
+            if (methodEnd < 0){
+                continue;
+            }
+            String method = resource.substring(routePrefix.length(), methodEnd);
+            String path = resource.substring(methodEnd + 1);
+
+            String[] segments = splitSegments(path);
+            if (segments == null){
+                fallbacks.add(new FallbackPattern(method, PATH_PARSER.parse(path), resource));
+                continue;
+            }
+            builders.computeIfAbsent(method, m -> new Builder()).add(segments, 0, resource);
+        }
+
+        Map<String, Node> roots = new HashMap<>();
+        builders.forEach((method, builder) -> roots.put(method, builder.build()));
+        return new ResourceMatcher(roots, fallbacks);
+    }
+
+    /**
+     * 匹配资源
+     * @param method 请求方法
+     * @param path 请求路径
+     * @return 匹配到的资源，未匹配返回null
+     */
+    public String match(String method, String path) {
+        Node root = roots.get(method);
+        if (root != null){
+            String resource = root.match(path, 0);
+            if (resource != null){
+                return resource;
+            }
+        }
+
+        if (!fallbacks.isEmpty()){
+            return matchFallbacks(method, path);
+        }
+        return null;
+    }
+
+    public boolean isEmpty(){
+        return roots.isEmpty() && fallbacks.isEmpty();
+    }
+
+    private String matchFallbacks(String method, String path) {
+        PathContainer container = null;
+        for (FallbackPattern fallback : fallbacks){
+            if (!fallback.method.equals(method)){
+                continue;
+            }
+            if (container == null){
+                container = PathContainer.parsePath(path);
+            }
+            if (fallback.pattern.matches(container)){
+                return fallback.resource;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 拆分模式路径段，如/users/{userId} -> [users, {userId}]
+     * @return 路径段，包含无法编译的段时返回null
+     */
+    private static String[] splitSegments(String path) {
+        if (!path.startsWith("/")){
+            return null;
+        }
+        String[] segments = path.substring(1).split("/", -1);
+        for (String segment : segments){
+            int open = segment.indexOf('{');
+            if (open < 0){
+                if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0){
+                    return null;
+                }
+                continue;
+            }
+            // 仅支持整段变量，如{userId}
+            if (open != 0 || segment.indexOf('}') != segment.length() - 1 || segment.indexOf('*') >= 0){
+                return null;
+            }
+        }
+        return segments;
+    }
+
+    private static boolean isVariable(String segment){
+        return segment.startsWith("{");
+    }
+
+    /**
+     * 与String.hashCode一致的区间哈希，避免截取子串
+     */
+    private static int hash(String s, int start, int end){
+        int h = 0;
+        for (int i = start; i < end; i++){
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static final class Node {
+
+        /**
+         * 字面量子节点，开放寻址表
+         */
+        private final String[] keys;
+
+        private final int[] hashes;
+
+        private final Node[] children;
+
+        private final int mask;
+
+        /**
+         * 变量子节点
+         */
+        private final Node variable;
+
+        /**
+         * 终止于本节点的资源
+         */
+        private final String resource;
+
+        private Node(Map<String, Node> literals, Node variable, String resource) {
+            int capacity = tableSize(literals.size());
+            this.keys = new String[capacity];
+            this.hashes = new int[capacity];
+            this.children = new Node[capacity];
+            this.mask = capacity - 1;
+            this.variable = variable;
+            this.resource = resource;
+
+            literals.forEach((key, child) -> {
+                int h = key.hashCode();
+                int i = h & mask;
+                while (keys[i] != null){
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                hashes[i] = h;
+                children[i] = child;
+            });
+        }
+
+        /**
+         * @param path 请求路径
+         * @param from 当前段的起始位置（指向'/'）
+         */
+        private String match(String path, int from) {
+            if (from >= path.length()){
+                return resource;
+            }
+            if (path.charAt(from) != '/'){
+                return null;
+            }
+
+            int start = from + 1;
+            int end = path.indexOf('/', start);
+            if (end < 0){
+                end = path.length();
+            }
+
+            Node literal = findLiteral(path, start, end);
+            if (literal != null){
+                String matched = literal.match(path, end);
+                if (matched != null){
+                    return matched;
+                }
+            }
+
+            // 变量段至少需要一个字符
+            if (variable != null && end > start){
+                return variable.match(path, end);
+            }
+            return null;
+        }
+
+        private Node findLiteral(String path, int start, int end) {
+            if (keys.length == 0){
+                return null;
+            }
+            int len = end - start;
+            int h = hash(path, start, end);
+            int i = h & mask;
+            String key;
+            while ((key = keys[i]) != null){
+                if (hashes[i] == h && key.length() == len && path.regionMatches(start, key, 0, len)){
+                    return children[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int tableSize(int size) {
+            if (size == 0){
+                return 0;
+            }
+            int capacity = 2;
+            while (capacity < size * 2){
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+    }
+
+    private static final class Builder {
+
+        private final Map<String, Builder> literals = new HashMap<>();
+
+        private Builder variable;
+
+        private String resource;
+
+        private void add(String[] segments, int index, String resource) {
+            if (index == segments.length){
+                // 同一路径的重复资源，保留先加入的
+                if (this.resource == null){
+                    this.resource = resource;
+                }
+                return;
+            }
+            String segment = segments[index];
+            Builder next;
+            if (isVariable(segment)){
+                if (variable == null){
+                    variable = new Builder();
+                }
+                next = variable;
+            } else {
+                next = literals.computeIfAbsent(segment, s -> new Builder());
+            }
+            next.add(segments, index + 1, resource);
+        }
+
+        private Node build() {
+            Map<String, Node> built = new HashMap<>();
+            literals.forEach((key, child) -> built.put(key, child.build()));
+            return new Node(built, variable == null ? null : variable.build(), resource);
+        }
+    }
+
+    private static final class FallbackPattern {
+
+        private final String method;
+
+        private final PathPattern pattern;
+
+        private final String resource;
+
+        private FallbackPattern(String method, PathPattern pattern, String resource) {
+            this.method = method;
+            this.pattern = pattern;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 路由规则并发加载：
+ *  1. 所有路由的各类规则（流控、熔断）并发加载，总耗时取决于最慢的路由，而不是路由数
+ *  2. 最多等待deadline，超时未完成的路由在后台继续加载
+ *  3. 按路由和规则类型记录加载耗时：ali_gateway_sentinel_rules_load{service, type, result}
+ */
+@Slf4j
+public class RouteRulesLoader {
+
+    private static final String METRIC_NAME = "ali_gateway_sentinel_rules_load";
+
+    private final MeterRegistry meterRegistry;
+
+    public RouteRulesLoader(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 加载路由规则
+     * @param routeIds 路由ID列表
+     * @param ruleTasks 规则加载任务，key：规则类型（如flow、degrade）
+     * @param parallelism 并发加载的线程数
+     * @param deadline 最长等待时间
+     * @return 是否在deadline内全部加载成功
+     */
+    public boolean load(Collection<String> routeIds, Map<String, RuleTask> ruleTasks, int parallelism, Duration deadline) {
+        if (routeIds.isEmpty()){
+            return true;
+        }
+
+        int threads = Math.max(1, Math.min(parallelism, routeIds.size() * ruleTasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("sentinel-rules-loader-%d").setDaemon(true).build());
+
+        long startTime = System.nanoTime();
+        Set<String> pending = ConcurrentHashMap.newKeySet();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String routeId : routeIds){
+            for (Map.Entry<String, RuleTask> ruleTask : ruleTasks.entrySet()){
+                String key = routeId + ":" + ruleTask.getKey();
+                pending.add(key);
+                futures.add(CompletableFuture.runAsync(() -> {
+                    long taskStart = System.nanoTime();
+                    String result = "success";
+                    try {
+                        ruleTask.getValue().load(routeId);
+                    } catch (Exception e){
+                        result = "error";
+                        failed.add(key);
+                        log.error("sentinel rules load failed: routeId={}, type={}", routeId, ruleTask.getKey(), e);
+                    } finally {
+                        long latency = System.nanoTime() - taskStart;
+                        pending.remove(key);
+                        Timer.builder(METRIC_NAME)
+                                .tags("service", routeId, "type", ruleTask.getKey(), "result", result)
+                                .register(meterRegistry)
+                                .record(latency, TimeUnit.NANOSECONDS);
+                        log.info("sentinel rules loaded: routeId={}, type={}, result={}, latency={}ms",
+                                routeId, ruleTask.getKey(), result, TimeUnit.NANOSECONDS.toMillis(latency));
+                    }
+                }, executor));
+            }
+        }
+        // 不再接收任务，已提交的任务执行完后线程退出
+        executor.shutdown();
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e){
+            log.warn("sentinel rules not loaded before deadline: deadline={}, pending={}", deadline, pending);
+            return false;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e){
+            // 任务内已处理异常
+            throw new IllegalStateException(e);
+        }
+
+        log.info("sentinel rules loaded: routes={}, failed={}, latency={}ms",
+                routeIds.size(), failed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return failed.isEmpty();
+    }
+
+    /**
+     * 规则加载任务
+     */
+    public interface RuleTask {
+
+        /**
+         * 加载路由的规则
+         * @param routeId 路由ID
+         */
+        void load(String routeId) throws Exception;
+    }
+}
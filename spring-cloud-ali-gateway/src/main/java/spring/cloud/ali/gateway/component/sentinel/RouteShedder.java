@@ -0,0 +1,123 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import com.alibaba.csp.sentinel.slots.statistic.metric.ArrayMetric;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 过载快速拒绝（自适应节流）：
+ *  1. 按Sentinel资源（API，如ali-user#GET#/users/{userId}）统计窗口内的请求数（requests）和通过Sentinel的请求数（accepts），
+ *     与Sentinel规则的维度一致，某个API被限流不影响同一路由的其它API；没有规则的请求不统计也不拒绝
+ *  2. 拒绝比例超过阈值后，按概率 (requests - K * accepts) / (requests + 1) 在Sentinel之前拒绝，K = 1 / (1 - 阈值)
+ *  3. 按概率而非全部拒绝，保证仍有请求进入Sentinel，规则恢复后拒绝比例随之下降
+ *  4. 指标：ali_gateway_requests_shed{service}
+ */
+@Slf4j
+@Component
+public class RouteShedder {
+
+    private static final int SAMPLE_COUNT = 10;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile AppConfig.Shed config;
+
+    private volatile double k;
+
+    /**
+     * key：Sentinel资源，value：滑动窗口统计
+     */
+    private final Map<String, ArrayMetric> resourceMetrics = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> shedCounters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        refreshConfig();
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        refreshConfig();
+    }
+
+    /**
+     * 是否快速拒绝
+     * @param routeId 路由ID
+     * @param resource Sentinel资源
+     * @return true则直接拒绝，不再进入Sentinel和路由过滤器
+     */
+    public boolean shouldShed(String routeId, String resource) {
+        AppConfig.Shed current = config;
+        if (!current.isEnabled()){
+            return false;
+        }
+
+        ArrayMetric metric = resourceMetrics.get(resource);
+        if (metric == null){
+            return false;
+        }
+
+        long accepts = metric.pass();
+        long requests = accepts + metric.block();
+        if (requests < current.getMinRequests()){
+            return false;
+        }
+
+        double rejectProbability = (requests - k * accepts) / (requests + 1);
+        if (rejectProbability <= 0 || ThreadLocalRandom.current().nextDouble() >= rejectProbability){
+            return false;
+        }
+
+        // 快速拒绝也计入请求数
+        metric.addBlock(1);
+        shedCounters.computeIfAbsent(routeId,
+                id -> meterRegistry.counter("ali_gateway_requests_shed", "service", id)).increment();
+        return true;
+    }
+
+    /**
+     * 请求通过Sentinel
+     */
+    public void onPass(String resource) {
+        metric(resource).addPass(1);
+    }
+
+    /**
+     * 请求被Sentinel拒绝
+     */
+    public void onBlock(String resource) {
+        metric(resource).addBlock(1);
+    }
+
+    private ArrayMetric metric(String resource) {
+        return resourceMetrics.computeIfAbsent(resource, r -> new ArrayMetric(SAMPLE_COUNT, config.getWindowMs()));
+    }
+
+    private void refreshConfig() {
+        AppConfig.Shed latest = appConfig.getShed();
+        AppConfig.Shed previous = config;
+        k = 1 / (1 - Math.min(latest.getBlockRateThreshold(), 0.99));
+        config = latest;
+        if (previous != null && previous.getWindowMs() != latest.getWindowMs()){
+            // 窗口变化，重新统计
+            resourceMetrics.clear();
+        }
+        log.info("route shed config refreshed: {}", latest);
+    }
+}
@@ -0,0 +1,208 @@
+package spring.cloud.ali.gateway.component.upstream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 上游HttpClient（按路由隔离连接池）：
+ *  1. 每个路由独立的连接池，慢后端只会耗尽自己的连接
+ *  2. 连接池大小、等待队列及超时、空闲回收、协议（HTTP/1.1或h2c）按路由配置（gateway.upstream）
+ *  3. 连接池指标（Reactor Netty，tag name=route-{routeId}）：
+ *     reactor.netty.connection.provider.active.connections、idle.connections、pending.connections，
+ *     获取连接耗时reactor.netty.connection.provider.pending.connections.time
+ *  4. 配置刷新后，配置变化的路由重建连接池，旧连接池延迟关闭（等待请求完成）；路由刷新后，已删除路由的连接池延迟关闭
+ *  5. 其它设置与网关默认的HttpClient一致（spring.cloud.gateway.httpclient的超时、ssl、proxy、wiretap等，及HttpClientCustomizer）
+ */
+@Slf4j
+@Component
+public class UpstreamHttpClients {
+
+    private static final String ROUTE_POOL_PREFIX = "route-";
+
+    private static final String WEB_CLIENT_POOL = "web-client";
+
+    /**
+     * 旧连接池的关闭延迟
+     */
+    private static final Duration DISPOSE_DELAY = Duration.ofSeconds(60);
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+
+    @Autowired
+    private ServerProperties serverProperties;
+
+    @Autowired
+    private HttpClientSslConfigurer sslConfigurer;
+
+    @Autowired(required = false)
+    private List<HttpClientCustomizer> customizers = Collections.emptyList();
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    /**
+     * key：路由ID
+     */
+    private final Map<String, RouteClient> routeClients = new ConcurrentHashMap<>();
+
+    private RouteClient webClient;
+
+    @PostConstruct
+    public void init() {
+        webClient = create(WEB_CLIENT_POOL, appConfig.getUpstream().getWebClient());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        routeClients.values().forEach(c -> c.provider.dispose());
+        routeClients.clear();
+        webClient.provider.dispose();
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        for (Map.Entry<String, RouteClient> entry : routeClients.entrySet()){
+            String routeId = entry.getKey();
+            AppConfig.Pool latest = poolConfig(routeId);
+            RouteClient current = entry.getValue();
+            if (!latest.equals(current.config) && routeClients.replace(routeId, current, create(ROUTE_POOL_PREFIX + routeId, latest))){
+                log.info("route upstream pool refreshed: routeId={}, pool={}", routeId, latest);
+                Mono.delay(DISPOSE_DELAY).then(current.provider.disposeLater()).subscribe();
+            }
+        }
+    }
+
+    @EventListener
+    public void onRefreshRoutesResult(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess()){
+            return;
+        }
+        routeLocator.getRoutes()
+                .map(Route::getId)
+                .collect(Collectors.toSet())
+                .subscribe(this::retain, e -> log.error("failed to get routes, keep upstream pools", e));
+    }
+
+    /**
+     * 关闭已删除路由的连接池
+     */
+    void retain(Set<String> routeIds) {
+        for (Map.Entry<String, RouteClient> entry : routeClients.entrySet()){
+            String routeId = entry.getKey();
+            RouteClient current = entry.getValue();
+            if (!routeIds.contains(routeId) && routeClients.remove(routeId, current)){
+                log.info("route upstream pool removed: routeId={}", routeId);
+                Mono.delay(DISPOSE_DELAY).then(current.provider.disposeLater()).subscribe();
+            }
+        }
+    }
+
+    /**
+     * 路由的HttpClient
+     */
+    public HttpClient get(String routeId) {
+        RouteClient routeClient = routeClients.get(routeId);
+        if (routeClient == null){
+            routeClient = routeClients.computeIfAbsent(routeId, id -> create(ROUTE_POOL_PREFIX + id, poolConfig(id)));
+        }
+        return routeClient.client;
+    }
+
+    /**
+     * HttpWebFluxClient使用的HttpClient
+     */
+    public HttpClient getWebClient() {
+        return webClient.client;
+    }
+
+    private AppConfig.Pool poolConfig(String routeId) {
+        AppConfig.Upstream upstream = appConfig.getUpstream();
+        return upstream.getRoutes().getOrDefault(routeId, upstream.getDefaultPool());
+    }
+
+    private RouteClient create(String name, AppConfig.Pool config) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireMaxCount(config.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(config.getPendingAcquireTimeout())
+                .maxIdleTime(config.getMaxIdleTime())
+                .evictInBackground(config.getEvictInterval())
+                .metrics(true)
+                .build();
+
+        HttpClient client = new PoolHttpClientFactory(httpClientProperties, serverProperties, sslConfigurer, customizers, provider)
+                .create()
+                .protocol(config.getProtocols().toArray(new HttpProtocol[0]));
+        log.info("upstream pool created: name={}, pool={}", name, config);
+        return new RouteClient(config, provider, client);
+    }
+
+    /**
+     * 与网关默认的HttpClient相同的设置，使用指定的连接池
+     */
+    private static class PoolHttpClientFactory extends HttpClientFactory {
+
+        private final ConnectionProvider provider;
+
+        private PoolHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                                      HttpClientSslConfigurer sslConfigurer, List<HttpClientCustomizer> customizers,
+                                      ConnectionProvider provider) {
+            super(properties, serverProperties, sslConfigurer, customizers);
+            this.provider = provider;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return provider;
+        }
+
+        private HttpClient create() {
+            return createInstance();
+        }
+    }
+
+    private static class RouteClient {
+
+        private final AppConfig.Pool config;
+
+        private final ConnectionProvider provider;
+
+        private final HttpClient client;
+
+        private RouteClient(AppConfig.Pool config, ConnectionProvider provider, HttpClient client) {
+            this.config = config;
+            this.provider = provider;
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package spring.cloud.ali.gateway.component.upstream;
+
+import io.netty.handler.codec.http.HttpMethod;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.gateway.config.GatewayConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动预热（ApplicationReadyEvent，完成或超时前保持未就绪）：
+ *  1. 解析各lb路由的服务实例（同时初始化负载均衡器和实例缓存）
+ *  2. 通过路由连接池，向每个实例并发发送gateway.warmup.connections个请求，预建立连接并保持在连接池中
+ *  3. 可选：向网关自身重复发送模拟请求，经过完整的过滤器链，预热JIT、路由匹配、Sentinel等
+ *  4. 预热请求带请求头X-Gateway-Warmup: true
+ */
+@Slf4j
+@Component
+public class UpstreamWarmer {
+
+    public static final String HEADER_WARMUP = "X-Gateway-Warmup";
+
+    private static final String LB_SCHEME = "lb";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private GatewayConfig gatewayConfig;
+
+    @Autowired
+    private UpstreamHttpClients upstreamHttpClients;
+
+    @Autowired
+    private LoadBalancerClientFactory loadBalancerClientFactory;
+
+    /**
+     * 在Sentinel规则加载（GlobalSentinelFilter）之后执行，预热完成后就绪
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        AppConfig.Warmup config = appConfig.getWarmup();
+        if (config.isEnabled()){
+            AvailabilityChangeEvent.publish(event.getApplicationContext(), ReadinessState.REFUSING_TRAFFIC);
+            warmUp(config, event.getApplicationContext().getEnvironment().getProperty("local.server.port", Integer.class));
+        }
+        AvailabilityChangeEvent.publish(event.getApplicationContext(), ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    /**
+     * 预热，最多等待gateway.warmup.deadline
+     * @param port 网关端口，为空时不发送模拟请求
+     * @return false则超时
+     */
+    boolean warmUp(AppConfig.Warmup config, Integer port) {
+        long startTime = System.nanoTime();
+        Stats connects = new Stats();
+        Stats replays = new Stats();
+        try {
+            connectAll(config, connects)
+                    .then(replay(config, port, replays))
+                    .timeout(config.getDeadline())
+                    .block();
+            return true;
+        } catch (Exception e){
+            if (e.getCause() instanceof TimeoutException){
+                log.warn("gateway warmup timeout, continue: deadline={}", config.getDeadline());
+            } else {
+                log.error("gateway warmup failed, continue", e);
+            }
+            return false;
+        } finally {
+            log.info("gateway warmup finished: connects={}, replays={}, cost={}ms", connects, replays,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    private Mono<Void> connectAll(AppConfig.Warmup config, Stats stats) {
+        List<RouteDefinition> routes = gatewayConfig.getRoutes();
+        if (CollectionUtils.isEmpty(routes)){
+            return Mono.empty();
+        }
+
+        return Flux.fromIterable(routes)
+                .filter(route -> route.getUri() != null && LB_SCHEME.equals(route.getUri().getScheme()))
+                .flatMap(route -> {
+                    HttpClient client = upstreamHttpClients.get(route.getId());
+                    return client.warmup()
+                            .then(instances(route.getUri().getHost()))
+                            .flatMapMany(Flux::fromIterable)
+                            .flatMap(instance -> connect(client, instance, config, stats));
+                })
+                .then();
+    }
+
+    private Mono<List<ServiceInstance>> instances(String serviceId) {
+        ServiceInstanceListSupplier supplier = loadBalancerClientFactory.getInstance(serviceId, ServiceInstanceListSupplier.class);
+        if (supplier == null){
+            return Mono.just(Collections.emptyList());
+        }
+        return supplier.get().next()
+                .defaultIfEmpty(Collections.emptyList())
+                .onErrorResume(e -> {
+                    log.warn("failed to resolve instances for warmup: serviceId={}", serviceId, e);
+                    return Mono.just(Collections.emptyList());
+                });
+    }
+
+    /**
+     * 并发请求同一实例，每个请求占用一个新连接，响应后连接回到连接池
+     */
+    private Mono<Void> connect(HttpClient client, ServiceInstance instance, AppConfig.Warmup config, Stats stats) {
+        HttpClient instanceClient = client.baseUrl(instance.getUri().toString())
+                .headers(headers -> headers.set(HEADER_WARMUP, "true"));
+        HttpMethod method = HttpMethod.valueOf(config.getMethod());
+        return Flux.range(0, config.getConnections())
+                .flatMap(i -> send(instanceClient, method, config.getPath(), stats), config.getConnections())
+                .then();
+    }
+
+    /**
+     * 向网关自身发送模拟请求
+     */
+    private Mono<Void> replay(AppConfig.Warmup config, Integer port, Stats stats) {
+        if (port == null || CollectionUtils.isEmpty(config.getRequests())){
+            return Mono.empty();
+        }
+
+        HttpClient gateway = HttpClient.create().baseUrl("http://127.0.0.1:" + port);
+        return Flux.range(0, config.getRepeat())
+                .concatMapIterable(i -> config.getRequests())
+                .flatMap(req -> send(gateway.headers(headers -> {
+                            req.getHeaders().forEach(headers::set);
+                            headers.set(HEADER_WARMUP, "true");
+                        }), HttpMethod.valueOf(req.getMethod()), req.getPath(), stats), config.getConcurrency())
+                .then();
+    }
+
+    private static Mono<Void> send(HttpClient client, HttpMethod method, String path, Stats stats) {
+        return client.request(method)
+                .uri(path)
+                .response((resp, body) -> body.then(Mono.just(resp.status().code())))
+                .next()
+                .doOnNext(status -> stats.success.incrementAndGet())
+                .onErrorResume(e -> {
+                    stats.failure.incrementAndGet();
+                    log.debug("warmup request failed: method={}, path={}", method, path, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static class Stats {
+
+        private final AtomicInteger success = new AtomicInteger();
+
+        private final AtomicInteger failure = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            return "{success=" + success + ", failure=" + failure + "}";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package spring.cloud.ali.gateway.component.web;
+
+import io.netty.buffer.ByteBuf;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+
+/**
+ * 响应缓冲的请求副本（同一请求多次执行过滤器链，如对冲请求）：
+ *  1. 属性独立（复制自原请求），各副本分别负载均衡和路由
+ *  2. 响应写入内存，不提交到客户端，由调用方选择后写出（writeTo）
+ *  3. 需通过filter(chain)执行过滤器链：NettyRoutingFilter把上游连接放在副本的属性中（CLIENT_RESPONSE_CONN_ATTR），
+ *     外层的NettyWriteResponseFilter读不到，由副本读取上游响应体写入缓冲，并释放连接
+ */
+public class BufferedExchange extends ServerWebExchangeDecorator {
+
+    private final Map<String, Object> attributes;
+
+    private final BufferedResponse response;
+
+    public BufferedExchange(ServerWebExchange delegate) {
+        super(delegate);
+        this.attributes = new ConcurrentHashMap<>(delegate.getAttributes());
+        this.response = new BufferedResponse(delegate.getResponse());
+    }
+
+    /**
+     * 执行过滤器链，响应（包括上游响应体）写入缓冲
+     */
+    public Mono<Void> filter(GatewayFilterChain chain) {
+        return chain.filter(this)
+                .then(Mono.defer(this::receiveUpstream))
+                .doOnCancel(this::disposeUpstream);
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public ServerHttpResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * 将缓冲的响应写出到原请求
+     */
+    public Mono<Void> writeTo(ServerHttpResponse target) {
+        if (response.getStatusCode() != null){
+            target.setStatusCode(response.getStatusCode());
+        }
+        target.getHeaders().putAll(response.getHeaders());
+        for (List<ResponseCookie> cookies : response.getCookies().values()){
+            cookies.forEach(target::addCookie);
+        }
+
+        DataBuffer body = response.body;
+        response.body = null;
+        return body == null ? target.setComplete() : target.writeWith(Mono.just(body));
+    }
+
+    /**
+     * 读取缓冲的响应体（读取后释放，不能再writeTo）
+     * @return 响应体，无响应体时为空数组
+     */
+    public byte[] readBody() {
+        DataBuffer body = response.body;
+        response.body = null;
+        if (body == null){
+            return new byte[0];
+        }
+        try {
+            byte[] bytes = new byte[body.readableByteCount()];
+            body.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(body);
+        }
+    }
+
+    /**
+     * 释放缓冲的响应体（副本被丢弃时）
+     */
+    public void release() {
+        DataBuffer body = response.body;
+        response.body = null;
+        if (body != null){
+            DataBufferUtils.release(body);
+        }
+    }
+
+    /**
+     * 同NettyWriteResponseFilter：读取上游响应体，读完后连接归还连接池
+     */
+    private Mono<Void> receiveUpstream() {
+        Connection connection = (Connection) attributes.remove(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection == null){
+            // 未转发到上游（如过滤器直接写出响应）
+            return Mono.empty();
+        }
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        return response.writeWith(connection.inbound().receive().retain().map(buf -> wrap(buf, bufferFactory)))
+                .doOnCancel(connection::dispose)
+                .doOnError(e -> connection.dispose());
+    }
+
+    private void disposeUpstream() {
+        Connection connection = (Connection) attributes.remove(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null){
+            connection.dispose();
+        }
+    }
+
+    private static DataBuffer wrap(ByteBuf buf, DataBufferFactory bufferFactory) {
+        if (bufferFactory instanceof NettyDataBufferFactory){
+            return ((NettyDataBufferFactory) bufferFactory).wrap(buf);
+        }
+        try {
+            DataBuffer buffer = bufferFactory.allocateBuffer(buf.readableBytes());
+            buffer.write(buf.nioBuffer());
+            return buffer;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static class BufferedResponse extends AbstractServerHttpResponse {
+
+        private volatile DataBuffer body;
+
+        private BufferedResponse(ServerHttpResponse delegate) {
+            super(delegate.bufferFactory(), new HttpHeaders());
+        }
+
+        @Override
+        public <T> T getNativeResponse() {
+            throw new IllegalStateException("buffered response has no native response");
+        }
+
+        @Override
+        protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> publisher) {
+            return DataBufferUtils.join(publisher).doOnNext(b -> body = b).then();
+        }
+
+        @Override
+        protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> publisher) {
+            return writeWithInternal(Flux.from(publisher).concatMap(p -> p));
+        }
+
+        @Override
+        protected void applyStatusCode() {
+        }
+
+        @Override
+        protected void applyHeaders() {
+        }
+
+        @Override
+        protected void applyCookies() {
+        }
+    }
+}
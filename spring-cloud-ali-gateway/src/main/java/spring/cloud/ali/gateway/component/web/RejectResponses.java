@@ -0,0 +1,110 @@
+package spring.cloud.ali.gateway.component.web;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.common.dto.HttpResult;
+import spring.cloud.ali.common.enums.HttpRespStatus;
+import spring.cloud.ali.common.exception.BizException;
+import spring.cloud.ali.common.util.JsonUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 预编码的拒绝响应（网关过载时，拒绝请求不再序列化和拷贝响应体）
+ *  1. 类加载时按HttpRespStatus和BizException常量预编码，响应体为不可释放的直接内存
+ *  2. 写出时仅复制读写索引（duplicate），不拷贝内容，不需要释放
+ */
+public final class RejectResponses {
+
+    private static final Map<HttpRespStatus, Encoded> STATUS_BODIES = new EnumMap<>(HttpRespStatus.class);
+
+    /**
+     * BizException常量（按实例匹配）
+     */
+    private static final Map<BizException, Encoded> BIZ_BODIES = new IdentityHashMap<>();
+
+    static {
+        for (HttpRespStatus s : HttpRespStatus.values()){
+            STATUS_BODIES.put(s, new Encoded(s.getMsg()));
+        }
+        for (Field field : BizException.class.getDeclaredFields()){
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == BizException.class){
+                try {
+                    BizException e = (BizException) field.get(null);
+                    BIZ_BODIES.put(e, new Encoded(JsonUtil.toJson(HttpResult.fail(e))));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private RejectResponses(){}
+
+    /**
+     * 写出拒绝响应（状态码、JSON响应头和响应体）
+     */
+    public static Mono<Void> write(ServerHttpResponse resp, HttpRespStatus s) {
+        resp.setStatusCode(s.getStatus());
+        resp.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return writeBody(resp, s);
+    }
+
+    /**
+     * 仅写出响应体
+     */
+    public static Mono<Void> writeBody(ServerHttpResponse resp, HttpRespStatus s) {
+        return resp.writeWith(Mono.just(STATUS_BODIES.get(s).body(resp.bufferFactory())));
+    }
+
+    /**
+     * 写出业务异常响应体，非常量的业务异常按需编码
+     */
+    public static Mono<Void> writeBody(ServerHttpResponse resp, BizException e) {
+        Encoded encoded = BIZ_BODIES.get(e);
+        if (encoded == null){
+            return resp.writeWith(Mono.just(resp.bufferFactory().wrap(
+                    JsonUtil.toJson(HttpResult.fail(e)).getBytes(StandardCharsets.UTF_8))));
+        }
+        return resp.writeWith(Mono.just(encoded.body(resp.bufferFactory())));
+    }
+
+    private static final class Encoded {
+
+        /**
+         * 不可释放的直接内存，供Netty写出
+         */
+        private final ByteBuf nettyBody;
+
+        /**
+         * 只读内存，供非Netty环境（如测试）写出
+         */
+        private final ByteBuffer body;
+
+        private Encoded(String content) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+            this.nettyBody = Unpooled.unreleasableBuffer(direct);
+            this.body = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        private DataBuffer body(DataBufferFactory factory) {
+            if (factory instanceof NettyDataBufferFactory){
+                return ((NettyDataBufferFactory) factory).wrap(nettyBody.duplicate());
+            }
+            return factory.wrap(body.duplicate());
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package spring.cloud.ali.gateway.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import spring.cloud.ali.gateway.component.sentinel.Criticality;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -15,4 +26,485 @@ import org.springframework.stereotype.Component;
 @Component
 public class AppConfig {
 
+    /**
+     * 请求指标配置
+     */
+    private Metric metric = new Metric();
+
+    /**
+     * 登录校验配置
+     */
+    private Login login = new Login();
+
+    /**
+     * 路由过载快速拒绝配置
+     */
+    private Shed shed = new Shed();
+
+    /**
+     * 对冲请求配置
+     */
+    private Hedge hedge = new Hedge();
+
+    /**
+     * 负载均衡配置
+     */
+    private LoadBalancer loadBalancer = new LoadBalancer();
+
+    /**
+     * 上游连接池配置
+     */
+    private Upstream upstream = new Upstream();
+
+    /**
+     * 按请求重要性拒绝配置
+     */
+    private CriticalityShed criticality = new CriticalityShed();
+
+    /**
+     * Sentinel规则加载配置
+     */
+    private RuleBootstrap ruleBootstrap = new RuleBootstrap();
+
+    /**
+     * 启动预热配置
+     */
+    private Warmup warmup = new Warmup();
+
+    /**
+     * 响应压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 访问日志配置（仅启动时生效）
+     */
+    private AccessLog accessLog = new AccessLog();
+
+    /**
+     * 幂等提交配置
+     */
+    private Idempotency idempotency = new Idempotency();
+
+    /**
+     * 事件循环监控配置
+     */
+    private EventLoop eventLoop = new EventLoop();
+
+    @Data
+    public static class Metric {
+
+        /**
+         * 指标序列（service+method+uri）上限，超过后归入溢出桶（uri=OTHER）
+         */
+        private int maxSeries = 2000;
+
+        /**
+         * 是否统计各过滤器（全局和路由）的耗时，默认关闭，排查耗时时开启
+         */
+        private boolean filterTimer = false;
+
+        /**
+         * 未配置Sentinel规则的路径模板，格式同规则资源，如：
+         *   ali-user:
+         *     - GET#/users/{userId}
+         */
+        private Map<String, List<String>> uriTemplates = Collections.emptyMap();
+    }
+
+    @Data
+    public static class Login {
+
+        /**
+         * token签名key（与ali-user的user.login-sign-key一致），用于网关本地校验token
+         */
+        private String signKey;
+
+        /**
+         * 远程校验结果缓存
+         */
+        private VerifyCache verifyCache = new VerifyCache();
+    }
+
+    @Data
+    public static class VerifyCache {
+
+        private boolean enabled = true;
+
+        /**
+         * 最大缓存token数
+         */
+        private long maxSize = 100000;
+
+        /**
+         * 校验通过的缓存时长上限（不超过token的过期时间）
+         */
+        private Duration passTtl = Duration.ofMinutes(5);
+
+        /**
+         * 校验不通过的缓存时长
+         */
+        private Duration notPassTtl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Shed {
+
+        private boolean enabled = true;
+
+        /**
+         * API（Sentinel资源）被Sentinel拒绝的比例超过该阈值后，在Sentinel之前按比例快速拒绝
+         */
+        private double blockRateThreshold = 0.5;
+
+        /**
+         * 统计窗口内最少请求数，低于该值不拒绝
+         */
+        private int minRequests = 100;
+
+        /**
+         * 统计窗口（毫秒）
+         */
+        private int windowMs = 2000;
+    }
+
+    @Data
+    public static class CriticalityShed {
+
+        private boolean enabled = true;
+
+        /**
+         * 请求头（客户端声明的重要性，只能低于路由配置的重要性）
+         */
+        private String header = "X-Request-Criticality";
+
+        /**
+         * 各重要性的拒绝阈值，系统压力（CPU使用率或负载超过阈值的比例）超过阈值后按比例拒绝
+         */
+        private Map<Criticality, ShedThreshold> thresholds = defaultThresholds();
+
+        /**
+         * 超过阈值的比例达到该值时，拒绝该重要性的全部请求，如0.1：CPU阈值0.8时，CPU使用率0.88全部拒绝
+         */
+        private double ramp = 0.1;
+
+        private static Map<Criticality, ShedThreshold> defaultThresholds() {
+            Map<Criticality, ShedThreshold> thresholds = new EnumMap<>(Criticality.class);
+            thresholds.put(Criticality.SHEDDABLE, new ShedThreshold(0.6, 0.8));
+            thresholds.put(Criticality.DEFAULT, new ShedThreshold(0.8, 1.2));
+            thresholds.put(Criticality.CRITICAL, new ShedThreshold(0.95, 2.0));
+            return thresholds;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ShedThreshold {
+
+        /**
+         * CPU使用率阈值（0-1，Sentinel采集的系统和进程CPU使用率的较大值）
+         */
+        private double cpu = 1;
+
+        /**
+         * 系统负载阈值（每核，即load1 / CPU核数）
+         */
+        private double load = Double.MAX_VALUE;
+    }
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * 对冲请求预算：不超过经过对冲过滤器的请求数的该百分比（全局）
+         */
+        private double budgetPercent = 5;
+
+        /**
+         * 预算最多累积的对冲请求数（流量低谷后的突发上限）
+         */
+        private int maxBurst = 100;
+    }
+
+    @Data
+    public static class LoadBalancer {
+
+        /**
+         * 无耗时样本的实例的默认耗时，应高于路由的正常耗时
+         */
+        private Duration defaultRtt = Duration.ofMillis(100);
+
+        /**
+         * 新实例慢启动时长（按实例元数据register-time计算），期间权重逐渐升至1，为0时不慢启动
+         */
+        private Duration slowStartWindow = Duration.ofSeconds(60);
+
+        /**
+         * 慢启动最小权重（0-1）
+         */
+        private double slowStartMinWeight = 0.1;
+
+        /**
+         * 慢启动加速度，权重 = (已注册时长 / 慢启动时长) ^ (1 / aggression)，大于1时前期升高更快
+         */
+        private double slowStartAggression = 1.0;
+    }
+
+    @Data
+    public static class Upstream {
+
+        /**
+         * 路由默认连接池（每个路由独立）
+         */
+        private Pool defaultPool = new Pool();
+
+        /**
+         * 路由连接池，key：路由ID，未配置的路由使用defaultPool的配置
+         */
+        private Map<String, Pool> routes = Collections.emptyMap();
+
+        /**
+         * HttpWebFluxClient（如远程校验token）的连接池，仅启动时生效
+         */
+        private Pool webClient = new Pool();
+    }
+
+    @Data
+    public static class Pool {
+
+        /**
+         * 最大连接数（HTTP/2为最大连接数，每个连接可多路复用）
+         */
+        private int maxConnections = 500;
+
+        /**
+         * 等待获取连接的最大请求数
+         */
+        private int pendingAcquireMaxCount = 1000;
+
+        /**
+         * 等待获取连接的超时时间
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(3);
+
+        /**
+         * 连接最大空闲时间
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        /**
+         * 后台清理空闲连接的间隔
+         */
+        private Duration evictInterval = Duration.ofSeconds(30);
+
+        /**
+         * 上游协议：HTTP11，H2C（需上游支持HTTP/2明文）
+         */
+        private List<HttpProtocol> protocols = Collections.singletonList(HttpProtocol.HTTP11);
+    }
+
+    @Data
+    public static class RuleBootstrap {
+
+        /**
+         * 加载所有路由规则的最长等待时间（启动时，超时前不就绪），超时后未完成的路由在后台继续加载
+         */
+        private Duration deadline = Duration.ofSeconds(10);
+
+        /**
+         * 并发加载的线程数
+         */
+        private int parallelism = 8;
+    }
+
+    @Data
+    public static class Warmup {
+
+        /**
+         * 是否在就绪前预热
+         */
+        private boolean enabled = true;
+
+        /**
+         * 预热最长时间，超时后取消未完成的预热，开始接收流量
+         */
+        private Duration deadline = Duration.ofSeconds(30);
+
+        /**
+         * 每个上游实例预建立的连接数（不超过路由连接池的最大连接数）
+         */
+        private int connections = 4;
+
+        /**
+         * 建立连接使用的请求（任意响应均可，连接保持在路由连接池中）
+         */
+        private String method = "HEAD";
+
+        private String path = "/";
+
+        /**
+         * 模拟请求（经网关完整的过滤器链转发，预热JIT、路由匹配、Sentinel等），为空时不执行
+         */
+        private List<WarmupRequest> requests = Collections.emptyList();
+
+        /**
+         * 模拟请求的重复次数
+         */
+        private int repeat = 200;
+
+        /**
+         * 模拟请求的并发数
+         */
+        private int concurrency = 16;
+    }
+
+    @Data
+    public static class WarmupRequest {
+
+        private String method = "GET";
+
+        /**
+         * 请求路径（含查询参数），如：/users/detail?userId=1
+         */
+        private String path;
+
+        /**
+         * 请求头，如登录token
+         */
+        private Map<String, String> headers = Collections.emptyMap();
+    }
+
+    @Data
+    public static class Compression {
+
+        /**
+         * 是否开启响应压缩
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最小压缩大小（字节），Content-Length小于该值时不压缩，未知长度时压缩
+         */
+        private int minSize = 1024;
+
+        /**
+         * gzip/deflate压缩级别（1-9），brotli（需引入brotli4j，否则不使用）使用默认质量4
+         */
+        private int level = 6;
+
+        /**
+         * 事件循环线程CPU使用率超过该值时不压缩（0-1）
+         */
+        private double cpuThreshold = 0.8;
+
+        /**
+         * 不压缩的内容类型（已压缩的格式），支持通配符，如image/*
+         */
+        private List<String> excludedMimeTypes = Arrays.asList(
+                "image/*", "video/*", "audio/*", "font/woff2", "application/zip", "application/gzip",
+                "application/x-gzip", "application/octet-stream", "application/pdf");
+    }
+
+    @Data
+    public static class AccessLog {
+
+        /**
+         * 是否记录访问日志
+         */
+        private boolean enabled = true;
+
+        /**
+         * 日志文件，滚动后的文件按天和大小命名并gzip压缩，如：logs/access.2026-01-01.0.log.gz
+         */
+        private String file = "logs/access.log";
+
+        /**
+         * 环形缓冲区大小（2的幂），写满后丢弃新记录
+         */
+        private int bufferSize = 65536;
+
+        /**
+         * 每批最多写出的记录数
+         */
+        private int batchSize = 1024;
+
+        /**
+         * 缓冲区为空时，写线程的等待间隔
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * 单个日志文件大小上限
+         */
+        private String maxFileSize = "100MB";
+
+        /**
+         * 保留天数
+         */
+        private int maxHistory = 7;
+
+        /**
+         * 所有日志文件大小上限
+         */
+        private String totalSizeCap = "10GB";
+    }
+
+    @Data
+    public static class Idempotency {
+
+        /**
+         * 客户端声明幂等key的请求头，未声明时按用户+请求（含请求体）的SHA-256
+         */
+        private String header = "Idempotency-Key";
+
+        /**
+         * 完成的响应保留时间（本地和Redis），期间的重复提交直接返回该响应
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * Redis中处理中标记的过期时间（网关实例异常退出时，超时后允许重新提交）
+         */
+        private Duration inflightTtl = Duration.ofSeconds(30);
+
+        /**
+         * 本地记录数上限
+         */
+        private long maxSize = 10000;
+
+        /**
+         * 请求体超过该大小（或长度未知）且未声明幂等key时，不去重
+         */
+        private int maxRequestBodyKb = 64;
+
+        /**
+         * 响应体超过该大小时不保存，之后的重复提交重新转发
+         */
+        private int maxResponseBodyKb = 64;
+
+        /**
+         * Redis操作超时，超时或异常时只使用本地记录
+         */
+        private Duration redisTimeout = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class EventLoop {
+
+        /**
+         * 延迟探测间隔，每个事件循环每次提交一个探测任务（仅启动时生效）
+         */
+        private Duration probeInterval = Duration.ofMillis(100);
+
+        /**
+         * 是否检测阻塞：探测任务等待超过block-threshold时输出事件循环线程栈，仅建议在开发/测试环境开启
+         */
+        private boolean blockDetect = false;
+
+        /**
+         * 阻塞阈值
+         */
+        private Duration blockThreshold = Duration.ofMillis(50);
+    }
 }
@@ -1,16 +1,35 @@
 
 package spring.cloud.ali.gateway.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import spring.cloud.ali.common.component.sentinel.SentinelConfigService;
 import spring.cloud.ali.common.config.WebFluxConfig;
+import spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer;
+import spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import spring.cloud.ali.gateway.component.metric.FilterTimingWebHandler;
+import spring.cloud.ali.gateway.component.route.IndexedRoutePredicateHandlerMapping;
+import spring.cloud.ali.gateway.component.upstream.UpstreamHttpClients;
+
+import java.util.List;
 
 
 @Import({
         WebFluxConfig.class
 })
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
 @Configuration
 public class ComponentConfig {
 
@@ -18,4 +37,40 @@ public class ComponentConfig {
     public SentinelConfigService sentinelConfigService(){
         return new SentinelConfigService();
     }
+
+    /**
+     * HttpWebFluxClient使用独立的连接池
+     */
+    @Bean
+    public ClientHttpConnector webClientHttpConnector(UpstreamHttpClients upstreamHttpClients){
+        return new ReactorClientHttpConnector(upstreamHttpClients.getWebClient());
+    }
+
+    /**
+     * HttpWebFluxClient的请求（聚合、镜像、登录校验）被取消时释放负载均衡的实例并发数
+     */
+    @Bean
+    public ExchangeFilterFunction loadBalancerCancelFilter(){
+        return (request, next) -> PeakEwmaLoadBalancer.cancellable(next.exchange(request));
+    }
+
+    /**
+     * 按Path索引查找路由（网关默认的RoutePredicateHandlerMapping按顺序匹配所有路由）
+     */
+    @Bean
+    public RoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+                                                                     RouteLocator routeLocator,
+                                                                     GlobalCorsProperties globalCorsProperties,
+                                                                     Environment environment,
+                                                                     GatewayConfig gatewayConfig){
+        return new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, globalCorsProperties, environment, gatewayConfig);
+    }
+
+    /**
+     * 统计各过滤器耗时（网关默认的FilteringWebHandler不统计）
+     */
+    @Bean
+    public FilteringWebHandler filteringWebHandler(List<GlobalFilter> globalFilters, MeterRegistry meterRegistry, AppConfig appConfig){
+        return new FilterTimingWebHandler(globalFilters, meterRegistry, appConfig);
+    }
 }
@@ -11,12 +11,9 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebExceptionHandler;
 import reactor.core.publisher.Mono;
-import spring.cloud.ali.common.dto.HttpResult;
 import spring.cloud.ali.common.enums.HttpRespStatus;
 import spring.cloud.ali.common.exception.BizException;
-import spring.cloud.ali.common.util.JsonUtil;
-
-import java.nio.charset.StandardCharsets;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
 import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_NOT_FOUND;
@@ -37,17 +34,16 @@ public class GatewayExceptionHandler implements WebExceptionHandler {
         }
 
         // 当前路由信息
-        String msg = HttpRespStatus.DEFAULT.getMsg();
+        HttpRespStatus respStatus = HttpRespStatus.DEFAULT;
         Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
         if(route == null){
             // 没有路由404
-            return respError(resp, HTTP_NOT_FOUND.getMsg());
+            return respError(resp, HTTP_NOT_FOUND);
         }
 
         if (e instanceof BizException){
             // 业务异常
-            return resp.writeWith(Mono.just(resp.bufferFactory().wrap(
-                    JsonUtil.toJson(HttpResult.fail((BizException) e)).getBytes(StandardCharsets.UTF_8))));
+            return RejectResponses.writeBody(resp, (BizException) e);
         }
 
         if (e instanceof ResponseStatusException){
@@ -56,18 +52,15 @@ public class GatewayExceptionHandler implements WebExceptionHandler {
                 // 服务不可用异常，向上抛出
                 return Mono.error(e);
             }
-            HttpRespStatus respStatus = HttpRespStatus.get(respExp.getStatusCode());
+            respStatus = HttpRespStatus.get(respExp.getStatusCode());
             resp.setStatusCode(respStatus.getStatus());
-            msg = respStatus.getMsg();
         }
 
-        return respError(resp, msg);
+        return respError(resp, respStatus);
     }
 
-    private Mono<Void> respError(ServerHttpResponse resp, String msg){
+    private Mono<Void> respError(ServerHttpResponse resp, HttpRespStatus respStatus){
         resp.getHeaders().setContentType(MediaType.APPLICATION_JSON);
-        return resp.writeWith(
-                Mono.just(resp.bufferFactory().wrap(msg.getBytes(StandardCharsets.UTF_8)))
-        );
+        return RejectResponses.writeBody(resp, respStatus);
     }
 }
\ No newline at end of file
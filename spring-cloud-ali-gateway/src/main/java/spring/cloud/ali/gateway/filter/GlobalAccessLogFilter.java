@@ -0,0 +1,129 @@
+package spring.cloud.ali.gateway.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import spring.cloud.ali.gateway.component.accesslog.AccessLogRecord;
+import spring.cloud.ali.gateway.component.accesslog.AccessLogWriter;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+import static spring.cloud.ali.gateway.filter.GlobalMetricFilter.URI_TEMPLATE_ATTR;
+import static spring.cloud.ali.gateway.filter.GlobalSentinelFilter.SENTINEL_RESOURCE_ATTR;
+import static spring.cloud.ali.gateway.filter.RouteLoginFilter.LOGIN_USER_ID_ATTR;
+
+/**
+ * 访问日志（最外层，包括被Sentinel和路由过滤器拒绝或直接响应的请求，如登录校验失败、限流、缓存命中）：
+ *   1. 请求结束时生成固定格式的记录（路由、方法、路径模板、状态码、耗时、响应字节数、用户ID），异步批量写出，见AccessLogWriter
+ *   2. 路径模板优先使用指标的uri标签，其次是Sentinel资源，都没有时使用原始路径
+ *   3. 响应字节数为实际写出的字节数（压缩后）；客户端取消的请求状态码记为499
+ */
+@Component
+public class GlobalAccessLogFilter implements GlobalFilter, Ordered {
+
+    private static final int STATUS_CLIENT_CLOSED = 499;
+
+    @Autowired
+    private AccessLogWriter accessLogWriter;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!accessLogWriter.isEnabled()){
+            return chain.filter(exchange);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        long startTime = System.nanoTime();
+        CountingResponse response = new CountingResponse(exchange.getResponse());
+        return chain.filter(exchange.mutate().response(response).build())
+                .doOnError(e -> response.failed = true)
+                .doFinally(signal -> accessLogWriter.write(new AccessLogRecord(
+                        timestamp,
+                        routeId(exchange),
+                        exchange.getRequest().getMethod().name(),
+                        uri(exchange),
+                        status(response, signal),
+                        System.nanoTime() - startTime,
+                        response.bytes,
+                        exchange.getAttribute(LOGIN_USER_ID_ATTR))));
+    }
+
+    /**
+     * 网关只按Ordered排序全局过滤器（@Order无效）
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        return route == null ? null : route.getId();
+    }
+
+    private static String uri(ServerWebExchange exchange) {
+        String template = exchange.getAttribute(URI_TEMPLATE_ATTR);
+        if (template != null){
+            return template;
+        }
+        // routeId#METHOD#/users/{userId}
+        String resource = exchange.getAttribute(SENTINEL_RESOURCE_ATTR);
+        if (resource != null){
+            int index = resource.indexOf(SENTINEL_RULE_SPLITTER, resource.indexOf(SENTINEL_RULE_SPLITTER) + 1);
+            return resource.substring(index + 1);
+        }
+        return exchange.getRequest().getPath().value();
+    }
+
+    private static int status(CountingResponse response, SignalType signal) {
+        if (signal == SignalType.CANCEL){
+            return STATUS_CLIENT_CLOSED;
+        }
+        HttpStatusCode status = response.getStatusCode();
+        if (status != null){
+            return status.value();
+        }
+        // 异常由GatewayExceptionHandler处理，此时还未设置状态码
+        return response.failed ? 500 : 200;
+    }
+
+    /**
+     * 统计写出的响应字节数
+     */
+    private static class CountingResponse extends ServerHttpResponseDecorator {
+
+        private volatile long bytes;
+
+        private volatile boolean failed;
+
+        private CountingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(this::count));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(chunks -> Flux.from(chunks).doOnNext(this::count)));
+        }
+
+        private void count(DataBuffer buffer) {
+            bytes += buffer.readableByteCount();
+        }
+    }
+}
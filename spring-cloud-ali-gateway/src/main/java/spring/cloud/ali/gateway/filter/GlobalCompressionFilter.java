@@ -0,0 +1,203 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.compression.ContentEncoding;
+import spring.cloud.ali.gateway.component.compression.StreamingCompressor;
+import spring.cloud.ali.gateway.component.eventloop.EventLoopMonitor;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 响应压缩（在NettyWriteResponseFilter写出响应之前包装响应）：
+ *   1. 按Accept-Encoding协商br（需brotli4j）、gzip、deflate
+ *   2. 不压缩：HEAD请求、无响应体的状态、上游已压缩、Content-Length小于min-size、已压缩的内容类型、流式响应（writeAndFlushWith）
+ *   3. 逐块流式压缩，使用池化的Netty ByteBuf，不聚合响应体
+ *   4. 事件循环线程CPU使用率超过cpu-threshold时跳过压缩，优先保证转发
+ *   5. 指标：ali_gateway_compression_ratio（压缩后/压缩前），ali_gateway_compression_time（每个响应的压缩耗时），
+ *      ali_gateway_compression_bypassed{reason=cpu}（因CPU繁忙未压缩的响应数）
+ */
+@Component
+public class GlobalCompressionFilter implements GlobalFilter, Ordered {
+
+    private static final NettyDataBufferFactory POOLED_BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EventLoopMonitor eventLoopMonitor;
+
+    /**
+     * key：routeId#encoding，value：指标句柄
+     */
+    private final Map<String, CompressionMeters> meters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        AppConfig.Compression config = appConfig.getCompression();
+        if (!config.isEnabled() || exchange.getRequest().getMethod() == HttpMethod.HEAD){
+            return chain.filter(exchange);
+        }
+        ContentEncoding encoding = ContentEncoding.negotiate(exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null){
+            return chain.filter(exchange);
+        }
+
+        return chain.filter(exchange.mutate().response(new CompressionResponse(exchange, encoding, config)).build());
+    }
+
+    /**
+     * 网关只按Ordered排序全局过滤器（@Order无效），需在NettyWriteResponseFilter之前包装响应
+     */
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    private boolean shouldCompress(ServerHttpResponse response, AppConfig.Compression config) {
+        HttpStatusCode status = response.getStatusCode();
+        if (status != null && (status.value() == 204 || status.value() == 304 || status.is1xxInformational())){
+            return false;
+        }
+
+        HttpHeaders headers = response.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)){
+            return false;
+        }
+        long contentLength = headers.getContentLength();
+        if (contentLength >= 0 && contentLength < config.getMinSize()){
+            return false;
+        }
+        MediaType contentType = headers.getContentType();
+        if (contentType == null){
+            return false;
+        }
+        for (String excluded : config.getExcludedMimeTypes()){
+            if (MediaType.parseMediaType(excluded).includes(contentType)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CompressionMeters meters(ServerWebExchange exchange, ContentEncoding encoding) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        String routeId = route == null ? "" : route.getId();
+        return meters.computeIfAbsent(routeId + "#" + encoding.getValue(), k -> new CompressionMeters(
+                DistributionSummary.builder("ali_gateway_compression_ratio")
+                        .tags("service", routeId, "encoding", encoding.getValue())
+                        .publishPercentiles(0.5, 0.9)
+                        .register(meterRegistry),
+                Timer.builder("ali_gateway_compression_time")
+                        .tags("service", routeId, "encoding", encoding.getValue())
+                        .register(meterRegistry),
+                meterRegistry.counter("ali_gateway_compression_bypassed", "service", routeId, "reason", "cpu")));
+    }
+
+    private class CompressionResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        private final ContentEncoding encoding;
+
+        private final AppConfig.Compression config;
+
+        private CompressionResponse(ServerWebExchange exchange, ContentEncoding encoding, AppConfig.Compression config) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.encoding = encoding;
+            this.config = config;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!shouldCompress(getDelegate(), config)){
+                return super.writeWith(body);
+            }
+            CompressionMeters compressionMeters = meters(exchange, encoding);
+            if (eventLoopMonitor.getCpuUsage() > config.getCpuThreshold()){
+                compressionMeters.bypassed.increment();
+                return super.writeWith(body);
+            }
+
+            HttpHeaders headers = getDelegate().getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding.getValue());
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+            NettyDataBufferFactory bufferFactory = bufferFactory() instanceof NettyDataBufferFactory nettyBufferFactory
+                    ? nettyBufferFactory : POOLED_BUFFER_FACTORY;
+            return Mono.defer(() -> {
+                StreamingCompressor compressor = new StreamingCompressor(encoding, config.getLevel());
+                Flux<DataBuffer> compressed = Flux.from(body)
+                        .concatMapIterable(buffer -> wrap(compressor.compress(NettyDataBufferFactory.toByteBuf(buffer)), bufferFactory))
+                        .concatWith(Flux.defer(() -> {
+                            List<DataBuffer> tail = wrap(compressor.finish(), bufferFactory);
+                            compressionMeters.record(compressor);
+                            return Flux.fromIterable(tail);
+                        }))
+                        .doFinally(s -> compressor.release());
+                return super.writeWith(compressed);
+            });
+        }
+
+        private List<DataBuffer> wrap(List<ByteBuf> bufs, NettyDataBufferFactory bufferFactory) {
+            return bufs.stream().<DataBuffer>map(bufferFactory::wrap).toList();
+        }
+    }
+
+    private static class CompressionMeters {
+
+        private final DistributionSummary ratio;
+
+        private final Timer time;
+
+        private final Counter bypassed;
+
+        private CompressionMeters(DistributionSummary ratio, Timer time, Counter bypassed) {
+            this.ratio = ratio;
+            this.time = time;
+            this.bypassed = bypassed;
+        }
+
+        private void record(StreamingCompressor compressor) {
+            if (compressor.getInputBytes() > 0){
+                ratio.record((double) compressor.getOutputBytes() / compressor.getInputBytes());
+            }
+            time.record(compressor.getCompressNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
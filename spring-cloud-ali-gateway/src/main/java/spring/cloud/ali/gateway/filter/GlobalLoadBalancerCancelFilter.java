@@ -0,0 +1,31 @@
+package spring.cloud.ali.gateway.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer;
+
+/**
+ * 转发被取消时（对冲失败的请求、超时、客户端断开）释放负载均衡的实例并发数：
+ *   ReactiveLoadBalancerClientFilter只在完成和异常时回调onComplete，见PeakEwmaLoadBalancer.cancellable
+ */
+@Component
+public class GlobalLoadBalancerCancelFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return PeakEwmaLoadBalancer.cancellable(chain.filter(exchange));
+    }
+
+    /**
+     * 在ReactiveLoadBalancerClientFilter之前执行，覆盖实例选择和转发
+     */
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+    }
+}
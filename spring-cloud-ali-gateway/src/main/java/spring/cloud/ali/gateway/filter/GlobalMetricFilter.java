@@ -1,35 +1,82 @@
 package spring.cloud.ali.gateway.filter;
 
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
-import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import io.micrometer.core.instrument.MeterRegistry;
+import spring.cloud.ali.gateway.component.metric.UriTemplateResolver;
+import spring.cloud.ali.gateway.config.AppConfig;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+import static spring.cloud.ali.gateway.filter.GlobalSentinelFilter.SENTINEL_RESOURCE_ATTR;
 
+/**
+ * 请求指标统计：
+ *   1. uri标签使用路径模板（Sentinel规则资源或配置的模板），避免/users/123这类路径造成序列膨胀
+ *   2. 指标句柄按routeId#METHOD#template缓存，请求时不再查找注册表
+ *   3. 序列数超过上限后，新路径归入溢出桶（uri=OTHER）
+ *   4. 在路由过滤器之前执行，耗时包括路由过滤器，被路由过滤器拒绝或直接响应的请求（登录校验失败、限流、缓存命中等）也会统计
+ */
 @Slf4j
 @Component
-@Order(Ordered.HIGHEST_PRECEDENCE + 1)
-public class GlobalMetricFilter implements GlobalFilter {
+public class GlobalMetricFilter implements GlobalFilter, Ordered {
 
     private static final String METRIC_PREFIX = "ali_gateway_requests";
 
+    static final String OVERFLOW_URI = "OTHER";
+
+    /**
+     * 请求的路径模板（指标的uri标签，供访问日志复用）
+     */
+    public static final String URI_TEMPLATE_ATTR = GlobalMetricFilter.class.getName() + ".uriTemplate";
+
     private final MeterRegistry meterRegistry;
 
+    private final AppConfig appConfig;
+
+    /**
+     * key：routeId#METHOD#template，value：指标句柄
+     */
+    private final Map<String, RequestMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * 已注册的序列数（不含溢出桶）
+     */
+    private final AtomicInteger series = new AtomicInteger();
+
+    private volatile UriTemplateResolver uriTemplateResolver;
+
     @Autowired
-    public GlobalMetricFilter(MeterRegistry meterRegistry) {
+    public GlobalMetricFilter(MeterRegistry meterRegistry, AppConfig appConfig) {
         this.meterRegistry = meterRegistry;
+        this.appConfig = appConfig;
+        this.uriTemplateResolver = new UriTemplateResolver(appConfig.getMetric().getUriTemplates());
+    }
+
+    /**
+     * 配置刷新后重建路径模板（EnvironmentChangeEvent发生时，RefreshScope的AppConfig仍是旧实例）
+     */
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        uriTemplateResolver = new UriTemplateResolver(appConfig.getMetric().getUriTemplates());
+        log.info("metric uri templates refreshed: {}", appConfig.getMetric().getUriTemplates());
     }
 
     @Override
@@ -39,38 +86,94 @@ public class GlobalMetricFilter implements GlobalFilter {
             return chain.filter(exchange);
         }
 
-        String service = route.getId();
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         return chain.filter(exchange).doOnTerminate(() -> {
-            long duration = System.currentTimeMillis() - startTime;
-            String uri = exchange.getRequest().getURI().getPath();
-            String method = exchange.getRequest().getMethod().name();
-
-            // 计数
-            meterRegistry.counter(
-                    METRIC_PREFIX + "_counter",
-                    "service", service,
-                    "uri", uri,
-                    "method", method)
-                    .increment();
-
-            // 耗时
-            Timer.builder(METRIC_PREFIX + "_timer")
-                    .tags("service", service, "uri", uri, "method", method)
-                    .publishPercentileHistogram()
-                    .publishPercentiles(0.5, 0.90, 0.95, 0.99)
-                    .serviceLevelObjectives(
-                        Duration.ofMillis(50),
-                        Duration.ofMillis(100),
-                        Duration.ofMillis(200),
-                        Duration.ofSeconds(1),
-                        Duration.ofSeconds(5))
-                    .minimumExpectedValue(Duration.ofMillis(10))
-                    .maximumExpectedValue(Duration.ofSeconds(5))
-                    .distributionStatisticExpiry(Duration.ofMinutes(5))
-                    .register(meterRegistry)
-                    .record(duration, TimeUnit.MILLISECONDS);
+            long duration = System.nanoTime() - startTime;
+
+            RequestMeters requestMeters = getMeters(route.getId(), exchange);
+            requestMeters.counter.increment();
+            requestMeters.timer.record(duration, TimeUnit.NANOSECONDS);
         });
     }
+
+    /**
+     * 网关只按Ordered排序全局过滤器（@Order无效），在GlobalSentinelFilter之后执行，复用其匹配的资源
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 2;
+    }
+
+    private RequestMeters getMeters(String routeId, ServerWebExchange exchange) {
+        String method = exchange.getRequest().getMethod().name();
+
+        // 优先使用Sentinel匹配到的资源：routeId#METHOD#/users/{userId}
+        String key = exchange.getAttribute(SENTINEL_RESOURCE_ATTR);
+        if (key == null){
+            key = uriTemplateResolver.resolve(routeId, method, exchange.getRequest().getPath().value());
+        }
+
+        String uri = key.substring(routeId.length() + method.length() + 2);
+        RequestMeters requestMeters = meters.get(key);
+        if (requestMeters == null){
+            // 在computeIfAbsent内占用序列数，并发的新序列不会超过上限；返回null时不写入
+            requestMeters = meters.computeIfAbsent(key, k -> reserveSeries() ? register(routeId, method, uri) : null);
+        }
+        if (requestMeters != null){
+            exchange.getAttributes().put(URI_TEMPLATE_ATTR, uri);
+            return requestMeters;
+        }
+
+        // 溢出桶
+        exchange.getAttributes().put(URI_TEMPLATE_ATTR, OVERFLOW_URI);
+        String overflowKey = routeId + SENTINEL_RULE_SPLITTER + method + SENTINEL_RULE_SPLITTER + OVERFLOW_URI;
+        return meters.computeIfAbsent(overflowKey, k -> register(routeId, method, OVERFLOW_URI));
+    }
+
+    /**
+     * 未达到max-series时占用一个序列数
+     */
+    private boolean reserveSeries() {
+        int maxSeries = appConfig.getMetric().getMaxSeries();
+        return series.getAndUpdate(count -> count < maxSeries ? count + 1 : count) < maxSeries;
+    }
+
+    private RequestMeters register(String service, String method, String uri) {
+
+        // 计数
+        Counter counter = Counter.builder(METRIC_PREFIX + "_counter")
+                .tags("service", service, "uri", uri, "method", method)
+                .register(meterRegistry);
+
+        // 耗时
+        Timer timer = Timer.builder(METRIC_PREFIX + "_timer")
+                .tags("service", service, "uri", uri, "method", method)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.90, 0.95, 0.99)
+                .serviceLevelObjectives(
+                    Duration.ofMillis(50),
+                    Duration.ofMillis(100),
+                    Duration.ofMillis(200),
+                    Duration.ofSeconds(1),
+                    Duration.ofSeconds(5))
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .distributionStatisticExpiry(Duration.ofMinutes(5))
+                .register(meterRegistry);
+
+        return new RequestMeters(counter, timer);
+    }
+
+    private static class RequestMeters {
+
+        private final Counter counter;
+
+        private final Timer timer;
+
+        private RequestMeters(Counter counter, Timer timer) {
+            this.counter = counter;
+            this.timer = timer;
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.client.HttpClient;
+import spring.cloud.ali.gateway.component.upstream.UpstreamHttpClients;
+
+import java.util.List;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+/**
+ * 路由转发（替换默认的NettyRoutingFilter，需配置spring.cloud.gateway.global-filter.netty-routing.enabled=false）：
+ *   1. 按路由使用独立连接池的HttpClient，见UpstreamHttpClients
+ *   2. 保留路由元数据connect-timeout、response-timeout的支持
+ */
+@Component
+public class GlobalRoutingFilter extends NettyRoutingFilter {
+
+    private final UpstreamHttpClients upstreamHttpClients;
+
+    @Autowired
+    public GlobalRoutingFilter(HttpClient httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                               HttpClientProperties properties, UpstreamHttpClients upstreamHttpClients) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.upstreamHttpClients = upstreamHttpClients;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        HttpClient client = upstreamHttpClients.get(route.getId());
+        Object connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+        if (connectTimeout != null){
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout instanceof Number
+                    ? ((Number) connectTimeout).intValue() : Integer.parseInt(connectTimeout.toString()));
+        }
+        return client;
+    }
+}
@@ -1,10 +1,6 @@
 package spring.cloud.ali.gateway.filter;
 
-import com.alibaba.csp.sentinel.Entry;
-import com.alibaba.csp.sentinel.SphU;
-import com.alibaba.csp.sentinel.Tracer;
-import com.alibaba.csp.sentinel.context.Context;
-import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.block.AbstractRule;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRule;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowException;
@@ -13,10 +9,14 @@ import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.shaded.com.google.common.base.Strings;
 import com.alibaba.nacos.shaded.com.google.common.base.Throwables;
 import com.alibaba.nacos.shaded.com.google.common.collect.Maps;
-import lombok.Data;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
@@ -31,18 +31,24 @@ import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
-import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
-import org.springframework.web.util.pattern.PathPattern;
 import reactor.core.publisher.Mono;
 import spring.cloud.ali.common.component.sentinel.SentinelConfigService;
 import spring.cloud.ali.common.enums.HttpRespStatus;
-import spring.cloud.ali.common.util.WebUtil;
+import spring.cloud.ali.gateway.component.sentinel.Criticality;
+import spring.cloud.ali.gateway.component.sentinel.CriticalityShedder;
+import spring.cloud.ali.gateway.component.sentinel.ReactiveSentinel;
+import spring.cloud.ali.gateway.component.sentinel.ResourceMatcher;
+import spring.cloud.ali.gateway.component.sentinel.RouteRulesLoader;
+import spring.cloud.ali.gateway.component.sentinel.RouteShedder;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
+import spring.cloud.ali.gateway.config.AppConfig;
 import spring.cloud.ali.gateway.config.GatewayConfig;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,12 +65,23 @@ import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_REQUEST_TOO_MANY
  * 基于Sentinel实现的流控熔断拦截器：
  *   1. API维度（Sentinel本身只支持route和API分组维度的治理）
  *   2. 支持nacos动态更新（业务应用，需提前在nacos配置规则，因为网关无法预知有哪些具体路径）
- *   3. TODO 可考虑为业务应用，进行自动化配置（拉取应用所有api写入默认规则文件）
+ *   3. 系统过载时按请求重要性先拒绝可丢弃请求，见CriticalityShedder
+ *   4. 在路由过滤器之前执行，被拒绝的请求不再经过登录校验、缓存、幂等等路由过滤器
+ *   5. TODO 可考虑为业务应用，进行自动化配置（拉取应用所有api写入默认规则文件）
  */
 @Slf4j
 @Component
-@Order(Ordered.HIGHEST_PRECEDENCE)
-public class GlobalSentinelFilter implements GlobalFilter {
+public class GlobalSentinelFilter implements GlobalFilter, Ordered {
+
+    /**
+     * 当前请求匹配到的Sentinel资源（供后续过滤器使用，如指标按路径模板聚合）
+     */
+    public static final String SENTINEL_RESOURCE_ATTR = GlobalSentinelFilter.class.getName() + ".resource";
+
+    /**
+     * 当前请求的重要性
+     */
+    public static final String CRITICALITY_ATTR = GlobalSentinelFilter.class.getName() + ".criticality";
 
     @Value("${spring.application.name}")
     private String appName;
@@ -75,15 +92,35 @@ public class GlobalSentinelFilter implements GlobalFilter {
     @Autowired
     private SentinelConfigService sentinelConfigService;
 
+    @Autowired
+    private RouteShedder routeShedder;
+
+    @Autowired
+    private CriticalityShedder criticalityShedder;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RouteRulesLoader rulesLoader;
+
     private final Map<String, RouteAppRules> allAppRules = Maps.newConcurrentMap();
 
+    @PostConstruct
+    public void init() {
+        rulesLoader = new RouteRulesLoader(meterRegistry);
+    }
+
+    /**
+     * 启动时加载规则，加载完成（或超时）前保持未就绪，之后由UpstreamWarmer预热并就绪
+     */
     @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void onApplicationReady(ApplicationReadyEvent event) {
-        try {
-            initAllAppRules();
-        } catch (NacosException e) {
-            throw new RuntimeException(e);
-        }
+        AvailabilityChangeEvent.publish(event.getApplicationContext(), ReadinessState.REFUSING_TRAFFIC);
+        initAllAppRules();
     }
 
     @EventListener
@@ -110,103 +147,73 @@ public class GlobalSentinelFilter implements GlobalFilter {
             return chain.filter(exchange);
         }
 
-        String resource = resolveResource(route, req);
-        try {
+        Criticality criticality = criticalityShedder.resolve(route, req);
+        exchange.getAttributes().put(CRITICALITY_ATTR, criticality);
+        if (criticalityShedder.shouldShed(route, criticality)){
+            // 系统过载，按重要性拒绝
+            return RejectResponses.write(resp, HTTP_REQUEST_TOO_MANY);
+        }
 
-            if (Strings.isNullOrEmpty(resource)){
-                // 该路径，没有配置规则
-                return chain.filter(exchange);
-            }
+        String resource = resolveResource(route, req);
+        if (Strings.isNullOrEmpty(resource)){
+            // 该路径，没有配置规则
+            return chain.filter(exchange);
+        }
+        exchange.getAttributes().put(SENTINEL_RESOURCE_ATTR, resource);
 
-            Entry entry = SphU.entry(resource);
-            return chain.filter(exchange)
-                    .contextWrite(ctx -> ctx.put(Context.class, ContextUtil.getContext()))
-                    .contextWrite(ctx -> ctx.put(Entry.class, entry))
-                    .onErrorResume(e -> {
-
-                        Context ctxSentinelContext = exchange.getAttribute(Context.class.getName());
-                        Entry ctxEntry = exchange.getAttribute(Entry.class.getName());
-
-                        if (e instanceof ResponseStatusException){
-                            ResponseStatusException rse = (ResponseStatusException) e;
-                            if (HttpRespStatus.isServiceUnAvailable(rse.getStatusCode().value())){
-                                // 异常埋点统计
-                                ContextUtil.runOnContext(ctxSentinelContext, () -> Tracer.traceEntry(e, ctxEntry));
-                                log.warn("resource {} isn't available, trace entry: {}", resource, ctxEntry);
-                            }
-                        }
-
-                        return resp.writeWith(Mono.just(
-                                resp.bufferFactory().wrap(DEFAULT.getMsg().getBytes(StandardCharsets.UTF_8))));
-                    }).doFinally((s) -> {
-
-                        Entry ctxEntry = exchange.getAttribute(Entry.class.getName());
-                        if (ctxEntry != null) {
-                            ctxEntry.exit();
-                        }
-
-                        ContextUtil.exit();
-
-                    }).then();
-        } catch (BlockException e){
-            HttpRespStatus rs = e instanceof FlowException ? HTTP_REQUEST_TOO_MANY : DEFAULT;
-            log.error("api request blocked: resource={}, rule={}", resource, e.getRule());
-            return resp.writeWith(Mono.just(resp.bufferFactory().wrap(
-                    rs.getMsg().getBytes(StandardCharsets.UTF_8))));
-        } catch (Throwable e){
-            log.error("unknown exception: resource={}, error={}", resource, Throwables.getStackTraceAsString(e));
-        } finally {
-            ContextUtil.exit();
+        if (routeShedder.shouldShed(route.getId(), resource)){
+            // 该API被Sentinel拒绝的比例过高，快速拒绝
+            return RejectResponses.write(resp, HTTP_REQUEST_TOO_MANY);
         }
 
-        return resp.writeWith(Mono.just(
-                resp.bufferFactory().wrap(DEFAULT.getMsg().getBytes(StandardCharsets.UTF_8))));
+        // 异步Entry覆盖订阅到结束的整个上游调用
+        return ReactiveSentinel.entry(route.getId(), resource, resp, () -> {
+                    routeShedder.onPass(resource);
+                    return chain.filter(exchange);
+                })
+                .onErrorResume(BlockException.class, e -> {
+                    routeShedder.onBlock(resource);
+                    HttpRespStatus rs = e instanceof FlowException ? HTTP_REQUEST_TOO_MANY : DEFAULT;
+                    log.error("api request blocked: resource={}, rule={}", resource, e.getRule());
+                    return RejectResponses.write(resp, rs);
+                })
+                .onErrorResume(e -> {
+                    log.error("unknown exception: resource={}, error={}", resource, Throwables.getStackTraceAsString(e));
+                    return RejectResponses.writeBody(resp, DEFAULT);
+                });
+    }
+
+    /**
+     * 网关只按Ordered排序全局过滤器（@Order无效），在访问日志之后、路由过滤器之前执行
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
     }
 
     public String resolveResource(Route route, ServerHttpRequest req) {
 
         // 内存中规则：ali-user#GET#/users/detail，规则配置文件里是GET#/users/detail
-        String requestPath = req.getPath().value();
-        String resourcePrefix = route.getId() + SENTINEL_RULE_SPLITTER + req.getMethod().name() + SENTINEL_RULE_SPLITTER;
-        String resource = resourcePrefix + requestPath;
-
         RouteAppRules appRules = allAppRules.get(route.getId());
-        if (appRules.contain(resource)){
-            // 精确匹配到
-            return resource;
+        if (appRules == null){
+            return null;
         }
 
-        // 尝试模式匹配，如：/users/123 -> /users/{id}
-        return doPatternMatch(requestPath, resourcePrefix, appRules.getDegrades().keySet());
-    }
-
-    private static String doPatternMatch(String requestPath, String resourcePrefix, Set<String> resources) {
-        for(String resource : resources){
-            if (resource.contains("{")){
-                PathPattern.PathMatchInfo matched =
-                        WebUtil.matchPatten(resource.replace(resourcePrefix, ""), requestPath);
-                if (matched != null){
-                    // 匹配到了
-                    return resource;
-                }
-            }
-        }
-        return null;
+        // 精确匹配及模式匹配，如：/users/123 -> /users/{id}
+        return appRules.getMatcher().match(req.getMethod().name(), req.getPath().value());
     }
 
     /**
      * 启动时，初始化应用规则
      */
-    private void initAllAppRules() throws NacosException {
+    private void initAllAppRules() {
         // 拉取各应用的规则
         List<RouteDefinition> routes = gatewayConfig.getRoutes();
         if(CollectionUtils.isEmpty(routes)){
             return;
         }
 
-        for (RouteDefinition route : routes){
-            initAppRules(route.getId());
-        }
+        initAppRules(routes.stream().map(RouteDefinition::getId).collect(Collectors.toList()));
     }
 
     /**
@@ -232,13 +239,7 @@ public class GlobalSentinelFilter implements GlobalFilter {
             Set<String> addedRouteIds = new HashSet<>(latestRouteIds);
             addedRouteIds.removeAll(currentRouteIds);
             if(!CollectionUtils.isEmpty(addedRouteIds)){
-                for (String routeId : addedRouteIds){
-                    try {
-                        initAppRules(routeId);
-                    } catch (NacosException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+                initAppRules(addedRouteIds);
             }
 
             // 删除的Route，需移除监听和卸载规则
@@ -252,7 +253,19 @@ public class GlobalSentinelFilter implements GlobalFilter {
         }
     }
 
-    private void initAppRules(String routeId) throws NacosException {
+    /**
+     * 并发加载路由规则（流控、降级），最多等待gateway.rule-bootstrap.deadline
+     */
+    private void initAppRules(Collection<String> routeIds) {
+        Map<String, RouteRulesLoader.RuleTask> ruleTasks = new LinkedHashMap<>();
+        ruleTasks.put("flow", this::initFlowRules);
+        ruleTasks.put("degrade", this::initDegradeRules);
+
+        AppConfig.RuleBootstrap config = appConfig.getRuleBootstrap();
+        rulesLoader.load(routeIds, ruleTasks, config.getParallelism(), config.getDeadline());
+    }
+
+    private void initFlowRules(String routeId) throws NacosException {
 
         // 初始化流控规则
         sentinelConfigService.initFlowRules(SENTINEL_FLOW_RULES, routeId, new SentinelConfigService.RuleListener<FlowRule>() {
@@ -264,16 +277,15 @@ public class GlobalSentinelFilter implements GlobalFilter {
 
             @Override
             public void postRefresh(List<FlowRule> refreshed) {
-                RouteAppRules routeRules = allAppRules.get(routeId);
-                if (routeRules == null){
-                    routeRules = new RouteAppRules();
-                    routeRules.setRouteId(routeId);
-                    allAppRules.put(routeId, routeRules);
-                }
-                routeRules.setFlows(refreshed.stream().collect(Collectors.toMap(FlowRule::getResource, r -> r)));
+                Map<String, FlowRule> flows = toRouteRules(routeId, refreshed);
+                RouteAppRules routeRules = allAppRules.compute(routeId, (id, current) ->
+                        RouteAppRules.of(id, flows, current == null ? Collections.emptyMap() : current.getDegrades()));
                 log.info("sentinel flow rules refreshed: routeId={}, rules={}", routeId, routeRules.getFlows());
             }
         });
+    }
+
+    private void initDegradeRules(String routeId) throws NacosException {
 
         // 初始化降级规则
         sentinelConfigService.initDegradeRules(SENTINEL_DEGRADE_RULES, routeId, new SentinelConfigService.RuleListener<DegradeRule>() {
@@ -285,17 +297,12 @@ public class GlobalSentinelFilter implements GlobalFilter {
 
             @Override
             public void postRefresh(List<DegradeRule> refreshed) {
-                RouteAppRules routeRules = allAppRules.get(routeId);
-                if (routeRules == null){
-                    routeRules = new RouteAppRules();
-                    routeRules.setRouteId(routeId);
-                    allAppRules.put(routeId, routeRules);
-                }
-                routeRules.setDegrades(refreshed.stream().collect(Collectors.toMap(DegradeRule::getResource, r -> r)));
+                Map<String, DegradeRule> degrades = toRouteRules(routeId, refreshed);
+                RouteAppRules routeRules = allAppRules.compute(routeId, (id, current) ->
+                        RouteAppRules.of(id, current == null ? Collections.emptyMap() : current.getFlows(), degrades));
                 log.info("sentinel degrade rules refreshed: routeId={}, rules={}", routeId, routeRules.getDegrades());
             }
         });
-
     }
 
     /**
@@ -314,17 +321,45 @@ public class GlobalSentinelFilter implements GlobalFilter {
         allAppRules.remove(routeId);
     }
 
-    @Data
+    /**
+     * 筛选属于该路由的规则（回调中为Sentinel内存中同类型的全部规则）
+     */
+    private static <T extends AbstractRule> Map<String, T> toRouteRules(String routeId, List<T> rules) {
+        String routePrefix = routeId + SENTINEL_RULE_SPLITTER;
+        return rules.stream()
+                .filter(r -> r.getResource().startsWith(routePrefix))
+                .collect(Collectors.toMap(AbstractRule::getResource, r -> r, (r1, r2) -> r2));
+    }
+
+    /**
+     * 路由规则快照（不可变，刷新时整体替换）
+     */
+    @Getter
     private static class RouteAppRules {
 
-        private String routeId;
+        private final String routeId;
+
+        private final Map<String, FlowRule> flows;
 
-        private Map<String, FlowRule> flows = Collections.emptyMap();
+        private final Map<String, DegradeRule> degrades;
 
-        private Map<String, DegradeRule> degrades = Collections.emptyMap();
+        /**
+         * 由flows和degrades编译的资源匹配器
+         */
+        private final ResourceMatcher matcher;
+
+        private RouteAppRules(String routeId, Map<String, FlowRule> flows, Map<String, DegradeRule> degrades) {
+            this.routeId = routeId;
+            this.flows = flows;
+            this.degrades = degrades;
+
+            Set<String> resources = new HashSet<>(flows.keySet());
+            resources.addAll(degrades.keySet());
+            this.matcher = ResourceMatcher.compile(routeId, resources);
+        }
 
-        public boolean contain(String resource){
-            return flows.containsKey(resource) || degrades.containsKey(resource);
+        static RouteAppRules of(String routeId, Map<String, FlowRule> flows, Map<String, DegradeRule> degrades){
+            return new RouteAppRules(routeId, flows, degrades);
         }
     }
 }
@@ -0,0 +1,329 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.common.component.web.HttpWebFluxClient;
+import spring.cloud.ali.common.dto.HttpResult;
+import spring.cloud.ali.common.enums.HttpRespStatus;
+import spring.cloud.ali.common.util.JsonUtil;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeoutException;
+
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_TOKEN;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+/**
+ * 路由聚合（BFF，如移动端首页的用户信息+订单列表），不转发到路由uri，直接响应：
+ *   1. 通过HttpWebFluxClient并行GET各个lb://服务（legs），需配置在RouteLoginFilter之后，token只校验一次
+ *   2. 每个leg独立超时；required的leg失败（超时、异常、HttpResult.code非0）时取消其它leg，返回该leg的错误；
+ *      非required的leg失败时data中该项为null，失败的leg名称写入响应头X-Gateway-Aggregate-Failed
+ *   3. 响应：HttpResult.success({leg名称: leg的HttpResult.data, ...})，按legs的配置顺序
+ *   4. 指标：ali_gateway_aggregate_legs{leg, result=success|failure|timeout}
+ */
+@Slf4j
+@Component
+public class RouteAggregateFilter extends AbstractGatewayFilterFactory<RouteAggregateFilter.Config> {
+
+    public static final String FAILED_HEADER = "X-Gateway-Aggregate-Failed";
+
+    private static final String LB_SCHEME = "lb";
+
+    private static final ParameterizedTypeReference<HttpResult<JsonNode>> RESULT_TYPE =
+            new ParameterizedTypeReference<HttpResult<JsonNode>>() {};
+
+    @Autowired
+    private HttpWebFluxClient httpWebFluxClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public RouteAggregateFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        if (CollectionUtils.isEmpty(config.getLegs())){
+            throw new IllegalArgumentException("aggregate legs is empty: routeId=" + routeId);
+        }
+        List<LegCall> calls = new ArrayList<>(config.getLegs().size());
+        for (Leg leg : config.getLegs()){
+            calls.add(new LegCall(routeId, leg));
+        }
+        log.info("route aggregate created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            ServerHttpRequest req = exchange.getRequest();
+            Map<String, String> headers = forwardHeaders(req, config);
+            Map<String, String> queries = req.getQueryParams().toSingleValueMap();
+
+            List<Mono<LegResult>> results = new ArrayList<>(calls.size());
+            for (LegCall call : calls){
+                results.add(call.call(headers, queries));
+            }
+            // required的leg失败时zip立即结束，取消其它进行中的leg
+            return Mono.zip(results, RouteAggregateFilter::merge)
+                    .flatMap(merged -> writeMerged(exchange.getResponse(), merged))
+                    .onErrorResume(RequiredLegFailedException.class, e -> writeFailure(exchange.getResponse(), e.result));
+        };
+    }
+
+    private static Map<String, String> forwardHeaders(ServerHttpRequest req, Config config) {
+        Map<String, String> headers = new HashMap<>();
+        for (String header : config.getHeaders()){
+            String value = req.getHeaders().getFirst(header);
+            if (value != null){
+                headers.put(header, value);
+            }
+        }
+        return headers;
+    }
+
+    private static Merged merge(Object[] results) {
+        Map<String, JsonNode> data = new LinkedHashMap<>();
+        StringJoiner failed = new StringJoiner(",");
+        for (Object o : results){
+            LegResult result = (LegResult) o;
+            if (result.isSuccess()){
+                data.put(result.leg.getName(), result.result.getData());
+            } else {
+                data.put(result.leg.getName(), null);
+                failed.add(result.leg.getName());
+            }
+        }
+        return new Merged(data, failed.length() == 0 ? null : failed.toString());
+    }
+
+    private static Mono<Void> writeMerged(ServerHttpResponse resp, Merged merged) {
+        if (merged.failed != null){
+            resp.getHeaders().set(FAILED_HEADER, merged.failed);
+        }
+        return writeJson(resp, HttpStatus.OK, HttpResult.success(merged.data));
+    }
+
+    /**
+     * required的leg失败：业务错误原样返回，调用异常按HTTP状态返回
+     */
+    private static Mono<Void> writeFailure(ServerHttpResponse resp, LegResult result) {
+        resp.getHeaders().set(FAILED_HEADER, result.leg.getName());
+        if (result.result != null){
+            return writeJson(resp, HttpStatus.OK, HttpResult.fail(result.result.getCode(), result.result.getMsg()));
+        }
+        return RejectResponses.write(resp, result.errorStatus());
+    }
+
+    private static Mono<Void> writeJson(ServerHttpResponse resp, HttpStatus status, HttpResult<?> result) {
+        byte[] body = JsonUtil.toJson(result).getBytes(StandardCharsets.UTF_8);
+        resp.setStatusCode(status);
+        resp.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        resp.getHeaders().setContentLength(body.length);
+        return resp.writeWith(Mono.just(resp.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * 单个leg的调用（apply时创建，指标按leg区分）
+     */
+    private class LegCall {
+
+        private final Leg leg;
+
+        private final String serviceId;
+
+        private final Duration timeout;
+
+        private final Counter success;
+
+        private final Counter failure;
+
+        private final Counter timeouts;
+
+        private LegCall(String routeId, Leg leg) {
+            URI uri = URI.create(leg.getUri());
+            if (!LB_SCHEME.equals(uri.getScheme()) || uri.getHost() == null){
+                throw new IllegalArgumentException("aggregate leg uri must be lb://service: routeId=" + routeId + ", leg=" + leg);
+            }
+            this.leg = leg;
+            this.serviceId = uri.getHost();
+            this.timeout = Duration.ofMillis(leg.getTimeoutMs());
+            this.success = counter(routeId, leg, "success");
+            this.failure = counter(routeId, leg, "failure");
+            this.timeouts = counter(routeId, leg, "timeout");
+        }
+
+        private Counter counter(String routeId, Leg leg, String result) {
+            return meterRegistry.counter("ali_gateway_aggregate_legs", "service", routeId, "leg", leg.getName(), "result", result);
+        }
+
+        private Mono<LegResult> call(Map<String, String> headers, Map<String, String> reqQueries) {
+            Map<String, String> queries = reqQueries;
+            if (!leg.isForwardQuery()){
+                queries = leg.getQueries();
+            } else if (!leg.getQueries().isEmpty()){
+                queries = new HashMap<>(reqQueries);
+                queries.putAll(leg.getQueries());
+            }
+
+            return httpWebFluxClient.get(serviceId, leg.getPath(), headers, queries, RESULT_TYPE)
+                    .timeout(timeout)
+                    .map(result -> new LegResult(leg, result, null))
+                    .switchIfEmpty(Mono.fromSupplier(() -> new LegResult(leg, null, new IllegalStateException("empty response"))))
+                    .onErrorResume(e -> Mono.just(new LegResult(leg, null, e)))
+                    .flatMap(result -> {
+                        if (result.isSuccess()){
+                            success.increment();
+                            return Mono.just(result);
+                        }
+                        if (result.error instanceof TimeoutException){
+                            timeouts.increment();
+                        } else {
+                            failure.increment();
+                        }
+                        log.debug("aggregate leg failed: leg={}, result={}", leg.getName(), result.result, result.error);
+                        return leg.isRequired() ? Mono.error(new RequiredLegFailedException(result)) : Mono.just(result);
+                    });
+        }
+    }
+
+    private static class LegResult {
+
+        private final Leg leg;
+
+        /**
+         * 上游响应，调用异常时为空
+         */
+        private final HttpResult<JsonNode> result;
+
+        private final Throwable error;
+
+        private LegResult(Leg leg, HttpResult<JsonNode> result, Throwable error) {
+            this.leg = leg;
+            this.result = result;
+            this.error = error;
+        }
+
+        private boolean isSuccess() {
+            return result != null && result.getCode() != null && HttpResult.isSuccess(result.getCode());
+        }
+
+        private HttpRespStatus errorStatus() {
+            if (error instanceof TimeoutException){
+                return HttpRespStatus.HTTP_GATEWAY_TIMEOUT;
+            }
+            if (error instanceof WebClientResponseException){
+                HttpRespStatus s = HttpRespStatus.get(((WebClientResponseException) error).getStatusCode());
+                return s == HttpRespStatus.DEFAULT ? HttpRespStatus.HTTP_BAD_GATEWAY : s;
+            }
+            return HttpRespStatus.HTTP_BAD_GATEWAY;
+        }
+    }
+
+    private static class Merged {
+
+        private final Map<String, JsonNode> data;
+
+        /**
+         * 失败的leg，逗号分隔
+         */
+        private final String failed;
+
+        private Merged(Map<String, JsonNode> data, String failed) {
+            this.data = data;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * required的leg失败，结束聚合
+     */
+    private static class RequiredLegFailedException extends RuntimeException {
+
+        private final LegResult result;
+
+        private RequiredLegFailedException(LegResult result) {
+            super("aggregate required leg failed: " + result.leg.getName(), null, false, false);
+            this.result = result;
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 并行调用的上游接口
+         */
+        private List<Leg> legs;
+
+        /**
+         * 转发给各leg的请求头（登录用户ID由RouteLoginFilter写入）
+         */
+        private Set<String> headers = ImmutableSet.of(HTTP_HEADER_LOGIN_USER_ID, HTTP_HEADER_LOGIN_TOKEN);
+    }
+
+    @Data
+    public static class Leg {
+
+        /**
+         * 聚合响应data中的key
+         */
+        private String name;
+
+        /**
+         * 上游服务，如：lb://ali-user
+         */
+        private String uri;
+
+        /**
+         * 上游路径，如：/users/detail
+         */
+        private String path;
+
+        /**
+         * 是否转发请求的查询参数
+         */
+        private boolean forwardQuery = true;
+
+        /**
+         * 固定的查询参数（覆盖同名的请求参数）
+         */
+        private Map<String, String> queries = Collections.emptyMap();
+
+        private long timeoutMs = 1000;
+
+        /**
+         * 是否必需：必需的leg失败时整个请求失败，否则该项为null
+         */
+        private boolean required = true;
+    }
+}
@@ -0,0 +1,157 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import spring.cloud.ali.gateway.component.limit.TokenBucketTable;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_REQUEST_TOO_MANY;
+import static spring.cloud.ali.gateway.filter.RouteLoginFilter.LOGIN_USER_ID_ATTR;
+
+/**
+ * 路由按客户端限流（令牌桶）：
+ *   1. USER：按RouteLoginFilter校验通过的用户ID限流（需配置在RouteLoginFilter之后），无用户时按IP；
+ *      不使用客户端可伪造的Login-User-ID请求头
+ *   2. IP：按客户端IP限流
+ *   3. 超过限制返回429，并带Retry-After；跟踪的key数超过maxKeys时新key同样返回429
+ *   4. 指标：ali_gateway_requests_client_limited（被限流的请求数），ali_gateway_client_limiter_keys（当前key数），
+ *      ali_gateway_client_limiter_overflow（超过key上限被拒绝的请求数）
+ */
+@Slf4j
+@Component
+public class RouteClientLimitFilter extends AbstractGatewayFilterFactory<RouteClientLimitFilter.Config> {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * key：路由ID，value：令牌桶表（路由刷新时重建）
+     */
+    private final Map<String, TokenBucketTable> tables = new ConcurrentHashMap<>();
+
+    public RouteClientLimitFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        TokenBucketTable table = new TokenBucketTable(config.getRate(), config.getBurst(), config.getMaxKeys());
+        tables.put(routeId, table);
+        Gauge.builder("ali_gateway_client_limiter_keys", tables, t -> {
+                    TokenBucketTable current = t.get(routeId);
+                    return current == null ? 0 : current.size();
+                })
+                .tag("service", routeId)
+                .register(meterRegistry);
+        FunctionCounter.builder("ali_gateway_client_limiter_overflow", tables, t -> {
+                    TokenBucketTable current = t.get(routeId);
+                    return current == null ? 0 : current.overflows();
+                })
+                .tag("service", routeId)
+                .register(meterRegistry);
+        Counter limited = meterRegistry.counter("ali_gateway_requests_client_limited", "service", routeId);
+        log.info("route client limiter created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            String key = resolveKey(exchange, config);
+            if (key == null){
+                return chain.filter(exchange);
+            }
+
+            long wait = table.tryAcquire(key);
+            if (wait == 0){
+                return chain.filter(exchange);
+            }
+
+            limited.increment();
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+            return RejectResponses.write(exchange.getResponse(), HTTP_REQUEST_TOO_MANY);
+        };
+    }
+
+    private static String resolveKey(ServerWebExchange exchange, Config config) {
+        if (config.getKeyBy() == KeyBy.USER){
+            String userId = exchange.getAttribute(LOGIN_USER_ID_ATTR);
+            if (userId != null){
+                return userId;
+            }
+        }
+
+        ServerHttpRequest req = exchange.getRequest();
+        if (config.isUseForwardedFor()){
+            String forwardedFor = req.getHeaders().getFirst(FORWARDED_FOR);
+            if (forwardedFor != null){
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+
+        InetSocketAddress remoteAddress = req.getRemoteAddress();
+        return remoteAddress == null ? null : remoteAddress.getAddress().getHostAddress();
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 限流维度
+         */
+        private KeyBy keyBy = KeyBy.USER;
+
+        /**
+         * 每秒令牌数
+         */
+        private double rate = 10;
+
+        /**
+         * 桶容量（允许的突发请求数）
+         */
+        private int burst = 20;
+
+        /**
+         * 最多跟踪的key数，超过后拒绝新key
+         */
+        private int maxKeys = 1000000;
+
+        /**
+         * 是否按X-Forwarded-For的第一个地址识别客户端IP（网关前有可信的代理时开启）
+         */
+        private boolean useForwardedFor = false;
+    }
+
+    public enum KeyBy {
+
+        /**
+         * 按登录用户（无用户时按IP）
+         */
+        USER,
+
+        /**
+         * 按客户端IP
+         */
+        IP
+    }
+}
@@ -0,0 +1,208 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import spring.cloud.ali.gateway.component.web.BufferedExchange;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+/**
+ * 路由请求合并（仅GET，如热点订单详情的瞬时流量）：
+ *   1. 按 方法+路径+查询参数+指定请求头（默认含Login-User-ID，需配置在RouteLoginFilter之后）合并进行中的相同请求，
+ *      第一个请求（leader）转发到上游，之后的请求等待并复用leader的响应（状态码、响应头、响应体），不再转发
+ *   2. leader的响应在内存中缓冲后写给所有请求，响应体共享同一字节数组；带Set-Cookie的响应不复用，等待的请求各自转发
+ *   3. leader被取消（如客户端断开）时，等待的请求各自转发；leader异常时，等待的请求返回相同异常
+ *   4. 指标：ali_gateway_collapse_requests{result=leader|collapsed}（合并率 = collapsed / 总数），
+ *      ali_gateway_collapse_fanout（每次上游请求服务的请求数），ali_gateway_collapse_inflight（进行中的合并key数）
+ */
+@Slf4j
+@Component
+public class RouteCollapseFilter extends AbstractGatewayFilterFactory<RouteCollapseFilter.Config> {
+
+    private static final String COLLAPSED_HEADER = "X-Gateway-Collapsed";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public RouteCollapseFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        Map<String, InflightRequest> inflight = new ConcurrentHashMap<>();
+        Counter leaders = meterRegistry.counter("ali_gateway_collapse_requests", "service", routeId, "result", "leader");
+        Counter collapsed = meterRegistry.counter("ali_gateway_collapse_requests", "service", routeId, "result", "collapsed");
+        DistributionSummary fanout = DistributionSummary.builder("ali_gateway_collapse_fanout")
+                .tag("service", routeId)
+                .register(meterRegistry);
+        Gauge.builder("ali_gateway_collapse_inflight", inflight, Map::size)
+                .tag("service", routeId)
+                .register(meterRegistry);
+        log.info("route collapse created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            ServerHttpRequest req = exchange.getRequest();
+            if (req.getMethod() != HttpMethod.GET){
+                return chain.filter(exchange);
+            }
+
+            String key = collapseKey(req, config);
+            InflightRequest created = new InflightRequest();
+            InflightRequest existing = inflight.putIfAbsent(key, created);
+            if (existing != null){
+                // 等待进行中的相同请求
+                existing.followers.incrementAndGet();
+                collapsed.increment();
+                return existing.response.asMono()
+                        .flatMap(r -> r.isShareable() ? r.writeTo(exchange.getResponse(), true) : chain.filter(exchange))
+                        .onErrorResume(LeaderCancelledException.class, e -> chain.filter(exchange));
+            }
+
+            leaders.increment();
+            BufferedExchange buffered = new BufferedExchange(exchange);
+            return buffered.filter(chain)
+                    .then(Mono.defer(() -> {
+                        CollapsedResponse response = new CollapsedResponse(buffered.getResponse(), buffered.readBody());
+                        complete(inflight, key, created, fanout);
+                        created.response.tryEmitValue(response);
+                        return response.writeTo(exchange.getResponse(), false);
+                    }))
+                    .doOnError(e -> {
+                        complete(inflight, key, created, fanout);
+                        created.response.tryEmitError(e);
+                    })
+                    .doOnCancel(() -> {
+                        complete(inflight, key, created, fanout);
+                        created.response.tryEmitError(new LeaderCancelledException());
+                        buffered.release();
+                    });
+        };
+    }
+
+    private static void complete(Map<String, InflightRequest> inflight, String key, InflightRequest request,
+                                 DistributionSummary fanout) {
+        // 移除后的新请求重新转发，已在等待的请求仍可获取结果
+        if (inflight.remove(key, request)){
+            fanout.record(request.followers.get() + 1);
+        }
+    }
+
+    private static String collapseKey(ServerHttpRequest req, Config config) {
+        StringBuilder key = new StringBuilder(128)
+                .append(req.getMethod().name()).append('#')
+                .append(req.getURI().getRawPath());
+        if (req.getURI().getRawQuery() != null){
+            key.append('?').append(req.getURI().getRawQuery());
+        }
+        if (!config.isShareAcrossUsers()){
+            key.append('#').append(req.getHeaders().getFirst(HTTP_HEADER_LOGIN_USER_ID));
+        }
+        for (String header : config.getHeaders()){
+            key.append('#').append(req.getHeaders().getFirst(header));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 进行中的请求
+     */
+    private static class InflightRequest {
+
+        /**
+         * leader的响应（晚到的等待者也能获取）
+         */
+        private final Sinks.One<CollapsedResponse> response = Sinks.one();
+
+        private final AtomicInteger followers = new AtomicInteger();
+    }
+
+    /**
+     * leader的响应（不可变，所有请求共享）
+     */
+    private static class CollapsedResponse {
+
+        private final HttpStatusCode status;
+
+        private final HttpHeaders headers;
+
+        private final byte[] body;
+
+        private CollapsedResponse(ServerHttpResponse upstream, byte[] body) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(upstream.getHeaders());
+            this.status = upstream.getStatusCode();
+            this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+            this.body = body;
+        }
+
+        private boolean isShareable() {
+            return !headers.containsKey(HttpHeaders.SET_COOKIE);
+        }
+
+        private Mono<Void> writeTo(ServerHttpResponse resp, boolean collapsed) {
+            if (status != null){
+                resp.setStatusCode(status);
+            }
+            resp.getHeaders().putAll(headers);
+            if (collapsed){
+                resp.getHeaders().set(COLLAPSED_HEADER, "true");
+            }
+            if (body.length == 0){
+                return resp.setComplete();
+            }
+            resp.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+            resp.getHeaders().setContentLength(body.length);
+            return resp.writeWith(Mono.just(resp.bufferFactory().wrap(body)));
+        }
+    }
+
+    /**
+     * leader被取消，等待的请求各自转发
+     */
+    private static class LeaderCancelledException extends RuntimeException {
+
+        private LeaderCancelledException() {
+            super("collapse leader cancelled", null, false, false);
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 是否跨用户合并（响应与用户无关时开启，否则按Login-User-ID区分）
+         */
+        private boolean shareAcrossUsers = false;
+
+        /**
+         * 参与合并key的请求头，如：Accept-Language
+         */
+        private Set<String> headers = Collections.emptySet();
+    }
+}
@@ -0,0 +1,119 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+import spring.cloud.ali.gateway.component.limit.GradientLimiter;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_REQUEST_TOO_MANY;
+
+/**
+ * 路由自适应并发限制：
+ *   1. 按路由维护并发限制，根据请求耗时（从本过滤器开始计时，不含之前的登录校验、缓存等路由过滤器）自动调整，见GradientLimiter
+ *   2. 达到并发限制后，直接返回429
+ *   3. 指标：ali_gateway_concurrency_limit（当前限制），ali_gateway_concurrency_inflight（当前并发数）
+ */
+@Slf4j
+@Component
+public class RouteConcurrencyLimitFilter extends AbstractGatewayFilterFactory<RouteConcurrencyLimitFilter.Config> {
+
+    private static final String METRIC_PREFIX = "ali_gateway_concurrency";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * key：路由ID，value：并发限制（路由刷新时重建）
+     */
+    private final Map<String, GradientLimiter> limiters = new ConcurrentHashMap<>();
+
+    public RouteConcurrencyLimitFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        GradientLimiter limiter = new GradientLimiter(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                config.getQueueSize(), config.getTolerance(), config.getSmoothing(), config.getLongWindow());
+        limiters.put(routeId, limiter);
+        registerGauges(routeId);
+        Counter limited = meterRegistry.counter("ali_gateway_requests_limited", "service", routeId);
+        log.info("route concurrency limiter created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire()){
+                limited.increment();
+                return RejectResponses.write(exchange.getResponse(), HTTP_REQUEST_TOO_MANY);
+            }
+
+            long startTime = System.nanoTime();
+            return chain.filter(exchange).doFinally(s ->
+                    // 取消和异常的请求不记录耗时
+                    limiter.release(s == SignalType.ON_COMPLETE ? System.nanoTime() - startTime : 0));
+        };
+    }
+
+    private void registerGauges(String routeId) {
+        // 按路由ID读取，路由刷新后指标指向新的限制器
+        gauge("_limit", routeId, GradientLimiter::getLimit);
+        gauge("_inflight", routeId, GradientLimiter::getInflight);
+    }
+
+    private void gauge(String suffix, String routeId, ToDoubleFunction<GradientLimiter> value) {
+        Gauge.builder(METRIC_PREFIX + suffix, limiters, m -> {
+                    GradientLimiter limiter = m.get(routeId);
+                    return limiter == null ? 0 : value.applyAsDouble(limiter);
+                })
+                .tag("service", routeId)
+                .register(meterRegistry);
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 初始并发限制
+         */
+        private int initialLimit = 100;
+
+        private int minLimit = 10;
+
+        private int maxLimit = 1000;
+
+        /**
+         * 每次调整允许的排队余量（限制增长速度）
+         */
+        private int queueSize = 4;
+
+        /**
+         * RT容忍倍数（当前RT不超过长期RT的该倍数时不收缩）
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * 平滑系数（0~1，越大调整越快）
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * 长期RT的指数平均窗口（样本数）
+         */
+        private int longWindow = 600;
+    }
+}
@@ -0,0 +1,209 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import spring.cloud.ali.gateway.component.limit.RequestBudget;
+import spring.cloud.ali.gateway.component.metric.LatencyWindow;
+import spring.cloud.ali.gateway.component.web.BufferedExchange;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer.EXCLUDED_INSTANCES;
+import static spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer.instanceKey;
+
+/**
+ * 路由对冲请求（仅GET）：
+ *   1. 按路由统计最近请求耗时的分位数，请求超过该耗时仍未成功响应时，再发送一次请求，
+ *      负载均衡时排除第一个请求的实例（见PeakEwmaLoadBalancer.EXCLUDED_INSTANCES）
+ *   2. 先成功响应（非异常、非5xx）的请求胜出，另一请求被取消；都失败时返回第一个请求的结果
+ *   3. 对冲请求受全局预算限制（gateway.hedge.budget-percent），避免过载时放大流量
+ *   4. 对冲时响应体在网关缓冲后写出，不适合大响应或流式响应的路由
+ *   5. 只重复执行本过滤器之后的路由过滤器和转发，全局过滤器（Sentinel、指标、访问日志等）每个请求只执行一次
+ */
+@Slf4j
+@Component
+public class RouteHedgeFilter extends AbstractGatewayFilterFactory<RouteHedgeFilter.Config> {
+
+    private static final String METRIC_NAME = "ali_gateway_hedge_requests";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 全局对冲预算
+     */
+    private RequestBudget budget;
+
+    public RouteHedgeFilter() {
+        super(Config.class);
+    }
+
+    @PostConstruct
+    public void init() {
+        AppConfig.Hedge hedge = appConfig.getHedge();
+        budget = new RequestBudget(hedge.getBudgetPercent(), hedge.getMaxBurst());
+    }
+
+    @EventListener
+    public void onRefreshScopeRefreshed(RefreshScopeRefreshedEvent event) {
+        AppConfig.Hedge hedge = appConfig.getHedge();
+        budget.update(hedge.getBudgetPercent(), hedge.getMaxBurst());
+        log.info("hedge budget refreshed: {}", hedge);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        LatencyWindow latency = new LatencyWindow(config.getWindow(), config.getPercentile(), Math.max(1, config.getWindow() / 10));
+        long minDelay = TimeUnit.MILLISECONDS.toNanos(config.getMinDelayMs());
+        Counter sent = meterRegistry.counter(METRIC_NAME, "service", routeId, "result", "sent");
+        Counter won = meterRegistry.counter(METRIC_NAME, "service", routeId, "result", "won");
+        Counter denied = meterRegistry.counter(METRIC_NAME, "service", routeId, "result", "denied");
+
+        return (exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET){
+                return chain.filter(exchange);
+            }
+
+            budget.deposit();
+            long startTime = System.nanoTime();
+            long hedgeDelay = latency.getValue();
+            if (hedgeDelay < 0){
+                // 样本不足，不对冲
+                return chain.filter(exchange).doOnSuccess(v -> latency.record(System.nanoTime() - startTime));
+            }
+
+            BufferedExchange primary = new BufferedExchange(exchange);
+            Mono<Attempt> hedge = Mono.delay(Duration.ofNanos(Math.max(hedgeDelay, minDelay)))
+                    .flatMap(t -> {
+                        if (!budget.tryWithdraw()){
+                            denied.increment();
+                            return Mono.empty();
+                        }
+                        sent.increment();
+                        BufferedExchange hedged = new BufferedExchange(exchange);
+                        return Mono.deferContextual(ctx -> attempt(hedged, chain)
+                                .contextWrite(c -> c.put(EXCLUDED_INSTANCES, excluded(ctx, primary))));
+                    });
+
+            return Flux.merge(attempt(primary, chain), hedge)
+                    .takeUntil(Attempt::isSuccess)
+                    .collectList()
+                    .flatMap(attempts -> {
+                        Attempt winner = winner(attempts, primary);
+                        for (Attempt attempt : attempts){
+                            if (attempt != winner){
+                                attempt.exchange.release();
+                            }
+                        }
+                        if (winner.isSuccess()){
+                            latency.record(System.nanoTime() - startTime);
+                            if (winner.exchange != primary){
+                                won.increment();
+                            }
+                        }
+                        if (winner.error != null){
+                            winner.exchange.release();
+                            return Mono.error(winner.error);
+                        }
+                        return winner.exchange.writeTo(exchange.getResponse());
+                    });
+        };
+    }
+
+    private static Mono<Attempt> attempt(BufferedExchange exchange, GatewayFilterChain chain) {
+        return exchange.filter(chain)
+                .then(Mono.fromSupplier(() -> new Attempt(exchange, null)))
+                .onErrorResume(e -> Mono.just(new Attempt(exchange, e)))
+                .doOnCancel(exchange::release);
+    }
+
+    /**
+     * 最后一个请求成功时胜出（之前的都失败），否则返回第一个请求的结果
+     */
+    private static Attempt winner(List<Attempt> attempts, BufferedExchange primary) {
+        Attempt last = attempts.get(attempts.size() - 1);
+        return last.isSuccess() ? last : attempts.stream().filter(a -> a.exchange == primary).findFirst().orElse(last);
+    }
+
+    /**
+     * 对冲请求排除的实例：已排除的实例（如外层重试），加上第一个请求的实例
+     */
+    private static Set<String> excluded(ContextView ctx, BufferedExchange primary) {
+        Set<String> excluded = ConcurrentHashMap.newKeySet();
+        Set<String> outer = ctx.getOrDefault(EXCLUDED_INSTANCES, null);
+        if (outer != null){
+            excluded.addAll(outer);
+        }
+        Response<ServiceInstance> lbResponse = primary.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (lbResponse != null && lbResponse.hasServer()){
+            excluded.add(instanceKey(lbResponse.getServer()));
+        }
+        return excluded;
+    }
+
+    private static class Attempt {
+
+        private final BufferedExchange exchange;
+
+        private final Throwable error;
+
+        private Attempt(BufferedExchange exchange, Throwable error) {
+            this.exchange = exchange;
+            this.error = error;
+        }
+
+        private boolean isSuccess() {
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            return error == null && (status == null || !status.is5xxServerError());
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 对冲时机：最近请求耗时的该分位数
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 最小对冲延迟（毫秒）
+         */
+        private long minDelayMs = 10;
+
+        /**
+         * 统计最近的请求数
+         */
+        private int window = 1000;
+    }
+}
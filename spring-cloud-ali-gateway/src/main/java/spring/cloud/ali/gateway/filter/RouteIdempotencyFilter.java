@@ -0,0 +1,339 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.idempotency.IdempotencyStore;
+import spring.cloud.ali.gateway.component.idempotency.StoredResponse;
+import spring.cloud.ali.gateway.component.web.BufferedExchange;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_CONFLICT;
+import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_UNPROCESSABLE_ENTITY;
+
+/**
+ * 路由幂等提交（如客户端超时重试POST /orders/create，重复提交不再到达上游）：
+ *   1. 幂等key：用户+方法+路径+请求头Idempotency-Key（gateway.idempotency.header）的SHA-256，未声明时以请求指纹
+ *      （查询参数+请求体的SHA-256）代替Idempotency-Key，均按登录用户区分（需配置在RouteLoginFilter之后）
+ *   2. 声明的key被不同参数的请求复用（请求指纹与第一次不同）时返回422（idempotency.key.reused），不返回第一次的响应；
+ *      请求体长度未知或超过max-request-body-kb时不计算指纹，不比较
+ *   3. 第一个请求转发到上游，响应缓冲后保存到IdempotencyStore（本地 + Redis），ttl内的重复提交直接返回保存的响应，
+ *      带响应头X-Gateway-Idempotent-Replay: true
+ *   4. 处理中的重复提交：同一实例等待并返回相同响应；其它实例处理中时返回409（request.in.progress），客户端稍后重试
+ *   5. 5xx、带Set-Cookie或响应体超过max-response-body-kb的响应不保存（处理中的重复提交仍共享该响应），请求异常或被取消时释放，
+ *      之后的重复提交重新转发
+ *   6. 指标：ali_gateway_idempotency_requests{result=forwarded|replayed|conflict|mismatch|skipped}
+ */
+@Slf4j
+@Component
+public class RouteIdempotencyFilter extends AbstractGatewayFilterFactory<RouteIdempotencyFilter.Config> {
+
+    public static final String REPLAY_HEADER = "X-Gateway-Idempotent-Replay";
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public RouteIdempotencyFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        Meters meters = new Meters(routeId);
+        log.info("route idempotency created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            ServerHttpRequest req = exchange.getRequest();
+            if (!matches(req, config)){
+                return chain.filter(exchange);
+            }
+
+            AppConfig.Idempotency settings = appConfig.getIdempotency();
+            String declared = req.getHeaders().getFirst(settings.getHeader());
+            if (declared == null && !config.isHashBody()){
+                meters.skipped.increment();
+                return chain.filter(exchange);
+            }
+
+            HttpHeaders headers = req.getHeaders();
+            long contentLength = headers.getContentLength();
+            if (contentLength <= 0 && !headers.containsKey(HttpHeaders.TRANSFER_ENCODING)){
+                // 无请求体
+                String fingerprint = fingerprint(req, new byte[0]);
+                return dedup(exchange, chain, key(routeId, req, declared, fingerprint), fingerprint, meters);
+            }
+            if (contentLength < 0 || contentLength > settings.getMaxRequestBodyKb() * 1024L){
+                // 长度未知或过大，不读取请求体，声明key时不比较指纹
+                if (declared != null){
+                    return dedup(exchange, chain, key(routeId, req, declared, null), null, meters);
+                }
+                meters.skipped.increment();
+                return chain.filter(exchange);
+            }
+
+            return DataBufferUtils.join(req.getBody())
+                    .map(buffer -> {
+                        try {
+                            byte[] bytes = new byte[buffer.readableByteCount()];
+                            buffer.read(bytes);
+                            return bytes;
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .flatMap(body -> {
+                        ServerWebExchange cached = exchange.mutate()
+                                .request(new CachedBodyRequest(req, body, exchange.getResponse()))
+                                .build();
+                        String fingerprint = fingerprint(req, body);
+                        return dedup(cached, chain, key(routeId, req, declared, fingerprint), fingerprint, meters);
+                    });
+        };
+    }
+
+    private Mono<Void> dedup(ServerWebExchange exchange, GatewayFilterChain chain, String key, String fingerprint,
+                             Meters meters) {
+        IdempotencyStore.Record record = new IdempotencyStore.Record(fingerprint);
+        IdempotencyStore.Record existing = idempotencyStore.putIfAbsent(key, record);
+        if (existing != null){
+            if (isReused(existing.getFingerprint(), fingerprint)){
+                return mismatch(exchange, meters);
+            }
+            // 已完成或本实例处理中
+            StoredResponse completed = existing.getResponse();
+            Mono<StoredResponse> response = completed != null ? Mono.just(completed) : existing.await();
+            return response
+                    .flatMap(r -> {
+                        meters.replayed.increment();
+                        return write(exchange.getResponse(), r, true);
+                    })
+                    .onErrorResume(IdempotencyStore.InProgressException.class, e -> conflict(exchange, meters));
+        }
+
+        return idempotencyStore.claim(key).flatMap(claim -> {
+            if (claim.isClaimed()){
+                return forward(exchange, chain, key, record, claim.isRedisClaimed(), meters);
+            }
+            if (claim.getResponse() != null && isReused(claim.getResponse().getFingerprint(), fingerprint)){
+                return idempotencyStore.release(key, record, null, false)
+                        .then(mismatch(exchange, meters));
+            }
+            if (claim.getResponse() != null){
+                // 其它实例已完成
+                idempotencyStore.completeLocal(record, claim.getResponse());
+                meters.replayed.increment();
+                return write(exchange.getResponse(), claim.getResponse(), true);
+            }
+            // 其它实例处理中
+            return idempotencyStore.release(key, record, null, false)
+                    .then(conflict(exchange, meters));
+        });
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, String key,
+                               IdempotencyStore.Record record, boolean redisClaimed, Meters meters) {
+        meters.forwarded.increment();
+        BufferedExchange buffered = new BufferedExchange(exchange);
+        return buffered.filter(chain)
+                .onErrorResume(e -> idempotencyStore.release(key, record, null, redisClaimed).then(Mono.error(e)))
+                .then(Mono.defer(() -> {
+                    ServerHttpResponse upstream = buffered.getResponse();
+                    StoredResponse response = toStored(upstream, buffered.readBody(), record.getFingerprint());
+                    Mono<Void> save = storable(upstream, response)
+                            ? idempotencyStore.complete(key, record, response)
+                            : idempotencyStore.release(key, record, response, redisClaimed);
+                    return save.then(write(exchange.getResponse(), response, false));
+                }))
+                .doOnCancel(() -> {
+                    buffered.release();
+                    idempotencyStore.release(key, record, null, redisClaimed).subscribe();
+                });
+    }
+
+    private Mono<Void> conflict(ServerWebExchange exchange, Meters meters) {
+        meters.conflict.increment();
+        return RejectResponses.write(exchange.getResponse(), HTTP_CONFLICT);
+    }
+
+    private Mono<Void> mismatch(ServerWebExchange exchange, Meters meters) {
+        meters.mismatch.increment();
+        return RejectResponses.write(exchange.getResponse(), HTTP_UNPROCESSABLE_ENTITY);
+    }
+
+    /**
+     * 声明的key被不同参数的请求复用
+     */
+    private static boolean isReused(String stored, String fingerprint) {
+        return stored != null && fingerprint != null && !stored.equals(fingerprint);
+    }
+
+    private boolean storable(ServerHttpResponse upstream, StoredResponse response) {
+        return response.getStatus() < 500
+                && !upstream.getHeaders().containsKey(HttpHeaders.SET_COOKIE)
+                && response.getBody().length <= appConfig.getIdempotency().getMaxResponseBodyKb() * 1024;
+    }
+
+    private static boolean matches(ServerHttpRequest req, Config config) {
+        if (CollectionUtils.isEmpty(config.getIncludes())){
+            return req.getMethod() == HttpMethod.POST;
+        }
+        return config.getIncludes().contains(req.getMethod().name() + "#" + req.getURI().getPath());
+    }
+
+    /**
+     * 幂等key：路由ID:SHA-256(用户ID, 方法, 路径, 声明的key 或 请求指纹)
+     */
+    private static String key(String routeId, ServerHttpRequest req, String declared, String fingerprint) {
+        String userId = req.getHeaders().getFirst(HTTP_HEADER_LOGIN_USER_ID);
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(userId == null ? "" : userId, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(req.getMethod().name(), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(req.getURI().getRawPath(), StandardCharsets.UTF_8)
+                .putByte((byte) 0);
+        if (declared != null){
+            hasher.putByte((byte) 'K').putString(declared, StandardCharsets.UTF_8);
+        } else {
+            hasher.putByte((byte) 'F').putString(fingerprint, StandardCharsets.UTF_8);
+        }
+        return routeId + ":" + hasher.hash();
+    }
+
+    /**
+     * 请求指纹：SHA-256(查询参数, 请求体)
+     */
+    private static String fingerprint(ServerHttpRequest req, byte[] body) {
+        String query = req.getURI().getRawQuery();
+        return Hashing.sha256().newHasher()
+                .putString(query == null ? "" : query, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putBytes(body)
+                .hash().toString();
+    }
+
+    private static StoredResponse toStored(ServerHttpResponse upstream, byte[] body, String fingerprint) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        upstream.getHeaders().forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)){
+                headers.put(name, new ArrayList<>(values));
+            }
+        });
+        HttpStatusCode status = upstream.getStatusCode();
+        return new StoredResponse(status == null ? 200 : status.value(), headers, body, fingerprint);
+    }
+
+    private static Mono<Void> write(ServerHttpResponse resp, StoredResponse response, boolean replay) {
+        resp.setStatusCode(HttpStatusCode.valueOf(response.getStatus()));
+        // 复制响应头，保存的响应被多个请求共享
+        response.getHeaders().forEach(resp.getHeaders()::addAll);
+        if (replay){
+            resp.getHeaders().set(REPLAY_HEADER, "true");
+        }
+        if (response.getBody().length == 0){
+            return resp.setComplete();
+        }
+        resp.getHeaders().setContentLength(response.getBody().length);
+        return resp.writeWith(Mono.just(resp.bufferFactory().wrap(response.getBody())));
+    }
+
+    /**
+     * 已读取的请求体，转发时重新写出
+     */
+    private static class CachedBodyRequest extends ServerHttpRequestDecorator {
+
+        private final byte[] body;
+
+        private final ServerHttpResponse response;
+
+        private CachedBodyRequest(ServerHttpRequest delegate, byte[] body, ServerHttpResponse response) {
+            super(delegate);
+            this.body = body;
+            this.response = response;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(response.bufferFactory().wrap(body)));
+        }
+    }
+
+    private class Meters {
+
+        private final Counter forwarded;
+
+        private final Counter replayed;
+
+        private final Counter conflict;
+
+        private final Counter mismatch;
+
+        private final Counter skipped;
+
+        private Meters(String routeId) {
+            this.forwarded = counter(routeId, "forwarded");
+            this.replayed = counter(routeId, "replayed");
+            this.conflict = counter(routeId, "conflict");
+            this.mismatch = counter(routeId, "mismatch");
+            this.skipped = counter(routeId, "skipped");
+        }
+
+        private Counter counter(String routeId, String result) {
+            return meterRegistry.counter("ali_gateway_idempotency_requests", "service", routeId, "result", result);
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 去重的请求：POST#/orders/create，为空时为路由的所有POST请求
+         */
+        private Set<String> includes;
+
+        /**
+         * 未声明幂等key时，是否按请求体去重
+         */
+        private boolean hashBody = true;
+    }
+}
@@ -7,11 +7,10 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ServerWebExchange;
@@ -19,22 +18,41 @@ import reactor.core.publisher.Mono;
 import spring.cloud.ali.common.component.web.HttpWebFluxClient;
 import spring.cloud.ali.common.dto.HttpResult;
 import spring.cloud.ali.common.enums.HttpRespStatus;
+import spring.cloud.ali.gateway.component.login.LocalTokenVerifier;
+import spring.cloud.ali.gateway.component.login.TokenVerifyCache;
+import spring.cloud.ali.gateway.component.web.RejectResponses;
 import spring.cloud.ali.user.result.VerifyTokenResult;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_TOKEN;
 import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
 import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_NOT_AUTH;
+import static spring.cloud.ali.user.result.VerifyTokenResult.NOT_PASS;
 
+/**
+ * 路由登录校验：
+ *   1. REMOTE：调用ali-user校验token（默认），同一token的并发校验合并，结果按token缓存
+ *   2. LOCAL：网关本地校验token签名和过期时间，未配置签名key时回退到REMOTE
+ */
 @Slf4j
 @Component
 public class RouteLoginFilter extends AbstractGatewayFilterFactory<RouteLoginFilter.Config> {
 
+    /**
+     * 登录用户ID（外层的全局过滤器看不到改写后的请求头，如访问日志）
+     */
+    public static final String LOGIN_USER_ID_ATTR = RouteLoginFilter.class.getName() + ".userId";
+
     @Autowired
     private HttpWebFluxClient httpWebFluxClient;
 
+    @Autowired
+    private LocalTokenVerifier localTokenVerifier;
+
+    @Autowired
+    private TokenVerifyCache tokenVerifyCache;
+
     public RouteLoginFilter() {
         super(Config.class);
     }
@@ -55,25 +73,17 @@ public class RouteLoginFilter extends AbstractGatewayFilterFactory<RouteLoginFil
                 return respError(exchange, HTTP_NOT_AUTH);
             }
 
-            // 调用 WebClient 的异步请求来校验 token
-            return httpWebFluxClient.get(
-                    "ali-user", "/users/verify-token", null, ImmutableMap.of("token", loginToken),
-                            new ParameterizedTypeReference<HttpResult<VerifyTokenResult>>() {})
-                    .flatMap(verifyResult -> {
-
-                        if (verifyResult == null ||
-                                verifyResult.getData() == null ||
-                                    !verifyResult.getData().isPass()) {
-                            return respError(exchange, HTTP_NOT_AUTH);
-                        }
-
-                        // 验证通过用户ID埋入请求头
-                        ServerHttpRequest request = exchange.getRequest().mutate()
-                                .header(HTTP_HEADER_LOGIN_USER_ID, verifyResult.getData().getUserId().toString())
-                                .build();
+            if (config.getVerifyMode() == VerifyMode.LOCAL) {
+                // 本地校验，不可用时回退到远程校验
+                VerifyTokenResult verifyResult = localTokenVerifier.verify(loginToken);
+                if (verifyResult != null) {
+                    return onVerified(exchange, chain, verifyResult);
+                }
+            }
 
-                        return chain.filter(exchange.mutate().request(request).build());
-                    })
+            // 远程校验（同一token并发请求合并，结果按token缓存）
+            return tokenVerifyCache.get(loginToken, this::verifyRemote)
+                    .flatMap(verifyResult -> onVerified(exchange, chain, verifyResult))
                     .onErrorResume(e -> {
                         log.error("unknown exception: reqUri={}, error={}", reqUri, Throwables.getStackTraceAsString(e));
 
@@ -87,13 +97,33 @@ public class RouteLoginFilter extends AbstractGatewayFilterFactory<RouteLoginFil
         };
     }
 
-    private Mono<Void> respError(ServerWebExchange exchange, HttpRespStatus s) {
-        ServerHttpResponse response = exchange.getResponse();
-        response.setStatusCode(s.getStatus());
-        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * 调用 WebClient 的异步请求来校验 token
+     */
+    private Mono<VerifyTokenResult> verifyRemote(String loginToken) {
+        return httpWebFluxClient.get(
+                "ali-user", "/users/verify-token", null, ImmutableMap.of("token", loginToken),
+                        new ParameterizedTypeReference<HttpResult<VerifyTokenResult>>() {})
+                .map(verifyResult -> verifyResult.getData() == null ? NOT_PASS : verifyResult.getData());
+    }
 
-        return response.writeWith(Mono.just(response.bufferFactory().wrap(
-                s.getMsg().getBytes(StandardCharsets.UTF_8))));
+    private Mono<Void> onVerified(ServerWebExchange exchange, GatewayFilterChain chain, VerifyTokenResult verifyResult) {
+        if (verifyResult == null || !verifyResult.isPass()) {
+            return respError(exchange, HTTP_NOT_AUTH);
+        }
+
+        // 验证通过用户ID埋入请求头
+        String userId = verifyResult.getUserId().toString();
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .header(HTTP_HEADER_LOGIN_USER_ID, userId)
+                .build();
+        exchange.getAttributes().put(LOGIN_USER_ID_ATTR, userId);
+
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    private Mono<Void> respError(ServerWebExchange exchange, HttpRespStatus s) {
+        return RejectResponses.write(exchange.getResponse(), s);
     }
 
     @Data
@@ -102,5 +132,23 @@ public class RouteLoginFilter extends AbstractGatewayFilterFactory<RouteLoginFil
          * 需要排除的url：GET#/users/login，POST#/users/register
          */
         private Set<String> excludes;
+
+        /**
+         * token校验方式
+         */
+        private VerifyMode verifyMode = VerifyMode.REMOTE;
+    }
+
+    public enum VerifyMode {
+
+        /**
+         * 调用ali-user校验
+         */
+        REMOTE,
+
+        /**
+         * 网关本地校验（需配置gateway.login.sign-key）
+         */
+        LOCAL
     }
 }
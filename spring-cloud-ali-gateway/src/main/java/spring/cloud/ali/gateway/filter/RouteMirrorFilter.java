@@ -0,0 +1,236 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由流量镜像（容量测试，如新版本的影子服务）：
+ *   1. 按比例（fraction）抽样请求，复制请求（含请求体）异步发送到影子服务（lb://service），不等待影子服务响应
+ *   2. 请求体在转发给主路由时同步复制，读完后再发送镜像请求；请求体超过max-body-kb时不镜像
+ *   3. 镜像请求并发数受max-concurrency限制，超过时丢弃，使用HttpWebFluxClient的连接池（与路由连接池隔离），不影响主路由
+ *   4. 影子服务的响应被丢弃，耗时和状态码记录在指标ali_gateway_mirror_timer{status}，
+ *      未发送的请求记录在ali_gateway_mirror_skipped{reason=concurrency|body_too_large}
+ *   5. 镜像请求带请求头X-Gateway-Mirror: true，影子服务可据此隔离写操作
+ */
+@Slf4j
+@Component
+public class RouteMirrorFilter extends AbstractGatewayFilterFactory<RouteMirrorFilter.Config> {
+
+    public static final String HEADER_MIRROR = "X-Gateway-Mirror";
+
+    /**
+     * 不复制的请求头，由镜像请求重新生成
+     */
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            HttpHeaders.HOST.toLowerCase(), HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase(), HttpHeaders.CONNECTION.toLowerCase());
+
+    @Autowired
+    private WebClient webClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public RouteMirrorFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        URI target = URI.create(config.getUri());
+        if (!"lb".equals(target.getScheme())){
+            throw new IllegalArgumentException("route " + routeId + " mirror uri must be lb://service: " + config.getUri());
+        }
+
+        Mirror mirror = new Mirror(routeId, target.getHost(), config);
+        log.info("route mirror created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            if (ThreadLocalRandom.current().nextDouble() >= config.getFraction()){
+                return chain.filter(exchange);
+            }
+
+            ServerHttpRequest req = exchange.getRequest();
+            HttpHeaders headers = req.getHeaders();
+            if (headers.getContentLength() <= 0 && !headers.containsKey(HttpHeaders.TRANSFER_ENCODING)){
+                // 无请求体
+                mirror.send(req, null);
+                return chain.filter(exchange);
+            }
+
+            if (headers.getContentLength() > config.getMaxBodyKb() * 1024L){
+                mirror.skippedBodyTooLarge.increment();
+                return chain.filter(exchange);
+            }
+            return chain.filter(exchange.mutate().request(new TeeRequest(req, mirror, config.getMaxBodyKb() * 1024)).build());
+        };
+    }
+
+    /**
+     * 转发请求体时复制一份，读完后发送镜像请求
+     */
+    private static class TeeRequest extends ServerHttpRequestDecorator {
+
+        private final Mirror mirror;
+
+        private final int maxBodyBytes;
+
+        private TeeRequest(ServerHttpRequest delegate, Mirror mirror, int maxBodyBytes) {
+            super(delegate);
+            this.mirror = mirror;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> {
+                ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                boolean[] overflow = new boolean[1];
+                return super.getBody()
+                        .doOnNext(buffer -> {
+                            if (overflow[0]){
+                                return;
+                            }
+                            int size = buffer.readableByteCount();
+                            if (copy.size() + size > maxBodyBytes){
+                                overflow[0] = true;
+                                return;
+                            }
+                            byte[] bytes = new byte[size];
+                            buffer.toByteBuffer().get(bytes);
+                            copy.write(bytes, 0, size);
+                        })
+                        .doOnComplete(() -> {
+                            if (overflow[0]){
+                                mirror.skippedBodyTooLarge.increment();
+                            } else {
+                                mirror.send(getDelegate(), copy.toByteArray());
+                            }
+                        });
+            });
+        }
+    }
+
+    private class Mirror {
+
+        private final String routeId;
+
+        private final String serviceId;
+
+        private final Config config;
+
+        private final Semaphore permits;
+
+        private final Counter skippedConcurrency;
+
+        private final Counter skippedBodyTooLarge;
+
+        /**
+         * key：状态码（或error），value：耗时
+         */
+        private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+        private Mirror(String routeId, String serviceId, Config config) {
+            this.routeId = routeId;
+            this.serviceId = serviceId;
+            this.config = config;
+            this.permits = new Semaphore(config.getMaxConcurrency());
+            this.skippedConcurrency = meterRegistry.counter("ali_gateway_mirror_skipped", "service", routeId, "reason", "concurrency");
+            this.skippedBodyTooLarge = meterRegistry.counter("ali_gateway_mirror_skipped", "service", routeId, "reason", "body_too_large");
+        }
+
+        private void send(ServerHttpRequest req, byte[] body) {
+            if (!permits.tryAcquire()){
+                skippedConcurrency.increment();
+                return;
+            }
+
+            URI uri = UriComponentsBuilder.fromUri(req.getURI())
+                    .scheme("http").host(serviceId).port(-1)
+                    .build(true).toUri();
+            long startTime = System.nanoTime();
+            WebClient.RequestBodySpec spec = webClient.method(req.getMethod())
+                    .uri(uri)
+                    .headers(headers -> {
+                        req.getHeaders().forEach((name, values) -> {
+                            if (!SKIPPED_HEADERS.contains(name.toLowerCase())){
+                                headers.addAll(name, values);
+                            }
+                        });
+                        headers.set(HEADER_MIRROR, "true");
+                    });
+            if (body != null){
+                spec.bodyValue(body);
+            }
+
+            spec.exchangeToMono(resp -> resp.releaseBody().thenReturn(String.valueOf(resp.statusCode().value())))
+                    .timeout(Duration.ofMillis(config.getTimeoutMs()))
+                    .onErrorResume(e -> {
+                        log.debug("mirror request failed: routeId={}, uri={}", routeId, uri, e);
+                        return Mono.just("error");
+                    })
+                    .doFinally(s -> permits.release())
+                    .subscribe(status -> timers.computeIfAbsent(status, k -> Timer.builder("ali_gateway_mirror_timer")
+                                    .tags("service", routeId, "target", serviceId, "status", k)
+                                    .register(meterRegistry))
+                            .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 影子服务，如：lb://ali-order-shadow
+         */
+        private String uri;
+
+        /**
+         * 镜像比例（0-1）
+         */
+        private double fraction = 0.1;
+
+        /**
+         * 镜像请求最大并发数
+         */
+        private int maxConcurrency = 16;
+
+        /**
+         * 镜像请求超时（毫秒）
+         */
+        private long timeoutMs = 3000;
+
+        /**
+         * 最大镜像请求体（KB）
+         */
+        private int maxBodyKb = 256;
+    }
+}
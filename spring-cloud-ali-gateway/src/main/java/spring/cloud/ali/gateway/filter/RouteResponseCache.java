@@ -0,0 +1,301 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.sentinel.ResourceMatcher;
+import spring.cloud.ali.gateway.component.web.BufferedExchange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static spring.cloud.ali.common.component.sentinel.SentinelConfigService.SENTINEL_RULE_SPLITTER;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+/**
+ * 路由响应缓存（仅GET）：
+ *   1. 按 方法+路径+查询参数+指定请求头+Login-User-ID 缓存200响应（需配置在RouteLoginFilter之后），
+ *      includes指定缓存的只读接口（如GET#/users/{userId}），为空时缓存路由的所有GET请求；
+ *      excludes优先，排除被变量段匹配到的其他接口（如GET#/users/login）
+ *   2. 缓存时长为ttlSeconds，上游响应Cache-Control的max-age更短时以其为准，no-store/no-cache/Set-Cookie不缓存
+ *   3. 请求Cache-Control: no-cache时跳过缓存，回源后刷新
+ *   4. 响应带ETag（上游未返回时按响应体生成），If-None-Match匹配时返回304
+ *   5. 按字节数限制缓存大小，指标：Caffeine缓存指标（cache=ali_gateway_response_cache）及命中率
+ *   6. 路由刷新时保留缓存和指标，配置变化时调整大小上限并清空缓存
+ */
+@Slf4j
+@Component
+public class RouteResponseCache extends AbstractGatewayFilterFactory<RouteResponseCache.Config> {
+
+    private static final String CACHE_NAME = "ali_gateway_response_cache";
+
+    private static final String CACHE_STATUS_HEADER = "X-Gateway-Cache";
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])(?:s-maxage|max-age)=(\\d+)");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * key：路由ID，value：响应缓存（首次创建时注册指标）
+     */
+    private final Map<String, Cache<String, CachedResponse>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * key：路由ID，value：缓存当前的配置
+     */
+    private final Map<String, Config> configs = new ConcurrentHashMap<>();
+
+    public RouteResponseCache() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        Cache<String, CachedResponse> cache = caches.computeIfAbsent(routeId, id -> monitor(id, buildCache(config)));
+        Config previous = configs.put(routeId, config);
+        if (previous != null && !previous.equals(config)){
+            // 按旧配置缓存的响应（key、时长）不再适用
+            cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxWeight(config)));
+            cache.invalidateAll();
+        }
+        ResourceMatcher includes = compile(config.getRouteId(), config.getIncludes());
+        ResourceMatcher excludes = compile(config.getRouteId(), config.getExcludes());
+        log.info("route response cache created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            ServerHttpRequest req = exchange.getRequest();
+            if (req.getMethod() != HttpMethod.GET || !matches(req, config, includes, excludes)){
+                return chain.filter(exchange);
+            }
+
+            String key = cacheKey(req, config.getHeaders());
+            if (!isNoCache(req.getHeaders().getCacheControl())){
+                CachedResponse cached = cache.getIfPresent(key);
+                if (cached != null){
+                    return cached.writeTo(req, exchange.getResponse(), "HIT");
+                }
+            }
+
+            BufferedExchange buffered = new BufferedExchange(exchange);
+            return buffered.filter(chain).then(Mono.defer(() -> {
+                ServerHttpResponse upstream = buffered.getResponse();
+                if (!isCacheable(upstream)){
+                    return buffered.writeTo(exchange.getResponse());
+                }
+
+                byte[] body = buffered.readBody();
+                long ttlNanos = ttlNanos(upstream.getHeaders(), config);
+                CachedResponse response = new CachedResponse(upstream.getHeaders(), body, ttlNanos);
+                if (ttlNanos > 0 && body.length <= config.getMaxBodyKb() * 1024L){
+                    cache.put(key, response);
+                }
+                return response.writeTo(req, exchange.getResponse(), "MISS");
+            })).doOnCancel(buffered::release);
+        };
+    }
+
+    /**
+     * 编译接口列表，如：GET#/users/{userId}
+     */
+    private static ResourceMatcher compile(String routeId, Set<String> paths) {
+        if (CollectionUtils.isEmpty(paths)){
+            return ResourceMatcher.EMPTY;
+        }
+        List<String> resources = new ArrayList<>(paths.size());
+        paths.forEach(path -> resources.add(routeId + SENTINEL_RULE_SPLITTER + path));
+        return ResourceMatcher.compile(routeId, resources);
+    }
+
+    private static boolean matches(ServerHttpRequest req, Config config, ResourceMatcher includes, ResourceMatcher excludes) {
+        String method = req.getMethod().name();
+        String path = req.getURI().getPath();
+        if (excludes.match(method, path) != null){
+            return false;
+        }
+        return CollectionUtils.isEmpty(config.getIncludes()) || includes.match(method, path) != null;
+    }
+
+    private static String cacheKey(ServerHttpRequest req, Set<String> headers) {
+        StringBuilder key = new StringBuilder(128)
+                .append(req.getMethod().name()).append('#')
+                .append(req.getURI().getRawPath());
+        if (req.getURI().getRawQuery() != null){
+            key.append('?').append(req.getURI().getRawQuery());
+        }
+        key.append('#').append(req.getHeaders().getFirst(HTTP_HEADER_LOGIN_USER_ID));
+        for (String header : headers){
+            key.append('#').append(req.getHeaders().getFirst(header));
+        }
+        return key.toString();
+    }
+
+    private static boolean isCacheable(ServerHttpResponse upstream) {
+        if (upstream.getStatusCode() == null || upstream.getStatusCode().value() != HttpStatus.OK.value()){
+            return false;
+        }
+        HttpHeaders headers = upstream.getHeaders();
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)){
+            return false;
+        }
+        String cacheControl = headers.getCacheControl();
+        return cacheControl == null || !(cacheControl.contains("no-store") || isNoCache(cacheControl));
+    }
+
+    private static boolean isNoCache(String cacheControl) {
+        return cacheControl != null && cacheControl.contains("no-cache");
+    }
+
+    private static long ttlNanos(HttpHeaders headers, Config config) {
+        long ttl = TimeUnit.SECONDS.toNanos(config.getTtlSeconds());
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null){
+            Matcher m = MAX_AGE.matcher(cacheControl);
+            if (m.find()){
+                ttl = Math.min(ttl, TimeUnit.SECONDS.toNanos(Long.parseLong(m.group(1))));
+            }
+        }
+        return ttl;
+    }
+
+    private Cache<String, CachedResponse> monitor(String routeId, Cache<String, CachedResponse> cache) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME, "service", routeId);
+        Gauge.builder(CACHE_NAME + "_hit_ratio", cache, c -> c.stats().hitRate())
+                .tag("service", routeId)
+                .register(meterRegistry);
+        return cache;
+    }
+
+    private static long maxWeight(Config config) {
+        return config.getMaxSizeMb() * 1024L * 1024L;
+    }
+
+    private static Cache<String, CachedResponse> buildCache(Config config) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight(config))
+                .weigher((String key, CachedResponse value) -> key.length() + value.body.length)
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    private static class CachedResponse {
+
+        private final HttpHeaders headers;
+
+        private final byte[] body;
+
+        private final String etag;
+
+        private final long ttlNanos;
+
+        private CachedResponse(HttpHeaders upstreamHeaders, byte[] body, long ttlNanos) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(upstreamHeaders);
+            this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+            this.body = body;
+            this.ttlNanos = ttlNanos;
+            this.etag = upstreamHeaders.getETag() != null ? upstreamHeaders.getETag()
+                    : "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        }
+
+        private Mono<Void> writeTo(ServerHttpRequest req, ServerHttpResponse resp, String cacheStatus) {
+            HttpHeaders respHeaders = resp.getHeaders();
+            respHeaders.putAll(headers);
+            respHeaders.setETag(etag);
+            respHeaders.set(CACHE_STATUS_HEADER, cacheStatus);
+            if (headers.getCacheControl() == null){
+                respHeaders.setCacheControl(CacheControl.noCache());
+            }
+
+            List<String> ifNoneMatch = req.getHeaders().getOrEmpty(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch.contains(etag) || ifNoneMatch.contains("*")){
+                resp.setStatusCode(HttpStatus.NOT_MODIFIED);
+                respHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+                return resp.setComplete();
+            }
+
+            resp.setStatusCode(HttpStatus.OK);
+            respHeaders.setContentLength(body.length);
+            return resp.writeWith(Mono.just(resp.bufferFactory().wrap(body)));
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 缓存时长（秒），上游Cache-Control的max-age更短时以其为准
+         */
+        private long ttlSeconds = 30;
+
+        /**
+         * 路由缓存大小上限（MB）
+         */
+        private int maxSizeMb = 64;
+
+        /**
+         * 单个响应体大小上限（KB），超过不缓存
+         */
+        private int maxBodyKb = 256;
+
+        /**
+         * 参与缓存key的请求头，如：Accept-Language
+         */
+        private Set<String> headers = Collections.emptySet();
+
+        /**
+         * 缓存的只读接口：GET#/users/{userId}，为空时为路由的所有GET请求
+         */
+        private Set<String> includes;
+
+        /**
+         * 不缓存的接口：GET#/users/login，优先于includes
+         */
+        private Set<String> excludes;
+    }
+}
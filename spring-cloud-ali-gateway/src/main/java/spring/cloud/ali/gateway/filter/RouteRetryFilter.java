@@ -0,0 +1,246 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.util.context.Context;
+import spring.cloud.ali.gateway.component.limit.RequestBudget;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.reset;
+import static spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer.EXCLUDED_INSTANCES;
+import static spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer.instanceKey;
+
+/**
+ * 路由重试（仅lb://路由）：
+ *   1. 仅重试幂等且无请求体的请求（methods），仅在连接失败或上游返回503时重试
+ *   2. 重试时排除已失败的实例（见PeakEwmaLoadBalancer.EXCLUDED_INSTANCES），没有其他实例时不重试
+ *   3. 重试前按指数退避随机等待（full jitter）
+ *   4. 按路由的重试预算限制：重试数不超过成功请求数的budgetPercent%，避免上游故障时放大流量
+ *   5. 指标：ali_gateway_retry_requests{result=retried|denied}，denied为预算耗尽未重试的请求数
+ */
+@Slf4j
+@Component
+public class RouteRetryFilter extends AbstractGatewayFilterFactory<RouteRetryFilter.Config> {
+
+    private static final String METRIC_NAME = "ali_gateway_retry_requests";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LoadBalancerClientFactory loadBalancerClientFactory;
+
+    public RouteRetryFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId();
+        for (HttpMethod method : config.getMethods()){
+            if (!IDEMPOTENT_METHODS.contains(method)){
+                throw new IllegalArgumentException("route " + routeId + " retry method is not idempotent: " + method);
+            }
+        }
+
+        Retrier retrier = new Retrier(config,
+                new RequestBudget(config.getBudgetPercent(), config.getMaxBurst()),
+                meterRegistry.counter(METRIC_NAME, "service", routeId, "result", "retried"),
+                meterRegistry.counter(METRIC_NAME, "service", routeId, "result", "denied"));
+        log.info("route retry created: routeId={}, config={}", routeId, config);
+
+        return (exchange, chain) -> {
+            if (!retryable(exchange.getRequest(), config)){
+                return chain.filter(exchange);
+            }
+            return Mono.deferContextual(ctx -> {
+                // 保留外层已排除的实例（如对冲时第一个请求的实例）
+                Set<String> excluded = ConcurrentHashMap.newKeySet();
+                excluded.addAll(ctx.getOrDefault(EXCLUDED_INSTANCES, Set.<String>of()));
+                return retrier.attempt(exchange, chain, excluded, 0)
+                        .contextWrite(Context.of(EXCLUDED_INSTANCES, excluded));
+            });
+        };
+    }
+
+    private static boolean retryable(ServerHttpRequest req, Config config) {
+        if (!config.getMethods().contains(req.getMethod())){
+            return false;
+        }
+        // 请求体无法重放
+        HttpHeaders headers = req.getHeaders();
+        return headers.getContentLength() <= 0 && !headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    private static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()){
+            // 包括io.netty.channel.ConnectTimeoutException
+            if (cause instanceof ConnectException){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Retrier {
+
+        private final Config config;
+
+        private final RequestBudget budget;
+
+        private final Counter retried;
+
+        private final Counter denied;
+
+        private Retrier(Config config, RequestBudget budget, Counter retried, Counter denied) {
+            this.config = config;
+            this.budget = budget;
+            this.retried = retried;
+            this.denied = denied;
+        }
+
+        private Mono<Void> attempt(ServerWebExchange exchange, GatewayFilterChain chain, Set<String> excluded, int retries) {
+            return chain.filter(exchange)
+                    .then(Mono.<Throwable>empty())
+                    .onErrorResume(Mono::just)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(error -> onAttemptDone(exchange, chain, excluded, retries, error.orElse(null)));
+        }
+
+        private Mono<Void> onAttemptDone(ServerWebExchange exchange, GatewayFilterChain chain,
+                                         Set<String> excluded, int retries, Throwable error) {
+            Mono<Void> done = error == null ? Mono.empty() : Mono.error(error);
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            boolean retryableFailure = error == null
+                    ? status != null && status.value() == HttpStatus.SERVICE_UNAVAILABLE.value() : isConnectFailure(error);
+            if (!retryableFailure){
+                if (error == null && (status == null || !status.is5xxServerError())){
+                    budget.deposit();
+                }
+                return done;
+            }
+
+            Response<ServiceInstance> lbResponse = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            if (retries >= config.getRetries() || exchange.getResponse().isCommitted()
+                    || lbResponse == null || !lbResponse.hasServer()){
+                return done;
+            }
+            ServiceInstance failed = lbResponse.getServer();
+            excluded.add(instanceKey(failed));
+
+            return hasOtherInstance(failed.getServiceId(), excluded).flatMap(hasOther -> {
+                if (!hasOther){
+                    return done;
+                }
+                if (!budget.tryWithdraw()){
+                    denied.increment();
+                    return done;
+                }
+                retried.increment();
+                log.debug("retry request: uri={}, failed={}, retries={}",
+                        exchange.getRequest().getURI(), instanceKey(failed), retries + 1, error);
+
+                resetExchange(exchange);
+                return Mono.delay(backoff(retries))
+                        .then(attempt(exchange, chain, excluded, retries + 1));
+            });
+        }
+
+        private Mono<Boolean> hasOtherInstance(String serviceId, Set<String> excluded) {
+            ServiceInstanceListSupplier supplier = loadBalancerClientFactory.getInstance(serviceId, ServiceInstanceListSupplier.class);
+            if (supplier == null){
+                return Mono.just(false);
+            }
+            return supplier.get().next()
+                    .map(instances -> instances.stream().anyMatch(i -> !excluded.contains(instanceKey(i))))
+                    .defaultIfEmpty(false);
+        }
+
+        /**
+         * 指数退避，full jitter：[0, min(maxBackoff, firstBackoff * 2^retries))
+         */
+        private Duration backoff(int retries) {
+            long max = Math.min(config.getMaxBackoffMs(), config.getFirstBackoffMs() << Math.min(retries, 20));
+            return max <= 0 ? Duration.ZERO : Duration.ofMillis(ThreadLocalRandom.current().nextLong(max));
+        }
+
+        private void resetExchange(ServerWebExchange exchange) {
+            Connection conn = exchange.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+            if (conn != null){
+                conn.dispose();
+                exchange.getAttributes().remove(CLIENT_RESPONSE_CONN_ATTR);
+            }
+            reset(exchange);
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 最大重试次数
+         */
+        private int retries = 2;
+
+        /**
+         * 重试的请求方法，只能是幂等方法
+         */
+        private List<HttpMethod> methods = Arrays.asList(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+        /**
+         * 首次重试退避上限（毫秒）
+         */
+        private long firstBackoffMs = 20;
+
+        /**
+         * 退避上限（毫秒）
+         */
+        private long maxBackoffMs = 200;
+
+        /**
+         * 重试预算：不超过成功请求数的该百分比
+         */
+        private double budgetPercent = 10;
+
+        /**
+         * 预算最多累积的重试数
+         */
+        private int maxBurst = 10;
+    }
+}
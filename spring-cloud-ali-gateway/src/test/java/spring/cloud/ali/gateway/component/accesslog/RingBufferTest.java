@@ -0,0 +1,68 @@
+package spring.cloud.ali.gateway.component.accesslog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void testFull(){
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++){
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drain(drained::add, 2));
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        assertEquals(4, buffer.drain(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        int producers = 8;
+        int perProducer = 100000;
+        AtomicInteger dropped = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++){
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++){
+                    if (!buffer.offer(base + i)){
+                        dropped.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        // 单个消费者
+        Set<Integer> consumed = new HashSet<>();
+        while (done.getCount() > 0 || buffer.size() > 0){
+            buffer.drain(e -> assertTrue("duplicated: " + e, consumed.add(e)), 256);
+        }
+        executor.shutdown();
+
+        // 每个元素要么被消费，要么被丢弃
+        assertEquals(producers * perProducer, consumed.size() + dropped.get());
+    }
+}
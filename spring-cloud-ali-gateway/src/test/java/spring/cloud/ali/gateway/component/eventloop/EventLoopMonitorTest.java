@@ -0,0 +1,137 @@
+package spring.cloud.ali.gateway.component.eventloop;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final EventLoopMonitor monitor = new EventLoopMonitor();
+
+    private final NioEventLoopGroup group = new NioEventLoopGroup(2);
+
+    private EventExecutor blocked;
+
+    private String blockedName;
+
+    @Before
+    public void setUp() throws Exception {
+        appConfig.getEventLoop().setProbeInterval(Duration.ofMillis(10));
+        appConfig.getEventLoop().setBlockDetect(true);
+        appConfig.getEventLoop().setBlockThreshold(Duration.ofMillis(50));
+        ReflectionTestUtils.setField(monitor, "appConfig", appConfig);
+        ReflectionTestUtils.setField(monitor, "meterRegistry", meterRegistry);
+
+        blocked = group.iterator().next();
+        blockedName = blocked.submit(() -> Thread.currentThread().getName()).get();
+        monitor.start(group);
+    }
+
+    @After
+    public void tearDown(){
+        monitor.destroy();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBlocked() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        blocked.execute(() -> {
+            sleep(300);
+            done.countDown();
+        });
+        Thread.sleep(100);
+
+        // 阻塞期间任务排队
+        for (int i = 0; i < 3; i++){
+            blocked.execute(() -> {});
+        }
+        assertTrue(meterRegistry.get("ali_gateway_event_loop_pending_tasks").tag("loop", blockedName).gauge().value() >= 3);
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        // 延迟包含阻塞时间，每次阻塞只报告一次，按栈中第一个网关类计数
+        Timer lag = meterRegistry.get("ali_gateway_event_loop_lag").tag("loop", blockedName).timer();
+        assertTrue(lag.max(TimeUnit.MILLISECONDS) >= 150);
+        assertEquals(1, meterRegistry.get("ali_gateway_event_loop_blocked")
+                .tags("loop", blockedName, "filter", "EventLoopMonitorTest").counter().count(), 0);
+        assertEquals(1, meterRegistry.find("ali_gateway_event_loop_blocked").counters().size());
+
+        // 其它事件循环不受影响
+        assertTrue(meterRegistry.get("ali_gateway_event_loop_lag").tag("loop", otherName()).timer().max(TimeUnit.MILLISECONDS) < 100);
+    }
+
+    @Test
+    public void testBlockDetectDisabled() throws Exception {
+        appConfig.getEventLoop().setBlockDetect(false);
+        blocked.submit(() -> sleep(150)).get();
+        Thread.sleep(50);
+
+        assertTrue(meterRegistry.find("ali_gateway_event_loop_blocked").counters().isEmpty());
+        assertTrue(meterRegistry.get("ali_gateway_event_loop_lag").tag("loop", blockedName).timer()
+                .max(TimeUnit.MILLISECONDS) >= 100);
+    }
+
+    @Test
+    public void testCpuUsage() throws Exception {
+        monitor.sampleCpu();
+        // 两个事件循环中的一个持续占用CPU
+        blocked.submit(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < end){
+                Thread.onSpinWait();
+            }
+        }).get();
+        monitor.sampleCpu();
+
+        double usage = monitor.getCpuUsage();
+        assertTrue(String.valueOf(usage), usage > 0.3 && usage <= 0.6);
+        assertEquals(usage, meterRegistry.get("ali_gateway_event_loop_cpu").gauge().value(), 0);
+    }
+
+    @Test
+    public void testBlockingClass(){
+        StackTraceElement[] stack = {
+                new StackTraceElement("java.lang.Thread", "sleep", null, -1),
+                new StackTraceElement("spring.cloud.ali.gateway.filter.RouteLoginFilter", "lambda$apply$0", null, 80),
+                new StackTraceElement("spring.cloud.ali.gateway.filter.GlobalSentinelFilter", "filter", null, 100)
+        };
+        assertEquals("RouteLoginFilter", EventLoopMonitor.blockingClass(stack));
+        assertEquals("unknown", EventLoopMonitor.blockingClass(new StackTraceElement[]{stack[0]}));
+    }
+
+    private String otherName() throws Exception {
+        for (EventExecutor loop : group){
+            if (loop != blocked){
+                return loop.submit(() -> Thread.currentThread().getName()).get();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static void sleep(long millis){
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package spring.cloud.ali.gateway.component.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GradientLimiterTest {
+
+    @Test
+    public void testRejectAtLimit(){
+        GradientLimiter limiter = newLimiter(10);
+        for (int i = 0; i < 10; i++){
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(10, limiter.getInflight());
+
+        limiter.release(0);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testGrowWhenLatencyStable(){
+        GradientLimiter limiter = newLimiter(20);
+        saturate(limiter, 200, 10);
+        assertTrue("limit: " + limiter.getLimit(), limiter.getLimit() > 100);
+    }
+
+    @Test
+    public void testShrinkWhenLatencyRises(){
+        GradientLimiter limiter = newLimiter(100);
+        saturate(limiter, 50, 10);
+        int before = limiter.getLimit();
+
+        // 后端变慢，RT升至5倍（长期RT按窗口逐渐跟上，持续变慢后成为新的基线）
+        saturate(limiter, 1, 50);
+        assertTrue("before: " + before + ", after: " + limiter.getLimit(), limiter.getLimit() < before / 2);
+
+        // 后端恢复
+        saturate(limiter, 200, 10);
+        assertTrue("recovered: " + limiter.getLimit(), limiter.getLimit() > before / 2);
+    }
+
+    @Test
+    public void testNotGrowWhenAppLimited(){
+        GradientLimiter limiter = newLimiter(100);
+        for (int i = 0; i < 200; i++){
+            // 并发数远低于限制
+            assertTrue(limiter.tryAcquire());
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(100, limiter.getLimit());
+    }
+
+    /**
+     * 以当前限制打满并发，按批完成
+     */
+    private static void saturate(GradientLimiter limiter, int rounds, long rttMs){
+        for (int r = 0; r < rounds; r++){
+            int acquired = 0;
+            while (limiter.tryAcquire()){
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++){
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(rttMs));
+            }
+        }
+    }
+
+    private static GradientLimiter newLimiter(int initialLimit){
+        return new GradientLimiter(initialLimit, 10, 1000, 4, 1.5, 0.2, 600);
+    }
+}
@@ -0,0 +1,242 @@
+package spring.cloud.ali.gateway.component.loadbalancer;
+
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultRequestContext;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.component.discovery.RegisterTimeMetadata.REGISTER_TIME;
+
+public class PeakEwmaLoadBalancerTest {
+
+    private final ServiceInstance fast1 = instance("10.0.0.1");
+
+    private final ServiceInstance fast2 = instance("10.0.0.2");
+
+    private final ServiceInstance slow = instance("10.0.0.3");
+
+    private final PeakEwmaLoadBalancer loadBalancer = loadBalancer(Arrays.asList(fast1, fast2, slow));
+
+    @Test
+    public void testAvoidSlowInstance(){
+        Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        // 20个客户端并发循环请求1.5s，slow实例耗时200ms（模拟GC停顿），其他10ms
+        long deadline = System.currentTimeMillis() + 1500;
+        Flux.range(0, 20)
+                .flatMap(client -> Mono.defer(() -> call(counts))
+                        .repeat(() -> System.currentTimeMillis() < deadline))
+                .blockLast(Duration.ofSeconds(10));
+
+        int total = counts.values().stream().mapToInt(AtomicInteger::get).sum();
+        int slowCount = counts.getOrDefault(slow.getHost(), new AtomicInteger()).get();
+        // 轮询时slow实例占1/3
+        assertTrue("slow: " + slowCount + ", total: " + total, slowCount < total * 0.05);
+
+        assertEquals(0, loadBalancer.getInflight(fast1));
+        assertEquals(0, loadBalancer.getInflight(fast2));
+        assertEquals(0, loadBalancer.getInflight(slow));
+    }
+
+    @Test
+    public void testPreferLessInflight(){
+        // 没有耗时样本时按并发数选择
+        Request<DefaultRequestContext> request = new DefaultRequest<>(new DefaultRequestContext());
+        PeakEwmaLoadBalancer twoInstances = loadBalancer(Arrays.asList(fast1, fast2));
+        for (int i = 0; i < 5; i++){
+            twoInstances.onStartRequest(cast(request), new DefaultResponse(fast1));
+        }
+        for (int i = 0; i < 10; i++){
+            assertEquals(fast2, twoInstances.choose(request).block().getServer());
+        }
+    }
+
+    @Test
+    public void testSlowStart(){
+        AtomicLong nanos = new AtomicLong(System.nanoTime());
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        ServiceInstance warm = instance("10.0.0.1");
+        ServiceInstance fresh = instance("10.0.0.4", Map.of(REGISTER_TIME, String.valueOf(now.get())));
+        PeakEwmaLoadBalancer slowStart = new PeakEwmaLoadBalancer(provider(Arrays.asList(warm, fresh)), "ali-user",
+                AppConfig.LoadBalancer::new, nanos::get, now::get);
+
+        // 预热的实例：耗时20ms，并发9，代价 20ms * 10 = 200ms
+        Request<DefaultRequestContext> sampled = new DefaultRequest<>(new DefaultRequestContext());
+        slowStart.onStartRequest(cast(sampled), new DefaultResponse(warm));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+        slowStart.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, cast(sampled), new DefaultResponse(warm)));
+        for (int i = 0; i < 9; i++){
+            slowStart.onStartRequest(cast(new DefaultRequest<>(new DefaultRequestContext())), new DefaultResponse(warm));
+        }
+
+        // 新实例无耗时样本，代价 default-rtt(100ms) / 权重：0s时1000ms，30s时200ms，45s时133ms，60s后100ms
+        assertEquals(0, share(slowStart, fresh, 100), 0);
+        now.addAndGet(TimeUnit.SECONDS.toMillis(20));
+        assertEquals(0, share(slowStart, fresh, 100), 0);
+        now.addAndGet(TimeUnit.SECONDS.toMillis(25));
+        assertEquals(1, share(slowStart, fresh, 100), 0);
+        now.addAndGet(TimeUnit.SECONDS.toMillis(15));
+        assertEquals(1, share(slowStart, fresh, 100), 0);
+    }
+
+    @Test
+    public void testDefaultRtt(){
+        AtomicLong nanos = new AtomicLong(System.nanoTime());
+        ServiceInstance warm = instance("10.0.0.1");
+        ServiceInstance fresh = instance("10.0.0.4");
+        PeakEwmaLoadBalancer twoInstances = new PeakEwmaLoadBalancer(provider(Arrays.asList(warm, fresh)), "ali-user",
+                AppConfig.LoadBalancer::new, nanos::get, System::currentTimeMillis);
+
+        // 预热的实例耗时20ms，无样本的实例按default-rtt（100ms）计算，并发5时前者代价更高
+        Request<DefaultRequestContext> sampled = new DefaultRequest<>(new DefaultRequestContext());
+        twoInstances.onStartRequest(cast(sampled), new DefaultResponse(warm));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+        twoInstances.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, cast(sampled), new DefaultResponse(warm)));
+        assertEquals(0, share(twoInstances, fresh, 100), 0);
+
+        for (int i = 0; i < 5; i++){
+            twoInstances.onStartRequest(cast(new DefaultRequest<>(new DefaultRequestContext())), new DefaultResponse(warm));
+        }
+        assertEquals(1, share(twoInstances, fresh, 100), 0);
+    }
+
+    @Test
+    public void testReleaseOnCancel(){
+        // 请求已发出后被取消（如对冲失败的请求），负载均衡不回调onComplete
+        Request<DefaultRequestContext> request = new DefaultRequest<>(new DefaultRequestContext());
+        AtomicReference<Response<ServiceInstance>> chosen = new AtomicReference<>();
+        Disposable call = PeakEwmaLoadBalancer.cancellable(loadBalancer.choose(request).flatMap(response -> {
+            chosen.set(response);
+            loadBalancer.onStartRequest(cast(request), response);
+            return Mono.never();
+        })).subscribe();
+        ServiceInstance server = chosen.get().getServer();
+        assertEquals(1, loadBalancer.getInflight(server));
+
+        call.dispose();
+        assertEquals(0, loadBalancer.getInflight(server));
+
+        // 取消后的完成回调不重复释放
+        loadBalancer.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, cast(request), chosen.get()));
+        assertEquals(0, loadBalancer.getInflight(server));
+    }
+
+    @Test
+    public void testServerErrorPenalty(){
+        AtomicLong nanos = new AtomicLong(System.nanoTime());
+        ServiceInstance healthy = instance("10.0.0.1");
+        ServiceInstance failing = instance("10.0.0.2");
+        PeakEwmaLoadBalancer twoInstances = new PeakEwmaLoadBalancer(provider(Arrays.asList(healthy, failing)), "ali-user",
+                AppConfig.LoadBalancer::new, nanos::get, System::currentTimeMillis);
+
+        // 健康实例耗时20ms，故障实例1ms快速响应503
+        Request<DefaultRequestContext> ok = new DefaultRequest<>(new DefaultRequestContext());
+        twoInstances.onStartRequest(cast(ok), new DefaultResponse(healthy));
+        Request<DefaultRequestContext> error = new DefaultRequest<>(new DefaultRequestContext());
+        twoInstances.onStartRequest(cast(error), new DefaultResponse(failing));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        twoInstances.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, cast(error),
+                new DefaultResponse(failing), new ResponseData(HttpStatus.SERVICE_UNAVAILABLE, new HttpHeaders(), null, null)));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(19));
+        twoInstances.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, cast(ok),
+                new DefaultResponse(healthy), new ResponseData(HttpStatus.OK, new HttpHeaders(), null, null)));
+
+        assertEquals(0, share(twoInstances, failing, 100), 0);
+    }
+
+    private static double share(PeakEwmaLoadBalancer loadBalancer, ServiceInstance instance, int requests){
+        Request<DefaultRequestContext> request = new DefaultRequest<>(new DefaultRequestContext());
+        int count = 0;
+        for (int i = 0; i < requests; i++){
+            if (instance.equals(loadBalancer.choose(request).block().getServer())){
+                count++;
+            }
+        }
+        return (double) count / requests;
+    }
+
+    private Mono<Void> call(Map<String, AtomicInteger> counts){
+        Request<DefaultRequestContext> request = new DefaultRequest<>(new DefaultRequestContext());
+        return loadBalancer.choose(request).flatMap(response -> {
+            ServiceInstance server = response.getServer();
+            counts.computeIfAbsent(server.getHost(), k -> new AtomicInteger()).incrementAndGet();
+            loadBalancer.onStartRequest(cast(request), response);
+            return Mono.delay(Duration.ofMillis(server == slow ? 200 : 10))
+                    .doFinally(s -> loadBalancer.onComplete(new CompletionContext<>(
+                            CompletionContext.Status.SUCCESS, cast(request), response)))
+                    .then();
+        });
+    }
+
+    private static PeakEwmaLoadBalancer loadBalancer(List<ServiceInstance> instances){
+        return new PeakEwmaLoadBalancer(provider(instances), "ali-user", AppConfig.LoadBalancer::new);
+    }
+
+    private static ObjectProvider<ServiceInstanceListSupplier> provider(List<ServiceInstance> instances){
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("supplier", new StaticSupplier(instances));
+        return beanFactory.getBeanProvider(ServiceInstanceListSupplier.class);
+    }
+
+    private static ServiceInstance instance(String host){
+        return instance(host, null);
+    }
+
+    private static ServiceInstance instance(String host, Map<String, String> metadata){
+        return new DefaultServiceInstance(host, "ali-user", host, 8080, false, metadata);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Request<T> cast(Request<?> request){
+        return (Request<T>) request;
+    }
+
+    /**
+     * 固定实例列表
+     */
+    private static class StaticSupplier implements ServiceInstanceListSupplier {
+
+        private final List<ServiceInstance> instances;
+
+        private StaticSupplier(List<ServiceInstance> instances) {
+            this.instances = instances;
+        }
+
+        @Override
+        public String getServiceId() {
+            return "ali-user";
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get() {
+            return Flux.just(instances);
+        }
+    }
+}
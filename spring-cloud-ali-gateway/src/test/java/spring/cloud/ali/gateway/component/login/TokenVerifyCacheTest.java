@@ -0,0 +1,79 @@
+package spring.cloud.ali.gateway.component.login;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import spring.cloud.ali.common.util.JwtTokenUtil;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.user.result.VerifyTokenResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+public class TokenVerifyCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final TokenVerifyCache cache = new TokenVerifyCache();
+
+    private final String token = JwtTokenUtil.generate(
+            "vW6fv8ADmE3E6UjXsu8jxuBdO6+5Mkn67M+SELwMy6E=", ImmutableMap.of(HTTP_HEADER_LOGIN_USER_ID, "1"), 3600);
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(cache, "appConfig", new AppConfig());
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.init();
+    }
+
+    @Test
+    public void testCoalesce(){
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<VerifyTokenResult> remote = Sinks.one();
+
+        List<Mono<VerifyTokenResult>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++){
+            results.add(cache.get(token, t -> {
+                loads.incrementAndGet();
+                return remote.asMono();
+            }));
+        }
+        remote.tryEmitValue(new VerifyTokenResult(true, 1L));
+
+        for (Mono<VerifyTokenResult> result : results){
+            assertTrue(result.block().isPass());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(9, count("coalesce"), 0);
+
+        // 校验完成后命中缓存
+        assertTrue(cache.get(token, t -> Mono.error(new IllegalStateException())).block().isPass());
+        assertEquals(1, count("hit"), 0);
+    }
+
+    @Test
+    public void testErrorNotCached(){
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++){
+            cache.get(token, t -> {
+                loads.incrementAndGet();
+                return Mono.<VerifyTokenResult>error(new IllegalStateException());
+            }).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(2, loads.get());
+    }
+
+    private double count(String result){
+        return meterRegistry.get("ali_gateway_login_verify_cache").tag("result", result).counter().count();
+    }
+}
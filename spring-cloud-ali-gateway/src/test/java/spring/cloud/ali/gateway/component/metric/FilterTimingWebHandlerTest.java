@@ -0,0 +1,177 @@
+package spring.cloud.ali.gateway.component.metric;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class FilterTimingWebHandlerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final List<String> invoked = new ArrayList<>();
+
+    @Before
+    public void setUp(){
+        appConfig.getMetric().setFilterTimer(true);
+    }
+
+    @Test
+    public void testSameOrderAsDefault(){
+        List<GlobalFilter> globalFilters = List.of(new RoutingFilter(invoked, Duration.ZERO), new AuthFilter(invoked),
+                new MetricFilter(invoked, Duration.ZERO));
+        Route route = route(new OrderedGatewayFilter(named("login"), 1), new OrderedGatewayFilter(named("limit"), 2));
+
+        handle(new FilteringWebHandler(globalFilters), route);
+        List<String> expected = new ArrayList<>(invoked);
+        invoked.clear();
+
+        handle(new FilterTimingWebHandler(globalFilters, meterRegistry, appConfig), route);
+        assertEquals(List.of("metric", "login", "limit", "routing", "auth"), expected);
+        assertEquals(expected, invoked);
+    }
+
+    @Test
+    public void testSelfTime(){
+        // MetricFilter进入后耗时50ms，RoutingFilter模拟上游耗时150ms
+        List<GlobalFilter> globalFilters = List.of(new MetricFilter(invoked, Duration.ofMillis(50)),
+                new RoutingFilter(invoked, Duration.ofMillis(150)));
+        Route route = route(new OrderedGatewayFilter(named("login"), 1));
+        handle(new FilterTimingWebHandler(globalFilters, meterRegistry, appConfig), route);
+
+        // 自身耗时不含下游，路由过滤器取所在类名
+        double metric = timer("MetricFilter");
+        assertTrue(String.valueOf(metric), metric >= 50 && metric < 150);
+        assertTrue(timer("RoutingFilter") >= 150);
+        assertTrue(timer("FilterTimingWebHandlerTest") < 50);
+    }
+
+    @Test
+    public void testRouteRefresh(){
+        FilterTimingWebHandler handler = new FilterTimingWebHandler(List.of(new RoutingFilter(invoked, Duration.ZERO)),
+                meterRegistry, appConfig);
+        handle(handler, route(new OrderedGatewayFilter(named("login"), 1)));
+        handle(handler, route(new OrderedGatewayFilter(named("limit"), 1)));
+
+        // 路由刷新后（新的Route实例）使用新的过滤器链
+        assertEquals(List.of("login", "routing", "limit", "routing"), invoked);
+        assertEquals(2, meterRegistry.find("ali_gateway_filter_timer").timers().size());
+    }
+
+    @Test
+    public void testDisabled(){
+        // 默认关闭
+        appConfig.getMetric().setFilterTimer(new AppConfig().getMetric().isFilterTimer());
+        handle(new FilterTimingWebHandler(List.of(new RoutingFilter(invoked, Duration.ZERO)), meterRegistry, appConfig), route());
+        assertEquals(List.of("routing"), invoked);
+        assertTrue(meterRegistry.find("ali_gateway_filter_timer").timers().isEmpty());
+    }
+
+    private double timer(String filter){
+        return meterRegistry.get("ali_gateway_filter_timer").tags("service", "ali-user", "filter", filter)
+                .timer().max(TimeUnit.MILLISECONDS);
+    }
+
+    private static void handle(FilteringWebHandler handler, Route route){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/1"));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+        handler.handle(exchange).block();
+    }
+
+    private static Route route(GatewayFilter... filters){
+        return Route.async().id("ali-user").uri("lb://ali-user").predicate(exchange -> true).filters(filters).build();
+    }
+
+    private GatewayFilter named(String name){
+        return (exchange, chain) -> {
+            invoked.add(name);
+            return chain.filter(exchange);
+        };
+    }
+
+    private static class RoutingFilter implements GlobalFilter, Ordered {
+
+        private final List<String> invoked;
+
+        private final Duration delay;
+
+        private RoutingFilter(List<String> invoked, Duration delay) {
+            this.invoked = invoked;
+            this.delay = delay;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            invoked.add("routing");
+            return Mono.delay(delay).then(chain.filter(exchange));
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+
+    private static class MetricFilter implements GlobalFilter, Ordered {
+
+        private final List<String> invoked;
+
+        private final Duration delay;
+
+        private MetricFilter(List<String> invoked, Duration delay) {
+            this.invoked = invoked;
+            this.delay = delay;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            invoked.add("metric");
+            return Mono.delay(delay).then(chain.filter(exchange));
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    /**
+     * 未实现Ordered
+     */
+    private static class AuthFilter implements GlobalFilter {
+
+        private final List<String> invoked;
+
+        private AuthFilter(List<String> invoked) {
+            this.invoked = invoked;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            invoked.add("auth");
+            return chain.filter(exchange);
+        }
+    }
+}
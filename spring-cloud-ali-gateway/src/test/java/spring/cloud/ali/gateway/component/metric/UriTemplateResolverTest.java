@@ -0,0 +1,34 @@
+package spring.cloud.ali.gateway.component.metric;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class UriTemplateResolverTest {
+
+    @Test
+    public void testResolveTemplate(){
+        UriTemplateResolver resolver = new UriTemplateResolver(
+                ImmutableMap.of("ali-user", Collections.singletonList("GET#/users/{userId}")));
+        assertEquals("ali-user#GET#/users/{userId}", resolver.resolve("ali-user", "GET", "/users/tom"));
+    }
+
+    @Test
+    public void testResolveNormalized(){
+        UriTemplateResolver resolver = new UriTemplateResolver(null);
+        assertEquals("ali-order#GET#/orders/{id}/items", resolver.resolve("ali-order", "GET", "/orders/123/items"));
+    }
+
+    @Test
+    public void testNormalize(){
+        assertEquals("/", UriTemplateResolver.normalize("/"));
+        assertEquals("/users/detail", UriTemplateResolver.normalize("/users/detail"));
+        assertEquals("/users/{id}", UriTemplateResolver.normalize("/users/123"));
+        assertEquals("/users/{id}/", UriTemplateResolver.normalize("/users/123/"));
+        assertEquals("/files/{id}/{id}", UriTemplateResolver.normalize("/files/3f2b8c1e-9a4d-4e5f-8b6a-1c2d3e4f5a6b/7"));
+        assertEquals("/users/cafe", UriTemplateResolver.normalize("/users/cafe"));
+    }
+}
@@ -0,0 +1,176 @@
+package spring.cloud.ali.gateway.component.route;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import spring.cloud.ali.gateway.config.GatewayConfig;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IndexedRoutePredicateHandlerMappingTest {
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private final List<RouteDefinition> definitions = new ArrayList<>();
+
+    private final GatewayConfig gatewayConfig = new GatewayConfig();
+
+    private IndexedRoutePredicateHandlerMapping indexed;
+
+    private IndexedRoutePredicateHandlerMapping full;
+
+    @Before
+    public void setUp(){
+        addRoute("login", path("/users/login").and(method(HttpMethod.POST)), "/users/login");
+        addRoute("ali-user", path("/users/**", "/accounts/**"), "/users/**,/accounts/**");
+        addRoute("order-pay", path("/orders/{orderId}/pay"), "/orders/{orderId}/pay");
+        addRoute("ali-order", path("/orders/**"), "/orders/**");
+        addRoute("static", path("/static/*.js"), "/static/*.js");
+        // 以下无法索引，始终作为候选
+        addRoute("report", path("/{tenant}/report/**"), "/{tenant}/report/**");
+        addRoute("canary", AsyncPredicate.from(exchange -> exchange.getRequest().getHeaders().containsKey("X-Canary")), null);
+        routes.add(Route.async().id("discovery").uri("lb://discovery").asyncPredicate(path("/discovery/**")).build());
+        gatewayConfig.setRoutes(definitions);
+
+        indexed = mapping();
+        indexed.rebuild();
+        // 未建立索引，完整匹配
+        full = mapping();
+    }
+
+    @Test
+    public void testSameAsFullEvaluation(){
+        List<String> paths = List.of("/users/login", "/users/1", "/users", "/users/", "/accounts/1", "/orders/1/pay",
+                "/orders/1", "/orders", "/acme/report/daily", "/static/a.js", "/static/a.css", "/discovery/x",
+                "/unknown", "/", "/users//1", "/Users/1");
+        for (String path : paths){
+            for (HttpMethod method : List.of(HttpMethod.GET, HttpMethod.POST)){
+                for (boolean canary : List.of(false, true)){
+                    assertEquals(method + " " + path + " canary=" + canary, lookup(full, method, path, canary),
+                            lookup(indexed, method, path, canary));
+                }
+            }
+        }
+
+        assertEquals("login", lookup(indexed, HttpMethod.POST, "/users/login", false));
+        assertEquals("ali-user", lookup(indexed, HttpMethod.GET, "/users/login", false));
+        assertEquals("order-pay", lookup(indexed, HttpMethod.POST, "/orders/1/pay", false));
+        assertEquals("report", lookup(indexed, HttpMethod.GET, "/acme/report/daily", false));
+        assertEquals("canary", lookup(indexed, HttpMethod.GET, "/unknown", true));
+        assertNull(lookup(indexed, HttpMethod.GET, "/unknown", false));
+    }
+
+    @Test
+    public void testCandidates(){
+        RouteIndex index = RouteIndex.build(routes, definitions.stream()
+                .collect(Collectors.toMap(RouteDefinition::getId, d -> d)));
+        assertEquals(8, index.size());
+        assertEquals(5, index.indexed());
+
+        // 根节点（report, canary, discovery）+ 路径经过的节点
+        assertEquals(List.of("order-pay", "ali-order", "report", "canary", "discovery"),
+                ids(index.candidates(PathContainer.parsePath("/orders/1/pay"))));
+        assertEquals(List.of("login", "ali-user", "report", "canary", "discovery"),
+                ids(index.candidates(PathContainer.parsePath("/users/login"))));
+        assertEquals(List.of("ali-user", "report", "canary", "discovery"),
+                ids(index.candidates(PathContainer.parsePath("/accounts/1"))));
+        assertEquals(List.of("report", "canary", "discovery"),
+                ids(index.candidates(PathContainer.parsePath("/unknown/1"))));
+    }
+
+    @Test
+    public void testRebuildOnRoutesChanged(){
+        assertEquals("ali-user", lookup(indexed, HttpMethod.GET, "/users/1", false));
+
+        // ali-user改为/members/**
+        Route user = Route.async().id("ali-user").uri("lb://ali-user").asyncPredicate(path("/members/**")).build();
+        routes.set(1, user);
+        definitions.set(1, definition("ali-user", "/members/**"));
+
+        // 无关配置变化不重建
+        indexed.onApplicationEnvChanged(new EnvironmentChangeEvent(Set.of("gateway.metric.max-series")));
+        assertEquals("ali-user", lookup(indexed, HttpMethod.GET, "/users/1", false));
+
+        indexed.onApplicationEnvChanged(new EnvironmentChangeEvent(Set.of("spring.cloud.gateway.routes[1].predicates[0].args._genkey_0")));
+        assertNull(lookup(indexed, HttpMethod.GET, "/users/1", false));
+        assertEquals("ali-user", lookup(indexed, HttpMethod.GET, "/members/1", false));
+    }
+
+    @Test
+    public void testRebuildFailed(){
+        AtomicBoolean broken = new AtomicBoolean(true);
+        IndexedRoutePredicateHandlerMapping failed = new IndexedRoutePredicateHandlerMapping(
+                new FilteringWebHandler(Collections.emptyList()),
+                () -> broken.getAndSet(false) ? Flux.error(new IllegalStateException("broken")) : Flux.fromIterable(routes),
+                new GlobalCorsProperties(), new StandardEnvironment(), gatewayConfig);
+        failed.rebuild();
+
+        // 重建失败时完整匹配所有路由
+        assertEquals("ali-user", lookup(failed, HttpMethod.GET, "/users/1", false));
+        assertEquals("report", lookup(failed, HttpMethod.GET, "/acme/report/daily", false));
+    }
+
+    private IndexedRoutePredicateHandlerMapping mapping(){
+        return new IndexedRoutePredicateHandlerMapping(new FilteringWebHandler(Collections.emptyList()),
+                () -> Flux.fromIterable(new ArrayList<>(routes)), new GlobalCorsProperties(), new StandardEnvironment(), gatewayConfig);
+    }
+
+    private void addRoute(String id, AsyncPredicate<ServerWebExchange> predicate, String paths){
+        routes.add(Route.async().id(id).uri("lb://" + id).asyncPredicate(predicate).build());
+        definitions.add(definition(id, paths));
+    }
+
+    private static RouteDefinition definition(String id, String paths){
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setUri(URI.create("lb://" + id));
+        if (paths != null){
+            definition.setPredicates(new ArrayList<>(List.of(new PredicateDefinition("Path=" + paths))));
+        }
+        return definition;
+    }
+
+    private static String lookup(IndexedRoutePredicateHandlerMapping mapping, HttpMethod method, String path, boolean canary){
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.method(method, path);
+        if (canary){
+            request.header("X-Canary", "true");
+        }
+        Route route = mapping.lookupRoute(MockServerWebExchange.from(request)).block();
+        return route == null ? null : route.getId();
+    }
+
+    private static List<String> ids(List<Route> routes){
+        return routes.stream().map(Route::getId).collect(Collectors.toList());
+    }
+
+    static AsyncPredicate<ServerWebExchange> path(String... patterns){
+        return new PathRoutePredicateFactory().applyAsync(new PathRoutePredicateFactory.Config().setPatterns(List.of(patterns)));
+    }
+
+    private static AsyncPredicate<ServerWebExchange> method(HttpMethod method){
+        return AsyncPredicate.from(exchange -> exchange.getRequest().getMethod() == method);
+    }
+}
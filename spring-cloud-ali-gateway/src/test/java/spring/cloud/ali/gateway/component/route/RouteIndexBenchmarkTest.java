@@ -0,0 +1,118 @@
+package spring.cloud.ali.gateway.component.route;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import spring.cloud.ali.gateway.config.GatewayConfig;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对比10、100、1000个路由时，默认按顺序匹配（FULL）和按Path索引匹配（INDEXED）的路由查找延迟，请求均匀分布在各路由上，
+ * 耗时较长，手动运行
+ */
+@Ignore("benchmark")
+public class RouteIndexBenchmarkTest {
+
+    private static final int WARMUP = 2000;
+
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    public void test10Routes(){
+        // 路由少时索引无明显收益，不应更慢
+        bench(10, 1);
+    }
+
+    @Test
+    public void test100Routes(){
+        bench(100, 1.5);
+    }
+
+    @Test
+    public void test1000Routes(){
+        bench(1000, 10);
+    }
+
+    /**
+     * @param minSpeedup INDEXED相对FULL的p50最小加速比
+     */
+    private void bench(int size, double minSpeedup){
+        List<Route> routes = new ArrayList<>(size);
+        List<RouteDefinition> definitions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            String id = "svc-" + i;
+            String pattern = "/svc-" + i + "/{version}/**";
+            routes.add(Route.async().id(id).uri("lb://" + id)
+                    .asyncPredicate(IndexedRoutePredicateHandlerMappingTest.path(pattern)).build());
+
+            RouteDefinition definition = new RouteDefinition();
+            definition.setId(id);
+            definition.setUri(URI.create("lb://" + id));
+            definition.setPredicates(List.of(new PredicateDefinition("Path=" + pattern)));
+            definitions.add(definition);
+        }
+        GatewayConfig gatewayConfig = new GatewayConfig();
+        gatewayConfig.setRoutes(definitions);
+
+        IndexedRoutePredicateHandlerMapping full = mapping(routes, gatewayConfig);
+        IndexedRoutePredicateHandlerMapping indexed = mapping(routes, gatewayConfig);
+        indexed.rebuild();
+
+        long[] fullCosts = bench(size, full);
+        long[] indexedCosts = bench(size, indexed);
+        String result = size + " routes, full: " + summary(fullCosts) + ", indexed: " + summary(indexedCosts);
+        assertTrue(result, indexedCosts[ITERATIONS / 2] * minSpeedup <= fullCosts[ITERATIONS / 2]);
+    }
+
+    /**
+     * @return 排序后的每次耗时（纳秒）
+     */
+    private long[] bench(int size, IndexedRoutePredicateHandlerMapping mapping){
+        for (int i = 0; i < WARMUP; i++){
+            lookup(mapping, i % size);
+        }
+
+        long[] costs = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++){
+            int target = i % size;
+            long start = System.nanoTime();
+            String routeId = lookup(mapping, target);
+            costs[i] = System.nanoTime() - start;
+            assertEquals("svc-" + target, routeId);
+        }
+
+        Arrays.sort(costs);
+        return costs;
+    }
+
+    private static String summary(long[] costs){
+        return String.format("p50=%.1fus, p99=%.1fus", costs[ITERATIONS / 2] / 1000.0, costs[ITERATIONS * 99 / 100] / 1000.0);
+    }
+
+    private static String lookup(IndexedRoutePredicateHandlerMapping mapping, int target){
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/svc-" + target + "/v1/items/1"));
+        return mapping.lookupRoute(exchange).block().getId();
+    }
+
+    private static IndexedRoutePredicateHandlerMapping mapping(List<Route> routes, GatewayConfig gatewayConfig){
+        return new IndexedRoutePredicateHandlerMapping(new FilteringWebHandler(Collections.emptyList()),
+                () -> Flux.fromIterable(routes), new GlobalCorsProperties(), new StandardEnvironment(), gatewayConfig);
+    }
+}
@@ -0,0 +1,130 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CriticalityShedderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CriticalityShedder shedder = new CriticalityShedder();
+
+    private final Route route = route(Map.of(
+            CriticalityShedder.METADATA_CRITICAL_PATHS, "POST#/orders/create, POST#/orders/{orderId}/pay",
+            CriticalityShedder.METADATA_SHEDDABLE_PATHS, List.of("GET#/orders/poll")));
+
+    private double cpu;
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(shedder, "appConfig", new AppConfig());
+        ReflectionTestUtils.setField(shedder, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(shedder, "cpuUsage", (DoubleSupplier) () -> cpu);
+        // 负载不可用
+        ReflectionTestUtils.setField(shedder, "systemLoad", (DoubleSupplier) () -> -1);
+        shedder.init();
+    }
+
+    @Test
+    public void testResolve(){
+        assertEquals(Criticality.CRITICAL, shedder.resolve(route, MockServerHttpRequest.post("/orders/create").build()));
+        assertEquals(Criticality.CRITICAL, shedder.resolve(route, MockServerHttpRequest.post("/orders/1001/pay").build()));
+        assertEquals(Criticality.SHEDDABLE, shedder.resolve(route, MockServerHttpRequest.get("/orders/poll").build()));
+        assertEquals(Criticality.DEFAULT, shedder.resolve(route, MockServerHttpRequest.get("/orders/paging").build()));
+
+        // 请求头只能降低重要性
+        assertEquals(Criticality.SHEDDABLE, shedder.resolve(route, MockServerHttpRequest.post("/orders/create")
+                .header("X-Request-Criticality", "sheddable").build()));
+        assertEquals(Criticality.SHEDDABLE, shedder.resolve(route, MockServerHttpRequest.get("/orders/poll")
+                .header("X-Request-Criticality", "CRITICAL").build()));
+
+        // 路由默认重要性
+        Route background = route(Map.of(CriticalityShedder.METADATA_CRITICALITY, "sheddable"));
+        assertEquals(Criticality.SHEDDABLE, shedder.resolve(background, MockServerHttpRequest.get("/orders/paging").build()));
+    }
+
+    @Test
+    public void testShedByCriticality(){
+        cpu = 0.5;
+        assertEquals(0, shed(Criticality.SHEDDABLE, 1000));
+
+        // 超过可丢弃阈值（0.6）的比例大于ramp，全部拒绝，其它不受影响
+        cpu = 0.7;
+        assertEquals(1000, shed(Criticality.SHEDDABLE, 1000));
+        assertEquals(0, shed(Criticality.DEFAULT, 1000));
+        assertEquals(0, shed(Criticality.CRITICAL, 1000));
+
+        // 普通请求按比例拒绝：(0.85 / 0.8 - 1) / 0.1 = 0.625
+        cpu = 0.85;
+        int shed = shed(Criticality.DEFAULT, 1000);
+        assertTrue("shed: " + shed, shed > 500 && shed < 750);
+        assertEquals(0, shed(Criticality.CRITICAL, 1000));
+
+        assertEquals(1000, meterRegistry.get("ali_gateway_criticality_requests")
+                .tags("service", "ali-order", "criticality", "sheddable", "result", "shed").counter().count(), 0);
+        assertEquals(2000, meterRegistry.get("ali_gateway_criticality_requests")
+                .tags("service", "ali-order", "criticality", "critical", "result", "admitted").counter().count(), 0);
+    }
+
+    @Test
+    public void testLoad(){
+        int processors = Runtime.getRuntime().availableProcessors();
+        ReflectionTestUtils.setField(shedder, "systemLoad", (DoubleSupplier) () -> processors * 1.0);
+
+        // 每核负载1.0超过可丢弃阈值（0.8）
+        assertEquals(100, shed(Criticality.SHEDDABLE, 100));
+        assertEquals(0, shed(Criticality.DEFAULT, 100));
+    }
+
+    @Test
+    public void testDisabled(){
+        AppConfig appConfig = new AppConfig();
+        appConfig.getCriticality().setEnabled(false);
+        ReflectionTestUtils.setField(shedder, "appConfig", appConfig);
+        shedder.init();
+
+        cpu = 1;
+        assertFalse(shedder.shouldShed(route, Criticality.SHEDDABLE));
+    }
+
+    @Test
+    public void testMetadataChanged(){
+        assertEquals(Criticality.DEFAULT, shedder.resolve(route, MockServerHttpRequest.get("/orders/paging").build()));
+
+        // 路由刷新后重新解析，指标保留
+        cpu = 1;
+        assertTrue(shedder.shouldShed(route, Criticality.DEFAULT));
+        Route refreshed = route(Map.of(CriticalityShedder.METADATA_SHEDDABLE_PATHS, "GET#/orders/paging"));
+        assertEquals(Criticality.SHEDDABLE, shedder.resolve(refreshed, MockServerHttpRequest.get("/orders/paging").build()));
+        assertTrue(shedder.shouldShed(refreshed, Criticality.DEFAULT));
+        assertEquals(2, meterRegistry.get("ali_gateway_criticality_requests")
+                .tags("service", "ali-order", "criticality", "default", "result", "shed").counter().count(), 0);
+    }
+
+    private int shed(Criticality criticality, int requests){
+        int shed = 0;
+        for (int i = 0; i < requests; i++){
+            if (shedder.shouldShed(route, criticality)){
+                shed++;
+            }
+        }
+        return shed;
+    }
+
+    private static Route route(Map<String, Object> metadata){
+        return Route.async().id("ali-order").uri("lb://ali-order").predicate(exchange -> true).metadata(metadata).build();
+    }
+}
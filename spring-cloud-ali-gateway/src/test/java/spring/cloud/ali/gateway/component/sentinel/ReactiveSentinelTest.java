@@ -0,0 +1,135 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeException;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRule;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRuleManager;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReactiveSentinelTest {
+
+    private static final String ROUTE_ID = "ali-test";
+
+    @After
+    public void tearDown(){
+        DegradeRuleManager.loadRules(Collections.emptyList());
+    }
+
+    @Test
+    public void testDegradeOpensAtConfiguredRt(){
+        String slow = ROUTE_ID + "#GET#/slow";
+        String fast = ROUTE_ID + "#GET#/fast";
+        // 上游耗时100ms：RT阈值50ms的资源熔断，RT阈值200ms的资源不熔断
+        DegradeRuleManager.loadRules(Arrays.asList(rtRule(slow, 50), rtRule(fast, 200)));
+
+        assertEquals(0, load(fast, 40, Duration.ofMillis(100)));
+
+        int blocked = load(slow, 40, Duration.ofMillis(100));
+        assertTrue("blocked: " + blocked, blocked > 0);
+
+        // 熔断打开后，直接拒绝
+        assertTrue(entry(slow, Duration.ZERO, new MockServerHttpResponse())
+                .onErrorResume(DegradeException.class, e -> Mono.just(true)).block());
+    }
+
+    @Test
+    public void testTraceServerError(){
+        String resource = ROUTE_ID + "#GET#/error";
+        DegradeRule rule = new DegradeRule(resource)
+                .setGrade(RuleConstant.DEGRADE_GRADE_EXCEPTION_COUNT)
+                .setCount(3)
+                .setMinRequestAmount(1)
+                .setStatIntervalMs(10000)
+                .setTimeWindow(10);
+        DegradeRuleManager.loadRules(Collections.singletonList(rule));
+
+        // 后端返回5xx，不以异常形式返回
+        AtomicInteger blocked = new AtomicInteger();
+        for (int i = 0; i < 10; i++){
+            MockServerHttpResponse resp = new MockServerHttpResponse();
+            ReactiveSentinel.entry(ROUTE_ID, resource, resp, () -> {
+                resp.setStatusCode(HttpStatus.BAD_GATEWAY);
+                return Mono.empty();
+            }).onErrorResume(DegradeException.class, e -> {
+                blocked.incrementAndGet();
+                return Mono.empty();
+            }).block();
+        }
+        assertEquals(6, blocked.get());
+    }
+
+    @Test
+    public void testNoContextLeak(){
+        String resource = ROUTE_ID + "#GET#/leak";
+        entry(resource, Duration.ofMillis(10), new MockServerHttpResponse()).block();
+        Mono.defer(() -> ReactiveSentinel.entry(ROUTE_ID, resource, new MockServerHttpResponse(), Mono::empty))
+                .timeout(Duration.ofMillis(1))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        assertNull(ContextUtil.getContext());
+    }
+
+    @Test
+    public void testActionThrows(){
+        String resource = ROUTE_ID + "#GET#/throw";
+        // 被保护的调用同步抛出异常：以错误信号返回，Entry退出，并发数归零
+        IllegalStateException error = new IllegalStateException("assemble failed");
+        Throwable thrown = ReactiveSentinel.entry(ROUTE_ID, resource, new MockServerHttpResponse(), () -> {
+            throw error;
+        }).then(Mono.<Throwable>empty()).onErrorResume(Mono::just).block();
+        assertSame(error, thrown);
+
+        ClusterNode node = ClusterBuilderSlot.getClusterNode(resource);
+        assertEquals(0, node.curThreadNum());
+        assertEquals(1, node.totalException());
+        assertNull(ContextUtil.getContext());
+    }
+
+    /**
+     * 以固定并发持续请求，返回被熔断拒绝的请求数
+     */
+    private int load(String resource, int requests, Duration upstreamLatency){
+        AtomicInteger blocked = new AtomicInteger();
+        Flux.range(0, requests)
+                .flatMap(i -> entry(resource, upstreamLatency, new MockServerHttpResponse())
+                        .onErrorResume(DegradeException.class, e -> {
+                            blocked.incrementAndGet();
+                            return Mono.just(true);
+                        }), 4)
+                .blockLast();
+        return blocked.get();
+    }
+
+    private Mono<Boolean> entry(String resource, Duration upstreamLatency, MockServerHttpResponse resp){
+        return ReactiveSentinel.entry(ROUTE_ID, resource, resp, () -> Mono.delay(upstreamLatency).then())
+                .then(Mono.just(false));
+    }
+
+    private static DegradeRule rtRule(String resource, int maxRt){
+        return new DegradeRule(resource)
+                .setGrade(RuleConstant.DEGRADE_GRADE_RT)
+                .setCount(maxRt)
+                .setSlowRatioThreshold(0.5)
+                .setMinRequestAmount(5)
+                .setStatIntervalMs(10000)
+                .setTimeWindow(10);
+    }
+}
@@ -0,0 +1,61 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceMatcherTest {
+
+    private final ResourceMatcher matcher = ResourceMatcher.compile("ali-user", Arrays.asList(
+            "ali-user#GET#/users/detail",
+            "ali-user#GET#/users/{userId}",
+            "ali-user#GET#/users/{userId}/orders/{orderId}",
+            "ali-user#POST#/users/{userId}",
+            "ali-user#GET#/files/{name}.json",
+            "ali-order#GET#/orders/detail"
+    ));
+
+    @Test
+    public void testMatchLiteral(){
+        assertEquals("ali-user#GET#/users/detail", matcher.match("GET", "/users/detail"));
+    }
+
+    @Test
+    public void testMatchVariable(){
+        assertEquals("ali-user#GET#/users/{userId}", matcher.match("GET", "/users/123"));
+        assertEquals("ali-user#POST#/users/{userId}", matcher.match("POST", "/users/123"));
+        assertEquals("ali-user#GET#/users/{userId}/orders/{orderId}", matcher.match("GET", "/users/1/orders/2"));
+    }
+
+    @Test
+    public void testMatchBacktrack(){
+        // detail字面量段下无orders子节点，需回溯到{userId}
+        assertEquals("ali-user#GET#/users/{userId}/orders/{orderId}", matcher.match("GET", "/users/detail/orders/2"));
+    }
+
+    @Test
+    public void testMatchFallback(){
+        assertEquals("ali-user#GET#/files/{name}.json", matcher.match("GET", "/files/a.json"));
+        assertNull(matcher.match("GET", "/files/a.xml"));
+    }
+
+    @Test
+    public void testMatch_false(){
+        assertNull(matcher.match("GET", "/users"));
+        assertNull(matcher.match("GET", "/users/"));
+        assertNull(matcher.match("GET", "/users/1/"));
+        assertNull(matcher.match("DELETE", "/users/1"));
+        assertNull(matcher.match("GET", "/orders/detail"));
+    }
+
+    @Test
+    public void testEmpty(){
+        assertTrue(ResourceMatcher.compile("ali-user", Collections.emptyList()).isEmpty());
+        assertNull(ResourceMatcher.EMPTY.match("GET", "/users/1"));
+    }
+}
@@ -0,0 +1,81 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteRulesLoaderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RouteRulesLoader loader = new RouteRulesLoader(meterRegistry);
+
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    @Test
+    public void testParallel(){
+        List<String> routeIds = routeIds(10);
+        Map<String, RouteRulesLoader.RuleTask> tasks = new LinkedHashMap<>();
+        tasks.put("flow", routeId -> sleep(200, routeId + ":flow"));
+        tasks.put("degrade", routeId -> sleep(200, routeId + ":degrade"));
+
+        // 串行需要4s
+        long start = System.currentTimeMillis();
+        assertTrue(loader.load(routeIds, tasks, 20, Duration.ofSeconds(3)));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(20, loaded.size());
+
+        assertEquals(1, meterRegistry.get("ali_gateway_sentinel_rules_load")
+                .tags("service", "route-0", "type", "flow", "result", "success").timer().count());
+    }
+
+    @Test
+    public void testDeadline(){
+        Map<String, RouteRulesLoader.RuleTask> tasks = new LinkedHashMap<>();
+        tasks.put("flow", routeId -> sleep(routeId.equals("route-1") ? 1000 : 10, routeId));
+
+        long start = System.currentTimeMillis();
+        assertFalse(loader.load(routeIds(2), tasks, 2, Duration.ofMillis(200)));
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertTrue(loaded.contains("route-0"));
+        assertFalse(loaded.contains("route-1"));
+    }
+
+    @Test
+    public void testFailure(){
+        Map<String, RouteRulesLoader.RuleTask> tasks = new LinkedHashMap<>();
+        tasks.put("flow", routeId -> {
+            if (routeId.equals("route-1")){
+                throw new IllegalStateException("nacos unavailable");
+            }
+            loaded.add(routeId);
+        });
+
+        assertFalse(loader.load(routeIds(3), tasks, 2, Duration.ofSeconds(1)));
+        assertEquals(2, loaded.size());
+    }
+
+    private void sleep(long millis, String key) throws InterruptedException {
+        Thread.sleep(millis);
+        loaded.add(key);
+    }
+
+    private static List<String> routeIds(int count){
+        List<String> routeIds = new ArrayList<>();
+        for (int i = 0; i < count; i++){
+            routeIds.add("route-" + i);
+        }
+        return routeIds;
+    }
+}
@@ -0,0 +1,56 @@
+package spring.cloud.ali.gateway.component.sentinel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteShedderTest {
+
+    private static final String LIMITED = "ali-order#GET#/orders/paging";
+
+    private static final String HEALTHY = "ali-order#POST#/orders/create";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RouteShedder shedder = new RouteShedder();
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(shedder, "appConfig", new AppConfig());
+        ReflectionTestUtils.setField(shedder, "meterRegistry", meterRegistry);
+        shedder.init();
+    }
+
+    @Test
+    public void testShedByResource(){
+        // /orders/paging被Sentinel拒绝90%，/orders/create全部通过
+        for (int i = 0; i < 1000; i++){
+            if (i % 10 == 0){
+                shedder.onPass(LIMITED);
+            } else {
+                shedder.onBlock(LIMITED);
+            }
+            shedder.onPass(HEALTHY);
+        }
+
+        int shed = 0;
+        for (int i = 0; i < 100; i++){
+            if (shedder.shouldShed("ali-order", LIMITED)){
+                shed++;
+            }
+            // 同一路由的其它API不受影响
+            assertFalse(shedder.shouldShed("ali-order", HEALTHY));
+        }
+        assertTrue("shed: " + shed, shed > 50);
+        assertEquals(shed, meterRegistry.get("ali_gateway_requests_shed").tag("service", "ali-order").counter().count(), 0);
+
+        // 未统计的资源不拒绝
+        assertFalse(shedder.shouldShed("ali-order", "ali-order#GET#/orders/detail"));
+    }
+}
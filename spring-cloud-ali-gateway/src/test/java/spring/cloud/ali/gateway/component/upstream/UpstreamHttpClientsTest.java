@@ -0,0 +1,125 @@
+package spring.cloud.ali.gateway.component.upstream;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UpstreamHttpClientsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final UpstreamHttpClients clients = new UpstreamHttpClients();
+
+    private final HttpClientProperties httpClientProperties = new HttpClientProperties();
+
+    private DisposableServer server;
+
+    @Before
+    public void setUp(){
+        Metrics.addRegistry(meterRegistry);
+        server = HttpServer.create().port(0)
+                .route(routes -> routes.get("/ping", (req, resp) -> resp.sendString(Mono.just("pong"))))
+                .bindNow();
+
+        ReflectionTestUtils.setField(clients, "appConfig", appConfig);
+        ServerProperties serverProperties = new ServerProperties();
+        ReflectionTestUtils.setField(clients, "httpClientProperties", httpClientProperties);
+        ReflectionTestUtils.setField(clients, "serverProperties", serverProperties);
+        ReflectionTestUtils.setField(clients, "sslConfigurer",
+                new HttpClientSslConfigurer(httpClientProperties.getSsl(), serverProperties));
+        clients.init();
+    }
+
+    @After
+    public void tearDown(){
+        clients.destroy();
+        server.disposeNow();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    public void testRoutePools(){
+        HttpClient user = clients.get("ali-user");
+        HttpClient order = clients.get("ali-order");
+        assertSame(user, clients.get("ali-user"));
+        assertNotSame(user, order);
+
+        assertEquals("pong", ping(user));
+        assertEquals("pong", ping(order));
+
+        // 每个路由独立的连接池指标
+        for (String name : new String[]{"route-ali-user", "route-ali-order"}){
+            assertNotNull(meterRegistry.find("reactor.netty.connection.provider.idle.connections").tag("name", name).gauge());
+        }
+    }
+
+    @Test
+    public void testRefresh(){
+        HttpClient before = clients.get("ali-user");
+        HttpClient untouched = clients.get("ali-order");
+
+        AppConfig.Pool pool = new AppConfig.Pool();
+        pool.setMaxConnections(10);
+        appConfig.getUpstream().setRoutes(Collections.singletonMap("ali-user", pool));
+        clients.onRefreshScopeRefreshed(null);
+
+        // 仅配置变化的路由重建连接池
+        assertNotSame(before, clients.get("ali-user"));
+        assertSame(untouched, clients.get("ali-order"));
+        assertEquals("pong", ping(clients.get("ali-user")));
+    }
+
+    @Test
+    public void testRouteRemoved(){
+        HttpClient user = clients.get("ali-user");
+        HttpClient order = clients.get("ali-order");
+
+        // 已删除路由的连接池移除，路由重新添加时新建
+        clients.retain(Set.of("ali-order"));
+        assertSame(order, clients.get("ali-order"));
+        assertNotSame(user, clients.get("ali-user"));
+        assertEquals("pong", ping(clients.get("ali-user")));
+    }
+
+    @Test
+    public void testHttpClientProperties(){
+        httpClientProperties.getSsl().setUseInsecureTrustManager(true);
+        httpClientProperties.getProxy().setHost("127.0.0.1");
+        httpClientProperties.getProxy().setPort(3128);
+        httpClientProperties.setConnectTimeout(1500);
+
+        // 与网关默认的HttpClient一致
+        HttpClient client = clients.get("ali-user");
+        assertTrue(client.configuration().isSecure());
+        assertTrue(client.configuration().hasProxy());
+        assertEquals(1500, client.configuration().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS));
+    }
+
+    private String ping(HttpClient client){
+        return client.get().uri("http://localhost:" + server.port() + "/ping")
+                .responseContent().aggregate().asString().block();
+    }
+}
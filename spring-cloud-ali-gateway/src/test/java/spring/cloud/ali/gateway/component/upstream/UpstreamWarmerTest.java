@@ -0,0 +1,179 @@
+package spring.cloud.ali.gateway.component.upstream;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClientsProperties;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.gateway.config.GatewayConfig;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UpstreamWarmerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final UpstreamHttpClients clients = new UpstreamHttpClients();
+
+    private final UpstreamWarmer warmer = new UpstreamWarmer();
+
+    private final List<DisposableServer> servers = new ArrayList<>();
+
+    private final List<ServiceInstance> instances = new ArrayList<>();
+
+    /**
+     * 上游实例收到的连接数
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * 网关收到的模拟请求数
+     */
+    private final AtomicInteger replays = new AtomicInteger();
+
+    private Duration upstreamDelay = Duration.ZERO;
+
+    @Before
+    public void setUp(){
+        Metrics.addRegistry(meterRegistry);
+        for (int i = 0; i < 2; i++){
+            DisposableServer server = HttpServer.create().port(0)
+                    .doOnConnection(conn -> connections.incrementAndGet())
+                    .handle((req, resp) -> Mono.delay(upstreamDelay).then(resp.send()))
+                    .bindNow();
+            servers.add(server);
+            instances.add(new DefaultServiceInstance("ali-user-" + i, "ali-user", "127.0.0.1", server.port(), false));
+        }
+
+        ReflectionTestUtils.setField(clients, "appConfig", appConfig);
+        HttpClientProperties httpClientProperties = new HttpClientProperties();
+        ReflectionTestUtils.setField(clients, "httpClientProperties", httpClientProperties);
+        ReflectionTestUtils.setField(clients, "serverProperties", new ServerProperties());
+        ReflectionTestUtils.setField(clients, "sslConfigurer",
+                new HttpClientSslConfigurer(httpClientProperties.getSsl(), new ServerProperties()));
+        clients.init();
+
+        RouteDefinition user = new RouteDefinition();
+        user.setId("ali-user");
+        user.setUri(URI.create("lb://ali-user"));
+        RouteDefinition external = new RouteDefinition();
+        external.setId("external");
+        external.setUri(URI.create("http://localhost:1"));
+        GatewayConfig gatewayConfig = new GatewayConfig();
+        gatewayConfig.setRoutes(List.of(user, external));
+
+        ReflectionTestUtils.setField(warmer, "appConfig", appConfig);
+        ReflectionTestUtils.setField(warmer, "gatewayConfig", gatewayConfig);
+        ReflectionTestUtils.setField(warmer, "upstreamHttpClients", clients);
+        ReflectionTestUtils.setField(warmer, "loadBalancerClientFactory", new LoadBalancerClientFactory(new LoadBalancerClientsProperties()) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getInstance(String name, Class<T> type) {
+                return (T) new StaticSupplier(instances);
+            }
+        });
+    }
+
+    @After
+    public void tearDown(){
+        clients.destroy();
+        servers.forEach(DisposableServer::disposeNow);
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    public void testPreconnect(){
+        AppConfig.Warmup config = appConfig.getWarmup();
+        config.setConnections(4);
+
+        assertTrue(warmer.warmUp(config, null));
+        assertEquals(8, connections.get());
+
+        // 连接保持在路由连接池中
+        double idle = meterRegistry.get("reactor.netty.connection.provider.idle.connections")
+                .tag("name", "route-ali-user").gauges().stream().mapToDouble(g -> g.value()).sum();
+        assertEquals(8, idle, 0);
+    }
+
+    @Test
+    public void testReplay(){
+        DisposableServer gateway = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    if ("true".equals(req.requestHeaders().get(UpstreamWarmer.HEADER_WARMUP))
+                            && "token".equals(req.requestHeaders().get("Login-Token"))){
+                        replays.incrementAndGet();
+                    }
+                    return resp.send();
+                })
+                .bindNow();
+        try {
+            AppConfig.WarmupRequest req = new AppConfig.WarmupRequest();
+            req.setPath("/users/detail?userId=1");
+            req.setHeaders(Map.of("Login-Token", "token"));
+            AppConfig.Warmup config = appConfig.getWarmup();
+            config.setRequests(List.of(req));
+            config.setRepeat(50);
+
+            assertTrue(warmer.warmUp(config, gateway.port()));
+            assertEquals(50, replays.get());
+        } finally {
+            gateway.disposeNow();
+        }
+    }
+
+    @Test
+    public void testDeadline(){
+        upstreamDelay = Duration.ofSeconds(5);
+        AppConfig.Warmup config = appConfig.getWarmup();
+        config.setDeadline(Duration.ofMillis(300));
+
+        long start = System.currentTimeMillis();
+        assertFalse(warmer.warmUp(config, null));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    private static class StaticSupplier implements ServiceInstanceListSupplier {
+
+        private final List<ServiceInstance> instances;
+
+        private StaticSupplier(List<ServiceInstance> instances) {
+            this.instances = instances;
+        }
+
+        @Override
+        public String getServiceId() {
+            return "ali-user";
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get() {
+            return Flux.just(instances);
+        }
+    }
+}
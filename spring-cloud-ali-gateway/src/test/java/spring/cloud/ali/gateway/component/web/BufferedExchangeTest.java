@@ -0,0 +1,80 @@
+package spring.cloud.ali.gateway.component.web;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+
+public class BufferedExchangeTest {
+
+    private DisposableServer upstream;
+
+    @Before
+    public void setUp(){
+        upstream = HttpServer.create().port(0)
+                .route(routes -> routes.get("/users/{userId}", (req, resp) -> resp.status(201)
+                        .header("X-Upstream", "ali-user")
+                        .sendString(Mono.just("user-" + req.param("userId")))))
+                .bindNow();
+    }
+
+    @After
+    public void tearDown(){
+        upstream.disposeNow();
+    }
+
+    @Test
+    public void testBufferUpstreamBody(){
+        AtomicReference<BufferedExchange> copy = new AtomicReference<>();
+        AtomicReference<String> buffered = new AtomicReference<>();
+        GatewayFilter buffering = (exchange, chain) -> {
+            BufferedExchange exchangeCopy = new BufferedExchange(exchange);
+            copy.set(exchangeCopy);
+            return exchangeCopy.filter(chain).then(Mono.defer(() -> {
+                buffered.set(exchangeCopy.getResponse().getHeaders().getFirst("X-Upstream"));
+                return exchangeCopy.writeTo(exchange.getResponse());
+            }));
+        };
+
+        for (int i = 1; i <= 3; i++){
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/" + i));
+            new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), buffering).handle(exchange).block();
+
+            // 上游响应体经副本缓冲后写出，连接已读完释放
+            assertEquals(HttpStatus.CREATED, exchange.getResponse().getStatusCode());
+            assertEquals("user-" + i, exchange.getResponse().getBodyAsString().block());
+            assertEquals("ali-user", buffered.get());
+            assertNull(copy.get().getAttribute(CLIENT_RESPONSE_CONN_ATTR));
+        }
+    }
+
+    @Test
+    public void testReadBody(){
+        GatewayFilter reading = (exchange, chain) -> {
+            BufferedExchange exchangeCopy = new BufferedExchange(exchange);
+            return exchangeCopy.filter(chain).then(Mono.defer(() -> {
+                byte[] body = exchangeCopy.readBody();
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory()
+                        .wrap(("read:" + new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8))));
+            }));
+        };
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/7"));
+        new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), reading).handle(exchange).block();
+        assertEquals("read:user-7", exchange.getResponse().getBodyAsString().block());
+    }
+}
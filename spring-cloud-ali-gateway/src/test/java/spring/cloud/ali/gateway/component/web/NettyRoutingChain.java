@@ -0,0 +1,72 @@
+package spring.cloud.ali.gateway.component.web;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 测试用的网关过滤器链：NettyWriteResponseFilter（-1） -> 路由过滤器 -> NettyRoutingFilter，转发到真实的上游，
+ * 可加入网关的全局过滤器，与网关相同按Ordered排序
+ */
+public final class NettyRoutingChain {
+
+    private final FilteringWebHandler handler;
+
+    private final Route route;
+
+    private final String baseUrl;
+
+    /**
+     * @param baseUrl 上游地址，如http://127.0.0.1:8080
+     * @param routeFilters 路由过滤器，按顺序
+     */
+    public NettyRoutingChain(String baseUrl, GatewayFilter... routeFilters) {
+        this(baseUrl, List.of(), routeFilters);
+    }
+
+    /**
+     * @param globalFilters 网关的全局过滤器（不含NettyWriteResponseFilter和NettyRoutingFilter）
+     */
+    public NettyRoutingChain(String baseUrl, List<GlobalFilter> globalFilters, GatewayFilter... routeFilters) {
+        ObjectProvider<List<HttpHeadersFilter>> headersFilters = new DefaultListableBeanFactory()
+                .getBeanProvider(ResolvableType.forClassWithGenerics(List.class, HttpHeadersFilter.class));
+        List<GlobalFilter> filters = new ArrayList<>(globalFilters);
+        filters.add(new NettyWriteResponseFilter(List.of(MediaType.TEXT_EVENT_STREAM)));
+        filters.add(new NettyRoutingFilter(HttpClient.create(), headersFilters, new HttpClientProperties()));
+        this.handler = new FilteringWebHandler(filters);
+
+        List<GatewayFilter> ordered = new ArrayList<>();
+        for (int i = 0; i < routeFilters.length; i++){
+            ordered.add(new OrderedGatewayFilter(routeFilters[i], i + 1));
+        }
+        this.route = Route.async().id("ali-user").uri(baseUrl).predicate(exchange -> true).filters(ordered).build();
+        this.baseUrl = baseUrl;
+    }
+
+    public Mono<Void> handle(ServerWebExchange exchange) {
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create(baseUrl + exchange.getRequest().getURI().getRawPath()
+                + (exchange.getRequest().getURI().getRawQuery() == null ? "" : "?" + exchange.getRequest().getURI().getRawQuery())));
+        return handler.handle(exchange);
+    }
+}
@@ -0,0 +1,41 @@
+package spring.cloud.ali.gateway.component.web;
+
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Test;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import spring.cloud.ali.common.exception.BizException;
+
+import static org.junit.Assert.assertEquals;
+import static spring.cloud.ali.common.enums.HttpRespStatus.HTTP_REQUEST_TOO_MANY;
+import static spring.cloud.ali.common.exception.BizException.UN_AUTH;
+
+public class RejectResponsesTest {
+
+    @Test
+    public void testWrite(){
+        for (int i = 0; i < 3; i++){
+            MockServerHttpResponse resp = new MockServerHttpResponse();
+            RejectResponses.write(resp, HTTP_REQUEST_TOO_MANY).block();
+            assertEquals(HTTP_REQUEST_TOO_MANY.getStatus(), resp.getStatusCode());
+            assertEquals(HTTP_REQUEST_TOO_MANY.getMsg(), resp.getBodyAsString().block());
+        }
+    }
+
+    @Test
+    public void testWriteNetty(){
+        // 多次写出并释放，共享的响应体不受影响
+        for (int i = 0; i < 3; i++){
+            MockServerHttpResponse resp = new MockServerHttpResponse(new NettyDataBufferFactory(ByteBufAllocator.DEFAULT));
+            RejectResponses.writeBody(resp, UN_AUTH).block();
+            assertEquals("{\"code\":401,\"data\":null,\"msg\":\"un.auth\"}", resp.getBodyAsString().block());
+        }
+    }
+
+    @Test
+    public void testWriteNotConstant(){
+        MockServerHttpResponse resp = new MockServerHttpResponse();
+        RejectResponses.writeBody(resp, new BizException(1002, "user.not.found")).block();
+        assertEquals("{\"code\":1002,\"data\":null,\"msg\":\"user.not.found\"}", resp.getBodyAsString().block());
+    }
+}
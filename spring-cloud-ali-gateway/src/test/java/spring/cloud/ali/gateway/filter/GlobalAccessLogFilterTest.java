@@ -0,0 +1,156 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.accesslog.AccessLogWriter;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static spring.cloud.ali.gateway.filter.GlobalMetricFilter.URI_TEMPLATE_ATTR;
+import static spring.cloud.ali.gateway.filter.RouteLoginFilter.LOGIN_USER_ID_ATTR;
+
+public class GlobalAccessLogFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final AccessLogWriter writer = new AccessLogWriter();
+
+    private final GlobalAccessLogFilter filter = new GlobalAccessLogFilter();
+
+    private File file;
+
+    @Before
+    public void setUp(){
+        file = new File(folder.getRoot(), "access.log");
+        appConfig.getAccessLog().setFile(file.getPath());
+        appConfig.getAccessLog().setBufferSize(16);
+        ReflectionTestUtils.setField(writer, "appConfig", appConfig);
+        ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "accessLogWriter", writer);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writer.destroy();
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        writer.init();
+        filter.filter(exchange("/users/10001"), ex -> {
+            ex.getAttributes().put(URI_TEMPLATE_ATTR, "/users/{userId}");
+            ex.getAttributes().put(LOGIN_USER_ID_ATTR, "10001");
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+            return ex.getResponse().writeWith(Mono.just(
+                    DefaultDataBufferFactory.sharedInstance.wrap("{\"id\":10001}".getBytes(StandardCharsets.UTF_8))));
+        }).block();
+
+        // 未命中模板，使用原始路径；异常未设置状态码，记为500
+        filter.filter(exchange("/users/login"), ex -> Mono.error(new IllegalStateException("upstream error")))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+
+        List<String> lines = readLines(2);
+        String[] fields = lines.get(0).split("\t");
+        assertEquals(8, fields.length);
+        assertEquals("ali-user", fields[1]);
+        assertEquals("GET", fields[2]);
+        assertEquals("/users/{userId}", fields[3]);
+        assertEquals("200", fields[4]);
+        assertTrue(fields[5].matches("\\d+\\.\\d{3}"));
+        assertEquals("12", fields[6]);
+        assertEquals("10001", fields[7]);
+
+        assertTrue(lines.get(1).endsWith("\t/users/login\t500\t" + lines.get(1).split("\t")[5] + "\t0\t-"));
+    }
+
+    @Test
+    public void testDropOnFull() throws Exception {
+        // 写线程停止后写满缓冲区
+        writer.init();
+        writer.destroy();
+
+        for (int i = 0; i < 20; i++){
+            filter.filter(exchange("/users/" + i), ex -> Mono.empty()).block();
+        }
+        assertEquals(4, meterRegistry.get("ali_gateway_access_log_dropped").counter().count(), 0);
+        assertEquals(16, meterRegistry.get("ali_gateway_access_log_pending").gauge().value(), 0);
+    }
+
+    @Test
+    public void testGatewayChain() throws Exception {
+        DisposableServer upstream = HttpServer.create().port(0)
+                .route(routes -> routes.get("/users/{userId}", (req, resp) -> resp.sendString(Mono.just("user-" + req.param("userId")))))
+                .bindNow();
+        try {
+            writer.init();
+            // 路由过滤器直接拒绝（如登录校验失败）
+            GatewayFilter login = (exchange, chain) -> {
+                if (exchange.getRequest().getHeaders().containsKey("Login-Token")){
+                    return chain.filter(exchange);
+                }
+                exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+                return exchange.getResponse().setComplete();
+            };
+            NettyRoutingChain gateway = new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), List.of(filter), login);
+            gateway.handle(MockServerWebExchange.from(MockServerHttpRequest.get("/users/1"))).block();
+            gateway.handle(MockServerWebExchange.from(MockServerHttpRequest.get("/users/2").header("Login-Token", "token"))).block();
+
+            // 转发的请求记录上游响应体的字节数
+            List<String> lines = readLines(2);
+            assertTrue(lines.get(0), lines.get(0).contains("\t/users/1\t401\t"));
+            assertTrue(lines.get(1), lines.get(1).contains("\t/users/2\t200\t"));
+            assertEquals("6", lines.get(1).split("\t")[6]);
+        } finally {
+            upstream.disposeNow();
+        }
+    }
+
+    private MockServerWebExchange exchange(String path){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, Route.async().id("ali-user").uri("lb://ali-user")
+                .predicate(ex -> true).build());
+        return exchange;
+    }
+
+    private List<String> readLines(int count) throws Exception {
+        for (int i = 0; i < 50; i++){
+            if (file.exists()){
+                List<String> lines = Files.readAllLines(file.toPath());
+                if (lines.size() >= count){
+                    return lines;
+                }
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("access log not written");
+    }
+}
@@ -0,0 +1,168 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.component.eventloop.EventLoopMonitor;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GlobalCompressionFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final EventLoopMonitor eventLoopMonitor = new EventLoopMonitor();
+
+    private final GlobalCompressionFilter filter = new GlobalCompressionFilter();
+
+    private final String json = json(200);
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(filter, "appConfig", new AppConfig());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "eventLoopMonitor", eventLoopMonitor);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        MockServerWebExchange exchange = request("gzip, deflate");
+        respond(exchange, MediaType.APPLICATION_JSON, json, 4);
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(-1, headers.getContentLength());
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, headers.getFirst(HttpHeaders.VARY));
+
+        byte[] body = body(exchange);
+        assertTrue(body.length < json.length() / 4);
+        assertEquals(json, read(new GZIPInputStream(new ByteArrayInputStream(body))));
+
+        double ratio = meterRegistry.get("ali_gateway_compression_ratio").tag("encoding", "gzip").summary().mean();
+        assertTrue(ratio > 0 && ratio < 0.25);
+        assertEquals(1, meterRegistry.get("ali_gateway_compression_time").timer().count());
+    }
+
+    @Test
+    public void testNegotiate() throws IOException {
+        MockServerWebExchange exchange = request("gzip;q=0.5, deflate");
+        respond(exchange, MediaType.APPLICATION_JSON, json, 1);
+        assertEquals("deflate", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(json, read(new InflaterInputStream(new ByteArrayInputStream(body(exchange)))));
+
+        exchange = request("identity");
+        respond(exchange, MediaType.APPLICATION_JSON, json, 1);
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testSkip(){
+        // 小于min-size
+        MockServerWebExchange exchange = request("gzip");
+        respond(exchange, MediaType.APPLICATION_JSON, "{\"id\":1}", 1);
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        // 已压缩的内容类型
+        exchange = request("gzip");
+        respond(exchange, MediaType.IMAGE_PNG, json, 1);
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(json, new String(body(exchange), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCpuBypass(){
+        ReflectionTestUtils.setField(eventLoopMonitor, "cpuUsage", 0.95);
+        MockServerWebExchange exchange = request("gzip");
+        respond(exchange, MediaType.APPLICATION_JSON, json, 1);
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(1, meterRegistry.get("ali_gateway_compression_bypassed").counter().count(), 0);
+    }
+
+    @Test
+    public void testUpstreamResponse() throws IOException {
+        DisposableServer upstream = HttpServer.create().port(0)
+                .route(routes -> routes.get("/orders/paging", (req, resp) -> resp
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .sendString(Mono.just(json))))
+                .bindNow();
+        try {
+            // 经网关过滤器链转发：在NettyWriteResponseFilter写出上游响应前包装
+            MockServerWebExchange exchange = request("gzip");
+            new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), List.of(filter)).handle(exchange).block();
+
+            assertEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(json, read(new GZIPInputStream(new ByteArrayInputStream(body(exchange)))));
+        } finally {
+            upstream.disposeNow();
+        }
+    }
+
+    private static MockServerWebExchange request(String acceptEncoding){
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/orders/paging")
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding));
+    }
+
+    /**
+     * 模拟上游响应，响应体分chunks块写出
+     */
+    private void respond(MockServerWebExchange exchange, MediaType contentType, String body, int chunks){
+        filter.filter(exchange, ex -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.getResponse().getHeaders().setContentType(contentType);
+            ex.getResponse().getHeaders().setContentLength(bytes.length);
+            int chunkSize = (bytes.length + chunks - 1) / chunks;
+            return ex.getResponse().writeWith(Flux.range(0, chunks).map(i -> {
+                int from = i * chunkSize;
+                return DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(bytes, from, Math.min(chunkSize, bytes.length - from)));
+            }));
+        }).block();
+    }
+
+    private static byte[] body(MockServerWebExchange exchange){
+        DataBuffer buffer = DataBufferUtils.join(exchange.getResponse().getBody()).block();
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in){
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String json(int count){
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++){
+            sb.append(i == 0 ? "" : ",").append("{\"orderId\":").append(i).append(",\"status\":\"PAID\",\"amount\":100}");
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,104 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static spring.cloud.ali.gateway.filter.GlobalMetricFilter.OVERFLOW_URI;
+import static spring.cloud.ali.gateway.filter.GlobalMetricFilter.URI_TEMPLATE_ATTR;
+
+public class GlobalMetricFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final Route route = Route.async().id("ali-user").uri("lb://ali-user").predicate(exchange -> true).build();
+
+    @Test
+    public void testMaxSeriesConcurrent() throws Exception {
+        appConfig.getMetric().setMaxSeries(10);
+        GlobalMetricFilter filter = new GlobalMetricFilter(meterRegistry, appConfig);
+
+        // 并发请求不同路径，新序列数不超过上限，其余计入溢出桶
+        int threads = 8;
+        int paths = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++){
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> uris = new ArrayList<>();
+                for (int i = 0; i < paths; i++){
+                    uris.add(handle(filter, "/users/page" + (char) ('a' + offset) + i));
+                }
+                return uris;
+            }));
+        }
+        start.countDown();
+
+        int overflow = 0;
+        for (Future<List<String>> future : futures){
+            for (String uri : future.get(10, TimeUnit.SECONDS)){
+                if (OVERFLOW_URI.equals(uri)){
+                    overflow++;
+                }
+            }
+        }
+        executor.shutdownNow();
+
+        assertEquals(11, meterRegistry.find("ali_gateway_requests_counter").counters().size());
+        assertEquals(threads * paths - 10, overflow);
+        assertEquals(overflow, meterRegistry.get("ali_gateway_requests_counter").tag("uri", OVERFLOW_URI)
+                .counter().count(), 0);
+
+        // 已注册的序列继续使用
+        String registered = meterRegistry.find("ali_gateway_requests_counter").counters().stream()
+                .map(counter -> counter.getId().getTag("uri"))
+                .filter(uri -> !OVERFLOW_URI.equals(uri))
+                .findFirst().orElseThrow();
+        assertEquals(registered, handle(filter, registered));
+        assertEquals(11, meterRegistry.find("ali_gateway_requests_counter").counters().size());
+    }
+
+    @Test
+    public void testRouteFilterResponse(){
+        GlobalMetricFilter filter = new GlobalMetricFilter(meterRegistry, appConfig);
+        // 路由过滤器直接响应（如登录校验失败），不转发上游
+        GatewayFilter login = (exchange, chain) -> {
+            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            return exchange.getResponse().setComplete();
+        };
+        new NettyRoutingChain("http://127.0.0.1:1", List.of(filter), login)
+                .handle(MockServerWebExchange.from(MockServerHttpRequest.get("/users/page"))).block();
+
+        assertEquals(1, meterRegistry.get("ali_gateway_requests_counter").tags("service", "ali-user", "uri", "/users/page")
+                .counter().count(), 0);
+    }
+
+    private String handle(GlobalMetricFilter filter, String path){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, route);
+        filter.filter(exchange, ex -> Mono.empty()).block();
+        return exchange.getAttribute(URI_TEMPLATE_ATTR);
+    }
+}
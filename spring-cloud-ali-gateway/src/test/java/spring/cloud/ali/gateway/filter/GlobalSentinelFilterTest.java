@@ -0,0 +1,131 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.sentinel.CriticalityShedder;
+import spring.cloud.ali.gateway.component.sentinel.RouteShedder;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class GlobalSentinelFilterTest {
+
+    private static final String RESOURCE = "ali-user#GET#/users/{userId}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final GlobalSentinelFilter filter = new GlobalSentinelFilter();
+
+    private final CriticalityShedder criticalityShedder = new CriticalityShedder();
+
+    private final AtomicInteger routeFilterCalls = new AtomicInteger();
+
+    private double cpu;
+
+    private DisposableServer upstream;
+
+    private NettyRoutingChain gateway;
+
+    @Before
+    public void setUp() throws Exception {
+        ReflectionTestUtils.setField(criticalityShedder, "appConfig", appConfig);
+        ReflectionTestUtils.setField(criticalityShedder, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(criticalityShedder, "cpuUsage", (DoubleSupplier) () -> cpu);
+        ReflectionTestUtils.setField(criticalityShedder, "systemLoad", (DoubleSupplier) () -> -1);
+        criticalityShedder.init();
+
+        RouteShedder routeShedder = new RouteShedder();
+        ReflectionTestUtils.setField(routeShedder, "appConfig", appConfig);
+        ReflectionTestUtils.setField(routeShedder, "meterRegistry", meterRegistry);
+        routeShedder.init();
+
+        ReflectionTestUtils.setField(filter, "criticalityShedder", criticalityShedder);
+        ReflectionTestUtils.setField(filter, "routeShedder", routeShedder);
+        ReflectionTestUtils.setField(filter, "appConfig", appConfig);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        putRules("ali-user", RESOURCE);
+
+        upstream = HttpServer.create().port(0)
+                .route(routes -> routes.get("/users/{userId}", (req, resp) -> resp.sendString(Mono.just("user-" + req.param("userId")))))
+                .bindNow();
+        // 路由过滤器（如登录校验）
+        GatewayFilter login = (exchange, chain) -> {
+            routeFilterCalls.incrementAndGet();
+            return chain.filter(exchange);
+        };
+        gateway = new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), List.of(filter), login);
+    }
+
+    @After
+    public void tearDown(){
+        FlowRuleManager.loadRules(Collections.emptyList());
+        upstream.disposeNow();
+    }
+
+    @Test
+    public void testBlockBeforeRouteFilters(){
+        assertEquals(HttpStatus.OK, handle("/users/1").getResponse().getStatusCode());
+        assertEquals(1, routeFilterCalls.get());
+
+        // 被Sentinel拒绝的请求不经过路由过滤器
+        FlowRule rule = new FlowRule(RESOURCE).setGrade(RuleConstant.FLOW_GRADE_QPS).setCount(0);
+        FlowRuleManager.loadRules(Collections.singletonList(rule));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, handle("/users/2").getResponse().getStatusCode());
+        assertEquals(1, routeFilterCalls.get());
+    }
+
+    @Test
+    public void testShedByCriticalityBeforeRouteFilters(){
+        // 系统过载，可丢弃请求在路由过滤器之前拒绝，其它请求正常转发
+        cpu = 1;
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, handle(MockServerHttpRequest.get("/users/1")
+                .header("X-Request-Criticality", "sheddable")).getResponse().getStatusCode());
+        assertEquals(0, routeFilterCalls.get());
+
+        cpu = 0.7;
+        assertEquals(HttpStatus.OK, handle("/users/1").getResponse().getStatusCode());
+        assertEquals(1, routeFilterCalls.get());
+    }
+
+    private MockServerWebExchange handle(String path){
+        return handle(MockServerHttpRequest.get(path));
+    }
+
+    private MockServerWebExchange handle(MockServerHttpRequest.BaseBuilder<?> request){
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        gateway.handle(exchange).block();
+        return exchange;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void putRules(String routeId, String resource) throws Exception {
+        Class<?> rulesClass = Class.forName(GlobalSentinelFilter.class.getName() + "$RouteAppRules");
+        Method of = rulesClass.getDeclaredMethod("of", String.class, Map.class, Map.class);
+        of.setAccessible(true);
+        Object rules = of.invoke(null, routeId, Map.of(resource, new FlowRule(resource)), Map.of());
+        ((Map<String, Object>) ReflectionTestUtils.getField(filter, "allAppRules")).put(routeId, rules);
+    }
+}
@@ -0,0 +1,148 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.common.component.web.HttpWebFluxClient;
+import spring.cloud.ali.common.dto.HttpResult;
+import spring.cloud.ali.common.util.JsonUtil;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+/**
+ * 对比客户端依次调用/users/detail、/orders/paging与网关并行聚合的延迟（本地HTTP服务模拟ali-user和ali-order的耗时），
+ * 耗时较长，手动运行
+ */
+@Ignore("benchmark")
+public class RouteAggregateFilterBenchmarkTest {
+
+    private static final Duration USER_DELAY = Duration.ofMillis(20);
+
+    private static final Duration ORDER_DELAY = Duration.ofMillis(30);
+
+    private static final int WARMUP = 50;
+
+    private static final int ITERATIONS = 300;
+
+    private static final ParameterizedTypeReference<HttpResult<JsonNode>> RESULT_TYPE =
+            new ParameterizedTypeReference<HttpResult<JsonNode>>() {};
+
+    private static DisposableServer server;
+
+    private static HttpWebFluxClient httpWebFluxClient;
+
+    private static GatewayFilter gatewayFilter;
+
+    @BeforeClass
+    public static void setUp(){
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/users/detail", (req, resp) -> Mono.delay(USER_DELAY).then(resp.header("Content-Type", "application/json")
+                                .sendString(Mono.just(JsonUtil.toJson(HttpResult.success(Map.of("userId", 1))))).then()))
+                        .get("/orders/paging", (req, resp) -> Mono.delay(ORDER_DELAY).then(resp.header("Content-Type", "application/json")
+                                .sendString(Mono.just(JsonUtil.toJson(HttpResult.success(Map.of("total", 0))))).then())))
+                .bindNow();
+
+        // 将服务名指向本地服务
+        WebClient webClient = WebClient.builder()
+                .filter((request, next) -> next.exchange(ClientRequest.from(request)
+                        .url(UriComponentsBuilder.fromUri(request.url()).host("127.0.0.1").port(server.port()).build().toUri())
+                        .build()))
+                .build();
+        httpWebFluxClient = new HttpWebFluxClient(webClient);
+
+        RouteAggregateFilter filter = new RouteAggregateFilter();
+        ReflectionTestUtils.setField(filter, "httpWebFluxClient", httpWebFluxClient);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        RouteAggregateFilter.Config config = new RouteAggregateFilter.Config();
+        config.setRouteId("ali-bff");
+        config.setLegs(List.of(leg("user", "lb://ali-user", "/users/detail"), leg("orders", "lb://ali-order", "/orders/paging")));
+        gatewayFilter = filter.apply(config);
+    }
+
+    @AfterClass
+    public static void tearDown(){
+        server.disposeNow();
+    }
+
+    @Test
+    public void testAggregateFasterThanSequential(){
+        // 依次调用，耗时约为各接口之和
+        long[] sequential = bench(() -> httpWebFluxClient.get("ali-user", "/users/detail", userHeaders(), null, RESULT_TYPE)
+                .flatMap(user -> httpWebFluxClient.get("ali-order", "/orders/paging", userHeaders(), Map.of("pageNo", 1), RESULT_TYPE)
+                        .map(orders -> user.getCode() + orders.getCode()))
+                .block());
+
+        // 并行聚合，耗时约为最慢的接口
+        long[] aggregate = bench(() -> {
+            MockServerWebExchange exchange = MockServerWebExchange.from(
+                    MockServerHttpRequest.get("/bff/home?pageNo=1").header(HTTP_HEADER_LOGIN_USER_ID, "1"));
+            gatewayFilter.filter(exchange, ex -> Mono.empty()).block();
+            return JsonUtil.toJsonNode(exchange.getResponse().getBodyAsString().block()).get("code").asInt();
+        });
+
+        String result = "sequential: " + summary(sequential) + ", aggregate: " + summary(aggregate);
+        long delays = USER_DELAY.plus(ORDER_DELAY).toNanos();
+        assertTrue(result, sequential[ITERATIONS / 2] >= delays);
+        assertTrue(result, aggregate[ITERATIONS / 2] < delays);
+        assertTrue(result, aggregate[ITERATIONS / 2] < sequential[ITERATIONS / 2]);
+    }
+
+    /**
+     * @return 排序后的每次耗时（纳秒）
+     */
+    private long[] bench(Supplier<Integer> request){
+        for (int i = 0; i < WARMUP; i++){
+            request.get();
+        }
+
+        long[] costs = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++){
+            long start = System.nanoTime();
+            int code = request.get();
+            costs[i] = System.nanoTime() - start;
+            assertEquals(0, code);
+        }
+        Arrays.sort(costs);
+        return costs;
+    }
+
+    private static String summary(long[] costs){
+        return "p50=" + costs[ITERATIONS / 2] / 1000 + "us, p99=" + costs[ITERATIONS * 99 / 100] / 1000 + "us";
+    }
+
+    private static Map<String, String> userHeaders(){
+        return Map.of(HTTP_HEADER_LOGIN_USER_ID, "1");
+    }
+
+    private static RouteAggregateFilter.Leg leg(String name, String uri, String path){
+        RouteAggregateFilter.Leg leg = new RouteAggregateFilter.Leg();
+        leg.setName(name);
+        leg.setUri(uri);
+        leg.setPath(path);
+        return leg;
+    }
+}
@@ -0,0 +1,184 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+import spring.cloud.ali.common.component.web.HttpWebFluxClient;
+import spring.cloud.ali.common.dto.HttpResult;
+import spring.cloud.ali.common.util.JsonUtil;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+public class RouteAggregateFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RouteAggregateFilter filter = new RouteAggregateFilter();
+
+    private DisposableServer server;
+
+    @Before
+    public void setUp(){
+        // 模拟ali-user和ali-order，响应回显登录用户ID和查询参数
+        server = HttpServer.create().port(0)
+                .route(routes -> routes
+                        .get("/users/detail", (req, resp) -> json(resp, HttpResult.success(
+                                Map.of("userId", req.requestHeaders().get(HTTP_HEADER_LOGIN_USER_ID)))))
+                        .get("/orders/paging", (req, resp) -> json(resp, HttpResult.success(
+                                Map.of("pageNo", query(req.uri(), "pageNo")))))
+                        .get("/orders/slow", (req, resp) -> Mono.delay(Duration.ofSeconds(2))
+                                .then(json(resp, HttpResult.success("slow"))))
+                        .get("/orders/delayed", (req, resp) -> Mono.delay(Duration.ofMillis(300))
+                                .then(json(resp, HttpResult.success("delayed"))))
+                        .get("/orders/biz-error", (req, resp) -> json(resp, HttpResult.fail(1001, "order.not.found")))
+                        .get("/orders/error", (req, resp) -> resp.status(500).send()))
+                .bindNow();
+
+        // 将服务名指向本地服务
+        WebClient webClient = WebClient.builder()
+                .filter((request, next) -> next.exchange(ClientRequest.from(request)
+                        .url(UriComponentsBuilder.fromUri(request.url()).host("127.0.0.1").port(server.port()).build().toUri())
+                        .build()))
+                .build();
+        ReflectionTestUtils.setField(filter, "httpWebFluxClient", new HttpWebFluxClient(webClient));
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    @After
+    public void tearDown(){
+        server.disposeNow();
+    }
+
+    @Test
+    public void testMerge(){
+        MockServerWebExchange exchange = aggregate(leg("user", "lb://ali-user", "/users/detail", true),
+                leg("orders", "lb://ali-order", "/orders/paging", true));
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertNull(exchange.getResponse().getHeaders().getFirst(RouteAggregateFilter.FAILED_HEADER));
+        JsonNode body = body(exchange);
+        assertEquals(0, body.get("code").asInt());
+        assertEquals("1", body.get("data").get("user").get("userId").asText());
+        assertEquals("2", body.get("data").get("orders").get("pageNo").asText());
+        assertEquals(1, meterRegistry.get("ali_gateway_aggregate_legs")
+                .tags("service", "ali-bff", "leg", "orders", "result", "success").counter().count(), 0);
+    }
+
+    @Test
+    public void testParallel(){
+        // 两个leg各耗时300ms，并行调用的总耗时小于两者之和
+        long start = System.nanoTime();
+        MockServerWebExchange exchange = aggregate(leg("first", "lb://ali-order", "/orders/delayed", true),
+                leg("second", "lb://ali-order", "/orders/delayed", true));
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("delayed", body(exchange).get("data").get("second").asText());
+        assertTrue("elapsed: " + elapsed, elapsed >= 300 && elapsed < 600);
+    }
+
+    @Test
+    public void testOptionalLegFailed(){
+        RouteAggregateFilter.Leg slow = leg("orders", "lb://ali-order", "/orders/slow", false);
+        slow.setTimeoutMs(200);
+        RouteAggregateFilter.Leg error = leg("recommend", "lb://ali-order", "/orders/error", false);
+
+        long start = System.currentTimeMillis();
+        MockServerWebExchange exchange = aggregate(leg("user", "lb://ali-user", "/users/detail", true), slow, error);
+        assertTrue(System.currentTimeMillis() - start < 1500);
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("orders,recommend", exchange.getResponse().getHeaders().getFirst(RouteAggregateFilter.FAILED_HEADER));
+        JsonNode data = body(exchange).get("data");
+        assertEquals("1", data.get("user").get("userId").asText());
+        assertTrue(data.get("orders").isNull());
+        assertTrue(data.get("recommend").isNull());
+        assertEquals(1, meterRegistry.get("ali_gateway_aggregate_legs")
+                .tags("service", "ali-bff", "leg", "orders", "result", "timeout").counter().count(), 0);
+        assertEquals(1, meterRegistry.get("ali_gateway_aggregate_legs")
+                .tags("service", "ali-bff", "leg", "recommend", "result", "failure").counter().count(), 0);
+    }
+
+    @Test
+    public void testRequiredLegFailed(){
+        // 业务错误原样返回，不等待进行中的leg
+        long start = System.currentTimeMillis();
+        MockServerWebExchange exchange = aggregate(leg("orders", "lb://ali-order", "/orders/biz-error", true),
+                leg("slow", "lb://ali-order", "/orders/slow", true));
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("orders", exchange.getResponse().getHeaders().getFirst(RouteAggregateFilter.FAILED_HEADER));
+        JsonNode body = body(exchange);
+        assertEquals(1001, body.get("code").asInt());
+        assertEquals("order.not.found", body.get("msg").asText());
+
+        // 超时返回504
+        RouteAggregateFilter.Leg slow = leg("slow", "lb://ali-order", "/orders/slow", true);
+        slow.setTimeoutMs(100);
+        exchange = aggregate(leg("user", "lb://ali-user", "/users/detail", true), slow);
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+
+        // 上游5xx返回502
+        exchange = aggregate(leg("error", "lb://ali-order", "/orders/error", true));
+        assertEquals(HttpStatus.BAD_GATEWAY, exchange.getResponse().getStatusCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotLbUri(){
+        aggregate(leg("user", "http://ali-user", "/users/detail", true));
+    }
+
+    private MockServerWebExchange aggregate(RouteAggregateFilter.Leg... legs){
+        RouteAggregateFilter.Config config = new RouteAggregateFilter.Config();
+        config.setRouteId("ali-bff");
+        config.setLegs(List.of(legs));
+        GatewayFilter gatewayFilter = filter.apply(config);
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/bff/home?pageNo=2").header(HTTP_HEADER_LOGIN_USER_ID, "1"));
+        gatewayFilter.filter(exchange, ex -> Mono.error(new IllegalStateException("should not forward"))).block();
+        return exchange;
+    }
+
+    private static RouteAggregateFilter.Leg leg(String name, String uri, String path, boolean required){
+        RouteAggregateFilter.Leg leg = new RouteAggregateFilter.Leg();
+        leg.setName(name);
+        leg.setUri(uri);
+        leg.setPath(path);
+        leg.setRequired(required);
+        return leg;
+    }
+
+    private static JsonNode body(MockServerWebExchange exchange){
+        return JsonUtil.toJsonNode(exchange.getResponse().getBodyAsString().block());
+    }
+
+    private static String query(String uri, String name){
+        return UriComponentsBuilder.fromUriString(uri).build().getQueryParams().getFirst(name);
+    }
+
+    private static Mono<Void> json(HttpServerResponse resp, HttpResult<?> result){
+        return resp.header("Content-Type", "application/json").sendString(Mono.just(JsonUtil.toJson(result))).then();
+    }
+}
@@ -0,0 +1,92 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+import static spring.cloud.ali.gateway.filter.RouteLoginFilter.LOGIN_USER_ID_ATTR;
+
+public class RouteClientLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RouteClientLimitFilter factory = new RouteClientLimitFilter();
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void testKeyByLoginUser(){
+        GatewayFilter filter = factory.apply(config(1000));
+
+        // 按RouteLoginFilter校验通过的用户限流，不同用户互不影响
+        assertEquals(HttpStatus.OK, request(filter, "1", null, "10.0.0.1"));
+        assertEquals(HttpStatus.OK, request(filter, "1", null, "10.0.0.1"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, request(filter, "1", null, "10.0.0.2"));
+        assertEquals(HttpStatus.OK, request(filter, "2", null, "10.0.0.1"));
+    }
+
+    @Test
+    public void testIgnoreForgedUserHeader(){
+        GatewayFilter filter = factory.apply(config(1000));
+
+        // 未登录的请求伪造Login-User-ID，仍按IP限流
+        assertEquals(HttpStatus.OK, request(filter, null, "1", "10.0.0.1"));
+        assertEquals(HttpStatus.OK, request(filter, null, "2", "10.0.0.1"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, request(filter, null, "3", "10.0.0.1"));
+    }
+
+    @Test
+    public void testRejectOverMaxKeys(){
+        GatewayFilter filter = factory.apply(config(1));
+
+        // key数超过上限时拒绝新key，不放行
+        int rejected = 0;
+        for (int i = 0; i < 1000; i++){
+            if (request(filter, String.valueOf(i), null, "10.0.0.1") == HttpStatus.TOO_MANY_REQUESTS){
+                rejected++;
+            }
+        }
+        assertEquals(1000 - (int) meterRegistry.get("ali_gateway_client_limiter_keys").gauge().value(), rejected);
+        assertEquals(rejected, meterRegistry.get("ali_gateway_client_limiter_overflow").tag("service", "ali-order")
+                .functionCounter().count(), 0);
+    }
+
+    private static RouteClientLimitFilter.Config config(int maxKeys){
+        RouteClientLimitFilter.Config config = new RouteClientLimitFilter.Config();
+        config.setRouteId("ali-order");
+        config.setRate(0.001);
+        config.setBurst(2);
+        config.setMaxKeys(maxKeys);
+        return config;
+    }
+
+    private static HttpStatus request(GatewayFilter filter, String loginUserId, String userHeader, String ip){
+        MockServerHttpRequest.BaseBuilder<?> req = MockServerHttpRequest.get("/orders/paging")
+                .remoteAddress(new InetSocketAddress(ip, 50000));
+        if (userHeader != null){
+            req.header(HTTP_HEADER_LOGIN_USER_ID, userHeader);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(req);
+        if (loginUserId != null){
+            exchange.getAttributes().put(LOGIN_USER_ID_ATTR, loginUserId);
+        }
+        filter.filter(exchange, ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        }).block();
+        return HttpStatus.valueOf(exchange.getResponse().getStatusCode().value());
+    }
+}
@@ -0,0 +1,169 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+public class RouteCollapseFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    /**
+     * 上游响应的触发信号（完成前请求保持进行中）
+     */
+    private Sinks.Empty<Void> release = Sinks.empty();
+
+    private final RouteCollapseFilter factory = new RouteCollapseFilter();
+
+    private final GatewayFilterChain upstream = exchange -> {
+        upstreamCalls.incrementAndGet();
+        String body = "order-" + exchange.getRequest().getQueryParams().getFirst("orderId");
+        return release.asMono().then(Mono.defer(() -> {
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Mono.just(
+                    DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8))));
+        }));
+    };
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void testCollapse(){
+        GatewayFilter filter = filter(false);
+        List<MockServerWebExchange> exchanges = new ArrayList<>();
+        for (int i = 0; i < 100; i++){
+            MockServerWebExchange exchange = get("/orders/detail?orderId=1", "10001");
+            exchanges.add(exchange);
+            filter.filter(exchange, upstream).subscribe();
+        }
+        assertEquals(1, meterRegistry.get("ali_gateway_collapse_inflight").gauge().value(), 0);
+
+        release.tryEmitEmpty();
+        assertEquals(1, upstreamCalls.get());
+        for (MockServerWebExchange exchange : exchanges){
+            assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+            assertEquals("order-1", exchange.getResponse().getBodyAsString().block());
+        }
+        assertNull(exchanges.get(0).getResponse().getHeaders().getFirst("X-Gateway-Collapsed"));
+        assertEquals("true", exchanges.get(1).getResponse().getHeaders().getFirst("X-Gateway-Collapsed"));
+
+        assertEquals(99, meterRegistry.get("ali_gateway_collapse_requests").tag("result", "collapsed").counter().count(), 0);
+        assertEquals(100, meterRegistry.get("ali_gateway_collapse_fanout").summary().max(), 0);
+        assertEquals(0, meterRegistry.get("ali_gateway_collapse_inflight").gauge().value(), 0);
+
+        // 完成后的请求重新转发
+        release = Sinks.empty();
+        release.tryEmitEmpty();
+        filter.filter(get("/orders/detail?orderId=1", "10001"), upstream).block();
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void testCollapseUpstreamBody(){
+        // 真实上游，响应前等待200ms，期间的相同请求合并
+        AtomicInteger requests = new AtomicInteger();
+        DisposableServer server = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    requests.incrementAndGet();
+                    return resp.header("Content-Type", "text/plain")
+                            .sendString(Mono.delay(Duration.ofMillis(200)).thenReturn("order-" + req.uri()));
+                })
+                .bindNow();
+        try {
+            NettyRoutingChain chain = new NettyRoutingChain("http://127.0.0.1:" + server.port(), filter(false));
+            List<MockServerWebExchange> exchanges = new ArrayList<>();
+            List<Mono<Void>> handled = new ArrayList<>();
+            for (int i = 0; i < 20; i++){
+                MockServerWebExchange exchange = get("/orders/detail?orderId=1", "10001");
+                exchanges.add(exchange);
+                handled.add(chain.handle(exchange));
+            }
+            Mono.when(handled).block(Duration.ofSeconds(5));
+
+            assertEquals(1, requests.get());
+            for (MockServerWebExchange exchange : exchanges){
+                assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+                assertEquals("text/plain", exchange.getResponse().getHeaders().getFirst("Content-Type"));
+                assertEquals("order-/orders/detail?orderId=1", exchange.getResponse().getBodyAsString().block());
+            }
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    public void testKey(){
+        GatewayFilter filter = filter(false);
+        filter.filter(get("/orders/detail?orderId=1", "10001"), upstream).subscribe();
+        filter.filter(get("/orders/detail?orderId=2", "10001"), upstream).subscribe();
+        // 不同用户不合并
+        filter.filter(get("/orders/detail?orderId=1", "10002"), upstream).subscribe();
+        assertEquals(3, upstreamCalls.get());
+
+        // 跨用户合并
+        GatewayFilter shared = filter(true);
+        shared.filter(get("/orders/detail?orderId=1", "10001"), upstream).subscribe();
+        shared.filter(get("/orders/detail?orderId=1", "10002"), upstream).subscribe();
+        assertEquals(4, upstreamCalls.get());
+
+        // 非GET不合并
+        shared.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/orders/create")), upstream).subscribe();
+        shared.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/orders/create")), upstream).subscribe();
+        assertEquals(6, upstreamCalls.get());
+    }
+
+    @Test
+    public void testLeaderCancelled(){
+        GatewayFilter filter = filter(false);
+        Disposable leader = filter.filter(get("/orders/detail?orderId=1", "10001"), upstream).subscribe();
+        MockServerWebExchange follower = get("/orders/detail?orderId=1", "10001");
+        filter.filter(follower, upstream).subscribe();
+        assertEquals(1, upstreamCalls.get());
+
+        // leader的客户端断开，等待的请求自己转发
+        leader.dispose();
+        assertEquals(2, upstreamCalls.get());
+        release.tryEmitEmpty();
+        assertEquals("order-1", follower.getResponse().getBodyAsString().block());
+    }
+
+    private GatewayFilter filter(boolean shareAcrossUsers){
+        RouteCollapseFilter.Config config = new RouteCollapseFilter.Config();
+        config.setRouteId("ali-order");
+        config.setShareAcrossUsers(shareAcrossUsers);
+        return factory.apply(config);
+    }
+
+    private static MockServerWebExchange get(String uri, String userId){
+        return MockServerWebExchange.from(MockServerHttpRequest.get(uri).header(HTTP_HEADER_LOGIN_USER_ID, userId));
+    }
+}
@@ -0,0 +1,250 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer.EXCLUDED_INSTANCES;
+
+public class RouteHedgeFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private GatewayFilter filter;
+
+    @Before
+    public void setUp(){
+        RouteHedgeFilter factory = new RouteHedgeFilter();
+        ReflectionTestUtils.setField(factory, "appConfig", appConfig);
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+        factory.init();
+
+        RouteHedgeFilter.Config config = new RouteHedgeFilter.Config();
+        config.setRouteId("ali-user");
+        config.setWindow(100);
+        filter = factory.apply(config);
+    }
+
+    @Test
+    public void testHedgeSlowInstance(){
+        warmUp();
+
+        // 第一个实例慢，对冲请求先响应
+        AtomicInteger attempts = new AtomicInteger();
+        MockServerWebExchange exchange = get();
+        long start = System.nanoTime();
+        filter.filter(exchange, ex -> {
+            int attempt = attempts.incrementAndGet();
+            return respond(ex, attempt == 1 ? Duration.ofSeconds(2) : Duration.ofMillis(5), "instance-" + attempt);
+        }).block();
+
+        assertEquals(2, attempts.get());
+        assertEquals("instance-2", exchange.getResponse().getBodyAsString().block());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+        assertEquals(1, count("won"), 0);
+    }
+
+    @Test
+    public void testExcludePrimaryInstance(){
+        warmUp();
+
+        // 对冲请求负载均衡时排除第一个请求的实例
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicReference<Set<String>> excluded = new AtomicReference<>();
+        MockServerWebExchange exchange = get();
+        filter.filter(exchange, ex -> Mono.deferContextual(ctx -> {
+            int attempt = attempts.incrementAndGet();
+            if (attempt == 1){
+                ex.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(
+                        new DefaultServiceInstance("ali-user-1", "ali-user", "10.0.0.1", 8080, false)));
+                return respond(ex, Duration.ofSeconds(2), "instance-1");
+            }
+            excluded.set(ctx.getOrDefault(EXCLUDED_INSTANCES, null));
+            return respond(ex, Duration.ofMillis(5), "instance-2");
+        })).block();
+
+        assertEquals(Set.of("10.0.0.1:8080"), excluded.get());
+        assertEquals("instance-2", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    public void testPrimaryErrorNotWin(){
+        warmUp();
+
+        // 第一个请求很快返回503，不胜出，等待对冲请求的成功响应
+        AtomicInteger attempts = new AtomicInteger();
+        MockServerWebExchange exchange = get();
+        filter.filter(exchange, ex -> attempts.incrementAndGet() == 1
+                ? respond(ex, HttpStatus.SERVICE_UNAVAILABLE, Duration.ZERO, "unavailable")
+                : respond(ex, Duration.ofMillis(5), "instance-2")).block();
+
+        assertEquals(2, attempts.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("instance-2", exchange.getResponse().getBodyAsString().block());
+        assertEquals(1, count("won"), 0);
+    }
+
+    @Test
+    public void testAllFailed(){
+        warmUp();
+
+        // 都失败时返回第一个请求的结果
+        AtomicInteger attempts = new AtomicInteger();
+        MockServerWebExchange exchange = get();
+        filter.filter(exchange, ex -> attempts.incrementAndGet() == 1
+                ? respond(ex, HttpStatus.SERVICE_UNAVAILABLE, Duration.ZERO, "instance-1")
+                : Mono.delay(Duration.ofMillis(5)).then(Mono.error(new IllegalStateException("instance-2")))).block();
+
+        assertEquals(2, attempts.get());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+        assertEquals("instance-1", exchange.getResponse().getBodyAsString().block());
+        assertEquals(0, count("won"), 0);
+    }
+
+    @Test
+    public void testHedgeUpstreamBody(){
+        // 真实上游：预热后的第一个请求慢
+        AtomicInteger requests = new AtomicInteger();
+        DisposableServer upstream = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    int request = requests.incrementAndGet();
+                    Duration delay = request == 101 ? Duration.ofSeconds(2) : Duration.ofMillis(1);
+                    return resp.sendString(Mono.delay(delay).thenReturn("user-" + request));
+                })
+                .bindNow();
+        try {
+            NettyRoutingChain chain = new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), filter);
+            for (int i = 0; i < 100; i++){
+                MockServerWebExchange exchange = get();
+                chain.handle(exchange).block();
+                assertEquals("user-" + (i + 1), exchange.getResponse().getBodyAsString().block());
+            }
+
+            MockServerWebExchange exchange = get();
+            chain.handle(exchange).block(Duration.ofSeconds(1));
+            assertEquals("user-102", exchange.getResponse().getBodyAsString().block());
+            assertEquals(1, count("won"), 0);
+        } finally {
+            upstream.disposeNow();
+        }
+    }
+
+    @Test
+    public void testGlobalFiltersOnce(){
+        AtomicInteger requests = new AtomicInteger();
+        DisposableServer upstream = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    int request = requests.incrementAndGet();
+                    Duration delay = request == 101 ? Duration.ofSeconds(2) : Duration.ofMillis(1);
+                    return resp.sendString(Mono.delay(delay).thenReturn("user-" + request));
+                })
+                .bindNow();
+        try {
+            // 全局过滤器在路由过滤器之前执行，对冲的两个请求只统计一次
+            GlobalMetricFilter metricFilter = new GlobalMetricFilter(meterRegistry, appConfig);
+            NettyRoutingChain chain = new NettyRoutingChain("http://127.0.0.1:" + upstream.port(), List.of(metricFilter), filter);
+            for (int i = 0; i < 101; i++){
+                chain.handle(get()).block(Duration.ofSeconds(1));
+            }
+
+            assertEquals(102, requests.get());
+            assertEquals(1, count("won"), 0);
+            assertEquals(101, meterRegistry.get("ali_gateway_requests_counter").tag("service", "ali-user").counter().count(), 0);
+        } finally {
+            upstream.disposeNow();
+        }
+    }
+
+    @Test
+    public void testBudgetExhausted(){
+        appConfig.getHedge().setMaxBurst(1);
+        setUp();
+        warmUp();
+
+        AtomicInteger attempts = new AtomicInteger();
+        for (int i = 0; i < 3; i++){
+            MockServerWebExchange exchange = get();
+            filter.filter(exchange, ex -> {
+                attempts.incrementAndGet();
+                return respond(ex, Duration.ofMillis(100), "slow");
+            }).block();
+            assertEquals("slow", exchange.getResponse().getBodyAsString().block());
+        }
+
+        // 预算仅够1次对冲
+        assertEquals(4, attempts.get());
+        assertEquals(1, count("sent"), 0);
+        assertEquals(2, count("denied"), 0);
+    }
+
+    @Test
+    public void testNotHedgePost(){
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/users/register"));
+        filter.filter(exchange, ex -> {
+            attempts.incrementAndGet();
+            return respond(ex, Duration.ofMillis(100), "created");
+        }).block();
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * 积累耗时样本（约1ms），并存入对冲预算
+     */
+    private void warmUp(){
+        for (int i = 0; i < 100; i++){
+            filter.filter(get(), ex -> respond(ex, Duration.ofMillis(1), "warm")).block();
+        }
+    }
+
+    private static MockServerWebExchange get(){
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/users/1"));
+    }
+
+    private static Mono<Void> respond(ServerWebExchange exchange, Duration latency, String body){
+        return respond(exchange, HttpStatus.OK, latency, body);
+    }
+
+    private static Mono<Void> respond(ServerWebExchange exchange, HttpStatus status, Duration latency, String body){
+        GatewayFilterChain upstream = ex -> {
+            ex.getResponse().setStatusCode(status);
+            return ex.getResponse().writeWith(Mono.just(
+                    DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8))));
+        };
+        return Mono.delay(latency).then(upstream.filter(exchange));
+    }
+
+    private double count(String result){
+        return meterRegistry.get("ali_gateway_hedge_requests").tag("result", result).counter().count();
+    }
+}
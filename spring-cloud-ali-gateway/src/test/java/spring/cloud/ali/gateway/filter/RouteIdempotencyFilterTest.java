@@ -0,0 +1,342 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.idempotency.IdempotencyStore;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+public class RouteIdempotencyFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AppConfig appConfig = new AppConfig();
+
+    private final IdempotencyStore store = new IdempotencyStore();
+
+    private final RouteIdempotencyFilter filter = new RouteIdempotencyFilter();
+
+    /**
+     * 转发到上游的请求数
+     */
+    private final AtomicInteger forwarded = new AtomicInteger();
+
+    private HttpStatus upstreamStatus = HttpStatus.OK;
+
+    private Duration upstreamDelay = Duration.ZERO;
+
+    private GatewayFilter gatewayFilter;
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(store, "appConfig", appConfig);
+        ReflectionTestUtils.setField(store, "meterRegistry", meterRegistry);
+        store.init();
+
+        ReflectionTestUtils.setField(filter, "appConfig", appConfig);
+        ReflectionTestUtils.setField(filter, "idempotencyStore", store);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        RouteIdempotencyFilter.Config config = new RouteIdempotencyFilter.Config();
+        config.setRouteId("ali-order");
+        gatewayFilter = filter.apply(config);
+    }
+
+    @Test
+    public void testReplayCompleted(){
+        MockServerWebExchange first = submit("1", "{\"goodsId\":1}", null);
+        assertEquals(HttpStatus.OK, first.getResponse().getStatusCode());
+        assertEquals("order-1:{\"goodsId\":1}", first.getResponse().getBodyAsString().block());
+        assertNull(first.getResponse().getHeaders().getFirst(RouteIdempotencyFilter.REPLAY_HEADER));
+
+        // 相同用户和请求体，返回保存的响应
+        MockServerWebExchange retry = submit("1", "{\"goodsId\":1}", null);
+        assertEquals(1, forwarded.get());
+        assertEquals(HttpStatus.OK, retry.getResponse().getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, retry.getResponse().getHeaders().getContentType());
+        assertEquals("order-1:{\"goodsId\":1}", retry.getResponse().getBodyAsString().block());
+        assertEquals("true", retry.getResponse().getHeaders().getFirst(RouteIdempotencyFilter.REPLAY_HEADER));
+
+        // 不同请求体或不同用户，分别转发
+        submit("1", "{\"goodsId\":2}", null);
+        submit("2", "{\"goodsId\":1}", null);
+        assertEquals(3, forwarded.get());
+        assertEquals(1, meterRegistry.get("ali_gateway_idempotency_requests")
+                .tags("service", "ali-order", "result", "replayed").counter().count(), 0);
+    }
+
+    @Test
+    public void testDeclaredKey(){
+        submit("1", "{\"goodsId\":1}", "key-1");
+        MockServerWebExchange retry = submit("1", "{\"goodsId\":1}", "key-1");
+        assertEquals(1, forwarded.get());
+        assertEquals("order-1:{\"goodsId\":1}", retry.getResponse().getBodyAsString().block());
+
+        // key按用户、方法和路径区分
+        submit("2", "{\"goodsId\":1}", "key-1");
+        submit("1", "{\"goodsId\":1}", "key-2");
+        submit("/orders/cancel", "1", "{\"goodsId\":1}", "key-1");
+        assertEquals(4, forwarded.get());
+    }
+
+    @Test
+    public void testDeclaredKeyReused(){
+        submit("1", "{\"goodsId\":1}", "key-1");
+
+        // 相同key、不同请求体：拒绝，不返回第一次的响应
+        MockServerWebExchange reused = submit("1", "{\"goodsId\":2}", "key-1");
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getResponse().getStatusCode());
+        assertNull(reused.getResponse().getHeaders().getFirst(RouteIdempotencyFilter.REPLAY_HEADER));
+        assertEquals(1, forwarded.get());
+        assertEquals(1, meterRegistry.get("ali_gateway_idempotency_requests")
+                .tags("service", "ali-order", "result", "mismatch").counter().count(), 0);
+
+        // 第一次的记录不受影响
+        MockServerWebExchange retry = submit("1", "{\"goodsId\":1}", "key-1");
+        assertEquals("order-1:{\"goodsId\":1}", retry.getResponse().getBodyAsString().block());
+        assertEquals(1, forwarded.get());
+    }
+
+    @Test
+    public void testInflight(){
+        upstreamDelay = Duration.ofMillis(200);
+
+        List<MockServerWebExchange> exchanges = new ArrayList<>();
+        List<Mono<Void>> submits = new ArrayList<>();
+        for (int i = 0; i < 5; i++){
+            MockServerWebExchange exchange = exchange("1", "{\"goodsId\":1}", null);
+            exchanges.add(exchange);
+            submits.add(gatewayFilter.filter(exchange, this::upstream));
+        }
+        Flux.merge(submits).blockLast();
+
+        // 处理中的重复提交等待并返回相同响应
+        assertEquals(1, forwarded.get());
+        for (MockServerWebExchange exchange : exchanges){
+            assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+            assertEquals("order-1:{\"goodsId\":1}", exchange.getResponse().getBodyAsString().block());
+        }
+    }
+
+    @Test
+    public void testServerErrorNotStored(){
+        upstreamStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, submit("1", "{\"goodsId\":1}", null).getResponse().getStatusCode());
+
+        // 5xx不保存，重试时重新转发
+        upstreamStatus = HttpStatus.OK;
+        assertEquals(HttpStatus.OK, submit("1", "{\"goodsId\":1}", null).getResponse().getStatusCode());
+        assertEquals(2, forwarded.get());
+
+        submit("1", "{\"goodsId\":1}", null);
+        assertEquals(2, forwarded.get());
+    }
+
+    @Test
+    public void testNotMatched(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/orders/detail").header(HTTP_HEADER_LOGIN_USER_ID, "1"));
+        gatewayFilter.filter(exchange, this::upstream).block();
+        gatewayFilter.filter(MockServerWebExchange.from(
+                MockServerHttpRequest.get("/orders/detail").header(HTTP_HEADER_LOGIN_USER_ID, "1")), this::upstream).block();
+        assertEquals(2, forwarded.get());
+    }
+
+    @Test
+    public void testRedisUnavailable() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)){
+            port = socket.getLocalPort();
+        }
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("127.0.0.1", port);
+        connectionFactory.afterPropertiesSet();
+        try {
+            ReflectionTestUtils.setField(store, "redisTemplate", new ReactiveStringRedisTemplate(connectionFactory));
+
+            // Redis不可用时只使用本地记录
+            submit("1", "{\"goodsId\":1}", null);
+            MockServerWebExchange retry = submit("1", "{\"goodsId\":1}", null);
+            assertEquals(1, forwarded.get());
+            assertEquals("true", retry.getResponse().getHeaders().getFirst(RouteIdempotencyFilter.REPLAY_HEADER));
+            assertTrue(meterRegistry.get("ali_gateway_idempotency_redis_errors").counter().count() >= 1);
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void testRedisClaimTimeout(){
+        appConfig.getIdempotency().setRedisTimeout(Duration.ofMillis(50));
+        TimeoutRedisTemplate redisTemplate = new TimeoutRedisTemplate();
+        ReflectionTestUtils.setField(store, "redisTemplate", redisTemplate);
+
+        // SET NX已写入但响应超时，删除本次占位的标记
+        submit("1", "{\"goodsId\":1}", null);
+        assertEquals(1, forwarded.get());
+        assertEquals(1, redisTemplate.claims.get());
+        assertTrue(redisTemplate.values.isEmpty());
+
+        // 其它实例的标记不删除
+        ReflectionTestUtils.setField(store, "redisResumeAt", System.nanoTime());
+        redisTemplate.foreign = "inflight:other";
+        submit("1", "{\"goodsId\":2}", null);
+        assertEquals(2, redisTemplate.claims.get());
+        assertEquals(List.of("inflight:other"), new ArrayList<>(redisTemplate.values.values()));
+    }
+
+    @Test
+    public void testRefreshKeepsRecords(){
+        submit("1", "{\"goodsId\":1}", null);
+
+        appConfig.getIdempotency().setMaxSize(100);
+        appConfig.getIdempotency().setTtl(Duration.ofMinutes(1));
+        store.onRefreshScopeRefreshed(null);
+
+        // 刷新后已保存的响应仍然有效
+        MockServerWebExchange retry = submit("1", "{\"goodsId\":1}", null);
+        assertEquals(1, forwarded.get());
+        assertEquals("true", retry.getResponse().getHeaders().getFirst(RouteIdempotencyFilter.REPLAY_HEADER));
+    }
+
+    @Test
+    public void testReplayUpstreamBody(){
+        DisposableServer server = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    int orderNo = forwarded.incrementAndGet();
+                    return resp.header("Content-Type", "application/json")
+                            .sendString(req.receive().aggregate().asString().map(body -> "order-" + orderNo + ":" + body));
+                })
+                .bindNow();
+        try {
+            NettyRoutingChain chain = new NettyRoutingChain("http://127.0.0.1:" + server.port(), gatewayFilter);
+            for (int i = 0; i < 2; i++){
+                MockServerWebExchange exchange = exchange("1", "{\"goodsId\":1}", null);
+                chain.handle(exchange).block();
+                assertEquals("order-1:{\"goodsId\":1}", exchange.getResponse().getBodyAsString().block());
+            }
+            assertEquals(1, forwarded.get());
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    private MockServerWebExchange submit(String userId, String body, String key){
+        return submit("/orders/create", userId, body, key);
+    }
+
+    private MockServerWebExchange submit(String path, String userId, String body, String key){
+        MockServerWebExchange exchange = exchange(path, userId, body, key);
+        gatewayFilter.filter(exchange, this::upstream).block();
+        return exchange;
+    }
+
+    private static MockServerWebExchange exchange(String userId, String body, String key){
+        return exchange("/orders/create", userId, body, key);
+    }
+
+    private static MockServerWebExchange exchange(String path, String userId, String body, String key){
+        MockServerHttpRequest.BodyBuilder builder = MockServerHttpRequest.post(path)
+                .header(HTTP_HEADER_LOGIN_USER_ID, userId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.getBytes(StandardCharsets.UTF_8).length);
+        if (key != null){
+            builder.header("Idempotency-Key", key);
+        }
+        return MockServerWebExchange.from(builder.body(body));
+    }
+
+    /**
+     * 模拟ali-order：响应 订单号:请求体
+     */
+    private Mono<Void> upstream(ServerWebExchange exchange){
+        int orderNo = forwarded.incrementAndGet();
+        return DataBufferUtils.join(exchange.getRequest().getBody())
+                .map(buffer -> {
+                    String body = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return body;
+                })
+                .defaultIfEmpty("")
+                .delayElement(upstreamDelay)
+                .flatMap(body -> {
+                    exchange.getResponse().setStatusCode(upstreamStatus);
+                    exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    byte[] bytes = ("order-" + orderNo + ":" + body).getBytes(StandardCharsets.UTF_8);
+                    return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+                });
+    }
+
+    /**
+     * SET NX写入后不响应（超时），脚本按值比较后删除
+     */
+    private static class TimeoutRedisTemplate extends ReactiveStringRedisTemplate {
+
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+
+        private final AtomicInteger claims = new AtomicInteger();
+
+        /**
+         * 其它实例已写入的标记
+         */
+        private volatile String foreign;
+
+        private TimeoutRedisTemplate() {
+            super(new LettuceConnectionFactory());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ReactiveValueOperations<String, String> opsForValue() {
+            return (ReactiveValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ReactiveValueOperations.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("setIfAbsent")){
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        claims.incrementAndGet();
+                        if (foreign != null){
+                            values.putIfAbsent((String) args[0], foreign);
+                        }
+                        values.putIfAbsent((String) args[0], (String) args[1]);
+                        return Mono.never();
+                    });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+            boolean deleted = values.remove(keys.get(0), args.get(0));
+            return Flux.just((T) Long.valueOf(deleted ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package spring.cloud.ali.gateway.filter;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.common.component.web.HttpWebFluxClient;
+import spring.cloud.ali.common.dto.HttpResult;
+import spring.cloud.ali.common.util.JsonUtil;
+import spring.cloud.ali.common.util.JwtTokenUtil;
+import spring.cloud.ali.gateway.component.login.LocalTokenVerifier;
+import spring.cloud.ali.gateway.component.login.TokenVerifyCache;
+import spring.cloud.ali.gateway.config.AppConfig;
+import spring.cloud.ali.user.result.VerifyTokenResult;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_TOKEN;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+/**
+ * 对比REMOTE和LOCAL两种token校验方式的延迟（REMOTE由本地HTTP服务模拟ali-user），耗时较长，手动运行
+ */
+@Ignore("benchmark")
+public class RouteLoginFilterBenchmarkTest {
+
+    private static final String SIGN_KEY = "vW6fv8ADmE3E6UjXsu8jxuBdO6+5Mkn67M+SELwMy6E=";
+
+    private static final int WARMUP = 2000;
+
+    private static final int ITERATIONS = 10000;
+
+    private static DisposableServer userServer;
+
+    private static RouteLoginFilter filter;
+
+    private static String loginToken;
+
+    @BeforeClass
+    public static void setUp(){
+        // 模拟ali-user的/users/verify-token
+        userServer = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/users/verify-token", (req, resp) -> {
+                    String token = UriComponentsBuilder.fromUriString(req.uri()).build().getQueryParams().getFirst("token");
+                    String userId = JwtTokenUtil.parse(SIGN_KEY, token).get(HTTP_HEADER_LOGIN_USER_ID, String.class);
+                    HttpResult<VerifyTokenResult> result = HttpResult.success(new VerifyTokenResult(true, Long.valueOf(userId)));
+                    return resp.header("Content-Type", "application/json").sendString(Mono.just(JsonUtil.toJson(result)));
+                }))
+                .bindNow();
+
+        // 将服务名ali-user指向本地服务
+        WebClient webClient = WebClient.builder()
+                .filter((request, next) -> next.exchange(ClientRequest.from(request)
+                        .url(UriComponentsBuilder.fromUri(request.url()).host("127.0.0.1").port(userServer.port()).build().toUri())
+                        .build()))
+                .build();
+
+        AppConfig appConfig = new AppConfig();
+        appConfig.getLogin().setSignKey(SIGN_KEY);
+        LocalTokenVerifier localTokenVerifier = new LocalTokenVerifier();
+        ReflectionTestUtils.setField(localTokenVerifier, "appConfig", appConfig);
+        localTokenVerifier.init();
+
+        // 关闭远程校验缓存，对比每次请求都远程校验的耗时
+        appConfig.getLogin().getVerifyCache().setEnabled(false);
+        TokenVerifyCache tokenVerifyCache = new TokenVerifyCache();
+        ReflectionTestUtils.setField(tokenVerifyCache, "appConfig", appConfig);
+        ReflectionTestUtils.setField(tokenVerifyCache, "meterRegistry", new SimpleMeterRegistry());
+        tokenVerifyCache.init();
+
+        filter = new RouteLoginFilter();
+        ReflectionTestUtils.setField(filter, "httpWebFluxClient", new HttpWebFluxClient(webClient));
+        ReflectionTestUtils.setField(filter, "localTokenVerifier", localTokenVerifier);
+        ReflectionTestUtils.setField(filter, "tokenVerifyCache", tokenVerifyCache);
+
+        loginToken = JwtTokenUtil.generate(SIGN_KEY, ImmutableMap.of(HTTP_HEADER_LOGIN_USER_ID, "1"), 3600);
+    }
+
+    @AfterClass
+    public static void tearDown(){
+        userServer.disposeNow();
+    }
+
+    @Test
+    public void testLocalFasterThanRemote(){
+        long[] remote = bench(RouteLoginFilter.VerifyMode.REMOTE);
+        long[] local = bench(RouteLoginFilter.VerifyMode.LOCAL);
+
+        // 本地校验省去一次HTTP调用，p50和p99均应明显低于远程校验
+        String result = "remote: " + summary(remote) + ", local: " + summary(local);
+        assertTrue(result, local[ITERATIONS / 2] * 2 < remote[ITERATIONS / 2]);
+        assertTrue(result, local[ITERATIONS * 99 / 100] < remote[ITERATIONS * 99 / 100]);
+    }
+
+    /**
+     * @return 排序后的每次耗时（纳秒）
+     */
+    private long[] bench(RouteLoginFilter.VerifyMode mode){
+        RouteLoginFilter.Config config = new RouteLoginFilter.Config();
+        config.setVerifyMode(mode);
+        GatewayFilter gatewayFilter = filter.apply(config);
+
+        for (int i = 0; i < WARMUP; i++){
+            verify(gatewayFilter);
+        }
+
+        long[] costs = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++){
+            long start = System.nanoTime();
+            String userId = verify(gatewayFilter);
+            costs[i] = System.nanoTime() - start;
+            assertEquals("1", userId);
+        }
+        Arrays.sort(costs);
+        return costs;
+    }
+
+    private static String summary(long[] costs){
+        return "p50=" + costs[ITERATIONS / 2] / 1000 + "us, p99=" + costs[ITERATIONS * 99 / 100] / 1000 + "us";
+    }
+
+    private String verify(GatewayFilter gatewayFilter){
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/orders/detail").header(HTTP_HEADER_LOGIN_TOKEN, loginToken));
+        AtomicReference<String> userId = new AtomicReference<>();
+        gatewayFilter.filter(exchange, ex -> {
+            userId.set(ex.getRequest().getHeaders().getFirst(HTTP_HEADER_LOGIN_USER_ID));
+            return Mono.empty();
+        }).block();
+        return userId.get();
+    }
+}
@@ -0,0 +1,162 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RouteMirrorFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * 影子服务收到的请求
+     */
+    private final List<MockClientHttpRequest> mirrored = new CopyOnWriteArrayList<>();
+
+    private Function<ClientRequest, Mono<ClientResponse>> shadow = req -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+
+    private final RouteMirrorFilter factory = new RouteMirrorFilter();
+
+    @Before
+    public void setUp(){
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(req -> {
+                    MockClientHttpRequest copy = new MockClientHttpRequest(req.method(), req.url());
+                    copy.getHeaders().putAll(req.headers());
+                    return req.body().insert(copy, new BodyInserter.Context() {
+                                @Override
+                                public List<HttpMessageWriter<?>> messageWriters() {
+                                    return ExchangeStrategies.withDefaults().messageWriters();
+                                }
+
+                                @Override
+                                public Optional<ServerHttpRequest> serverRequest() {
+                                    return Optional.empty();
+                                }
+
+                                @Override
+                                public Map<String, Object> hints() {
+                                    return Map.of();
+                                }
+                            })
+                            .then(Mono.defer(() -> {
+                                mirrored.add(copy);
+                                return shadow.apply(req);
+                            }));
+                })
+                .build();
+        ReflectionTestUtils.setField(factory, "webClient", webClient);
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void testMirrorWithBody(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/orders/create?source=app")
+                .header("Login-User-ID", "10001")
+                .contentLength(15)
+                .body("{\"productId\":1}"));
+
+        // 主路由读取请求体
+        StringBuilder primaryBody = new StringBuilder();
+        filter(config(1.0)).filter(exchange, ex -> DataBufferUtils.join(ex.getRequest().getBody())
+                        .doOnNext(buffer -> primaryBody.append(buffer.toString(StandardCharsets.UTF_8))).then())
+                .block();
+        assertEquals("{\"productId\":1}", primaryBody.toString());
+
+        assertEquals(1, mirrored.size());
+        MockClientHttpRequest req = mirrored.get(0);
+        assertEquals(HttpMethod.POST, req.getMethod());
+        assertEquals("http://ali-order-shadow/orders/create?source=app", req.getURI().toString());
+        assertEquals("true", req.getHeaders().getFirst(RouteMirrorFilter.HEADER_MIRROR));
+        assertEquals("10001", req.getHeaders().getFirst("Login-User-ID"));
+        assertEquals("{\"productId\":1}", req.getBodyAsString().block());
+
+        assertEquals(1, meterRegistry.get("ali_gateway_mirror_timer").tag("status", "200").timer().count());
+    }
+
+    @Test
+    public void testConcurrencyBound(){
+        // 影子服务不响应
+        shadow = req -> Mono.never();
+        RouteMirrorFilter.Config config = config(1.0);
+        config.setMaxConcurrency(2);
+        config.setTimeoutMs(60000);
+        GatewayFilter filter = filter(config);
+
+        for (int i = 0; i < 5; i++){
+            // 主路由不受影响
+            filter.filter(get(), ex -> Mono.empty()).block(Duration.ofSeconds(1));
+        }
+        assertEquals(2, mirrored.size());
+        assertEquals(3, meterRegistry.get("ali_gateway_mirror_skipped").tag("reason", "concurrency").counter().count(), 0);
+    }
+
+    @Test
+    public void testBodyTooLarge(){
+        RouteMirrorFilter.Config config = config(1.0);
+        config.setMaxBodyKb(1);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/orders/create")
+                .header(HttpHeaders.TRANSFER_ENCODING, "chunked")
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[2048]))));
+
+        filter(config).filter(exchange, ex -> DataBufferUtils.join(ex.getRequest().getBody()).then()).block();
+        assertTrue(mirrored.isEmpty());
+        assertEquals(1, meterRegistry.get("ali_gateway_mirror_skipped").tag("reason", "body_too_large").counter().count(), 0);
+    }
+
+    @Test
+    public void testSample(){
+        GatewayFilter filter = filter(config(0.2));
+        for (int i = 0; i < 1000; i++){
+            filter.filter(get(), ex -> Mono.empty()).block();
+        }
+        assertTrue("mirrored: " + mirrored.size(), mirrored.size() > 120 && mirrored.size() < 280);
+    }
+
+    private GatewayFilter filter(RouteMirrorFilter.Config config){
+        return factory.apply(config);
+    }
+
+    private static RouteMirrorFilter.Config config(double fraction){
+        RouteMirrorFilter.Config config = new RouteMirrorFilter.Config();
+        config.setRouteId("ali-order");
+        config.setUri("lb://ali-order-shadow");
+        config.setFraction(fraction);
+        return config;
+    }
+
+    private static MockServerWebExchange get(){
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/orders/paging"));
+    }
+}
@@ -0,0 +1,185 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import spring.cloud.ali.gateway.component.web.NettyRoutingChain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static spring.cloud.ali.common.context.LoginContext.HTTP_HEADER_LOGIN_USER_ID;
+
+public class RouteResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private final RouteResponseCache factory = new RouteResponseCache();
+
+    private GatewayFilter filter;
+
+    private String cacheControl;
+
+    @Before
+    public void setUp(){
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+        filter = factory.apply(config(64));
+    }
+
+    @Test
+    public void testRouteRefresh(){
+        request("1", null);
+        request("1", null);
+
+        // 配置不变：保留缓存，指标仍指向同一缓存
+        filter = factory.apply(config(64));
+        assertEquals("HIT", request("1", null).getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1, meterRegistry.find("ali_gateway_response_cache_hit_ratio").gauges().size());
+        assertEquals(2.0 / 3, meterRegistry.get("ali_gateway_response_cache_hit_ratio").gauge().value(), 0.001);
+
+        // 配置变化：清空缓存
+        filter = factory.apply(config(32));
+        assertEquals("MISS", request("1", null).getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(2.0 / 4, meterRegistry.get("ali_gateway_response_cache_hit_ratio").gauge().value(), 0.001);
+    }
+
+    @Test
+    public void testCacheUpstreamBody(){
+        DisposableServer server = HttpServer.create().port(0)
+                .handle((req, resp) -> {
+                    upstreamCalls.incrementAndGet();
+                    return resp.sendString(Mono.just("user-" + req.requestHeaders().get(HTTP_HEADER_LOGIN_USER_ID)));
+                })
+                .bindNow();
+        try {
+            NettyRoutingChain chain = new NettyRoutingChain("http://127.0.0.1:" + server.port(), filter);
+            for (String cacheStatus : new String[]{"MISS", "HIT"}){
+                MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/detail")
+                        .header(HTTP_HEADER_LOGIN_USER_ID, "1"));
+                chain.handle(exchange).block();
+                assertEquals(cacheStatus, exchange.getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+                assertEquals("user-1", exchange.getResponse().getBodyAsString().block());
+            }
+            assertEquals(1, upstreamCalls.get());
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    public void testHitByUser(){
+        MockServerWebExchange first = request("1", null);
+        assertEquals("user-1", first.getResponse().getBodyAsString().block());
+        assertEquals("MISS", first.getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+
+        MockServerWebExchange second = request("1", null);
+        assertEquals("user-1", second.getResponse().getBodyAsString().block());
+        assertEquals("HIT", second.getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertEquals(1, upstreamCalls.get());
+
+        // 不同用户不共享缓存
+        request("2", null);
+        assertEquals(2, upstreamCalls.get());
+
+        assertEquals(1.0 / 3, meterRegistry.get("ali_gateway_response_cache_hit_ratio").gauge().value(), 0.001);
+    }
+
+    @Test
+    public void testNotModified(){
+        MockServerWebExchange first = request("1", null);
+        first.getResponse().getBodyAsString().block();
+        String etag = first.getResponse().getHeaders().getETag();
+        assertNotNull(etag);
+
+        MockServerWebExchange second = request("1", etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getResponse().getStatusCode());
+        assertEquals("", second.getResponse().getBodyAsString().defaultIfEmpty("").block());
+    }
+
+    @Test
+    public void testCacheControl(){
+        cacheControl = "no-store";
+        request("1", null);
+        request("1", null);
+        assertEquals(2, upstreamCalls.get());
+
+        cacheControl = "max-age=0";
+        request("1", null);
+        request("1", null);
+        assertEquals(4, upstreamCalls.get());
+    }
+
+    @Test
+    public void testIncludes(){
+        RouteResponseCache.Config config = config(64);
+        config.setIncludes(Set.of("GET#/users/{userId}"));
+        config.setExcludes(Set.of("GET#/users/login"));
+        filter = factory.apply(config);
+
+        // 只缓存配置的只读接口，登录等其他GET请求每次转发
+        assertEquals("MISS", get("/users/1", "1").getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertEquals("HIT", get("/users/1", "1").getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertNull(get("/users/login", "1").getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertNull(get("/users/login", "1").getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertNull(get("/users/1/orders", "1").getResponse().getHeaders().getFirst("X-Gateway-Cache"));
+        assertEquals(4, upstreamCalls.get());
+    }
+
+    private static RouteResponseCache.Config config(int maxSizeMb){
+        RouteResponseCache.Config config = new RouteResponseCache.Config();
+        config.setRouteId("ali-user");
+        config.setMaxSizeMb(maxSizeMb);
+        return config;
+    }
+
+    private MockServerWebExchange request(String userId, String ifNoneMatch){
+        return request("/users/detail", userId, ifNoneMatch);
+    }
+
+    private MockServerWebExchange get(String path, String userId){
+        return request(path, userId, null);
+    }
+
+    private MockServerWebExchange request(String path, String userId, String ifNoneMatch){
+        MockServerHttpRequest.BaseBuilder<?> req = MockServerHttpRequest.get(path)
+                .header(HTTP_HEADER_LOGIN_USER_ID, userId);
+        if (ifNoneMatch != null){
+            req.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(req);
+        filter.filter(exchange, upstream(userId)).block();
+        return exchange;
+    }
+
+    private GatewayFilterChain upstream(String userId){
+        return ex -> {
+            upstreamCalls.incrementAndGet();
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+            if (cacheControl != null){
+                ex.getResponse().getHeaders().setCacheControl(cacheControl);
+            }
+            return ex.getResponse().writeWith(Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(
+                    ("user-" + userId).getBytes(StandardCharsets.UTF_8))));
+        };
+    }
+}
@@ -0,0 +1,201 @@
+package spring.cloud.ali.gateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultRequestContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClientsProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.cloud.ali.gateway.component.loadbalancer.PeakEwmaLoadBalancer;
+import spring.cloud.ali.gateway.config.AppConfig;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+public class RouteRetryFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<ServiceInstance> instances = Arrays.asList(instance("10.0.0.1"), instance("10.0.0.2"));
+
+    private final ServiceInstanceListSupplier supplier = new StaticSupplier(instances);
+
+    private final PeakEwmaLoadBalancer loadBalancer = loadBalancer(supplier);
+
+    /**
+     * 返回503的实例
+     */
+    private final Set<String> unavailable = new HashSet<>();
+
+    /**
+     * 连接失败的实例
+     */
+    private final Set<String> unreachable = new HashSet<>();
+
+    /**
+     * 请求过的实例
+     */
+    private final List<String> attempts = new ArrayList<>();
+
+    private GatewayFilter filter;
+
+    @Before
+    public void setUp(){
+        RouteRetryFilter factory = new RouteRetryFilter();
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(factory, "loadBalancerClientFactory", new LoadBalancerClientFactory(new LoadBalancerClientsProperties()) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getInstance(String name, Class<T> type) {
+                return (T) supplier;
+            }
+        });
+
+        RouteRetryFilter.Config config = new RouteRetryFilter.Config();
+        config.setRouteId("ali-user");
+        config.setFirstBackoffMs(0);
+        filter = factory.apply(config);
+    }
+
+    @Test
+    public void testRetryOtherInstance(){
+        warmUp();
+        unavailable.add("10.0.0.1");
+        unreachable.add("10.0.0.2");
+
+        // 两个实例都失败，每个实例只请求一次
+        attempts.clear();
+        filter.filter(get(), this::route).onErrorResume(ConnectException.class, e -> Mono.empty()).block();
+        assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2"), attempts.stream().sorted().toList());
+        assertEquals(1, retried(), 0);
+
+        // 请求最终发往正常实例
+        unreachable.clear();
+        for (int i = 0; i < 5; i++){
+            MockServerWebExchange exchange = get();
+            filter.filter(exchange, this::route).block();
+            assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        }
+    }
+
+    @Test
+    public void testConnectFailure(){
+        warmUp();
+        unreachable.add("10.0.0.1");
+        for (int i = 0; i < 5; i++){
+            MockServerWebExchange exchange = get();
+            filter.filter(exchange, this::route).block();
+            assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        }
+    }
+
+    @Test
+    public void testBudget(){
+        // 100个成功请求，10%的预算
+        warmUp();
+        unavailable.addAll(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+        for (int i = 0; i < 30; i++){
+            MockServerWebExchange exchange = get();
+            filter.filter(exchange, this::route).block();
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+        }
+        assertEquals(10, retried(), 0);
+        assertEquals(20, meterRegistry.get("ali_gateway_retry_requests").tags("result", "denied").counter().count(), 0);
+    }
+
+    @Test
+    public void testNotIdempotent(){
+        warmUp();
+        unavailable.add("10.0.0.1");
+        unavailable.add("10.0.0.2");
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/user/create").build());
+        filter.filter(exchange, this::route).block();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+        assertEquals(0, retried(), 0);
+    }
+
+    private void warmUp(){
+        for (int i = 0; i < 100; i++){
+            filter.filter(get(), this::route).block();
+        }
+        assertTrue(meterRegistry.find("ali_gateway_retry_requests").counters().stream().allMatch(c -> c.count() == 0));
+    }
+
+    /**
+     * 模拟负载均衡和路由转发
+     */
+    private Mono<Void> route(ServerWebExchange exchange){
+        return loadBalancer.choose(new DefaultRequest<>(new DefaultRequestContext())).flatMap(response -> {
+            exchange.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR, response);
+            String host = response.getServer().getHost();
+            attempts.add(host);
+            if (unreachable.contains(host)){
+                return Mono.error(new ConnectException("Connection refused: " + host));
+            }
+            exchange.getResponse().setStatusCode(unavailable.contains(host) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK);
+            return Mono.empty();
+        });
+    }
+
+    private double retried(){
+        return meterRegistry.get("ali_gateway_retry_requests").tags("result", "retried").counter().count();
+    }
+
+    private static MockServerWebExchange get(){
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/user/info").build());
+    }
+
+    private static PeakEwmaLoadBalancer loadBalancer(ServiceInstanceListSupplier supplier){
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("supplier", supplier);
+        return new PeakEwmaLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class), "ali-user",
+                AppConfig.LoadBalancer::new);
+    }
+
+    private static ServiceInstance instance(String host){
+        return new DefaultServiceInstance(host, "ali-user", host, 8080, false);
+    }
+
+    private static class StaticSupplier implements ServiceInstanceListSupplier {
+
+        private final List<ServiceInstance> instances;
+
+        private StaticSupplier(List<ServiceInstance> instances) {
+            this.instances = instances;
+        }
+
+        @Override
+        public String getServiceId() {
+            return "ali-user";
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get() {
+            return Flux.just(instances);
+        }
+    }
+}